@@ -0,0 +1,113 @@
+package burp;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// 自动分组规则的编辑面板，放在设置对话框中使用
+final class AutoGroupRulesPanel extends JPanel {
+    private static final String[] COLUMNS = {"启用", "目标分组", "主机", "条件", "仅代理"};
+
+    private final JCheckBox enabledBox;
+    private final DefaultTableModel tableModel;
+    private final JTable table;
+
+    AutoGroupRulesPanel(List<AutoGrouper.Rule> rules, boolean enabled) {
+        super(new BorderLayout(0, 8));
+
+        enabledBox = new JCheckBox("启用自动分组（按规则把经过 Burp 的流量放入分组）", enabled);
+
+        tableModel = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 || column == 4 ? Boolean.class : String.class;
+            }
+        };
+        for (AutoGrouper.Rule rule : rules) {
+            tableModel.addRow(new Object[]{rule.enabled, rule.group, rule.host, rule.condition, rule.proxyOnly});
+        }
+        table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setMaxWidth(50);
+        table.getColumnModel().getColumn(4).setMaxWidth(60);
+        table.getColumnModel().getColumn(3).setPreferredWidth(260);
+
+        JButton addBtn = new JButton("➕ 添加规则");
+        addBtn.addActionListener(e -> {
+            tableModel.addRow(new Object[]{true, "", "", "", true});
+            int row = tableModel.getRowCount() - 1;
+            table.setRowSelectionInterval(row, row);
+            table.editCellAt(row, 1);
+        });
+        JButton removeBtn = new JButton("❌ 删除规则");
+        removeBtn.addActionListener(e -> {
+            stopEditing();
+            int[] rows = table.getSelectedRows();
+            for (int i = rows.length - 1; i >= 0; i--) {
+                tableModel.removeRow(rows[i]);
+            }
+        });
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        buttons.add(addBtn);
+        buttons.add(removeBtn);
+
+        JLabel help = new JLabel("<html>主机：留空匹配任意主机，example.com 只匹配该主机，*.example.com 匹配该域名及子域名<br>"
+                + "条件：与请求列表过滤栏相同，例如 path:^/api/ method:POST status:5xx body:\"error\"</html>");
+        help.setBorder(new EmptyBorder(0, 5, 0, 5));
+
+        JPanel south = new JPanel(new BorderLayout(0, 5));
+        south.add(buttons, BorderLayout.NORTH);
+        south.add(help, BorderLayout.CENTER);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(680, 220));
+
+        add(enabledBox, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+    }
+
+    boolean isAutoGroupEnabled() {
+        return enabledBox.isSelected();
+    }
+
+    // 返回编辑后的规则；有无效规则时抛出 IllegalArgumentException 并选中该行
+    List<AutoGrouper.Rule> rules() {
+        stopEditing();
+        List<AutoGrouper.Rule> rules = new ArrayList<>();
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            AutoGrouper.Rule rule = new AutoGrouper.Rule();
+            rule.enabled = Boolean.TRUE.equals(tableModel.getValueAt(row, 0));
+            rule.group = text(row, 1);
+            rule.host = text(row, 2);
+            rule.condition = text(row, 3);
+            rule.proxyOnly = Boolean.TRUE.equals(tableModel.getValueAt(row, 4));
+            if (rule.group.isEmpty() && rule.host.isEmpty() && rule.condition.isEmpty()) {
+                continue;
+            }
+            try {
+                AutoGrouper.validate(rule);
+            } catch (IllegalArgumentException e) {
+                table.setRowSelectionInterval(row, row);
+                throw new IllegalArgumentException("第 " + (row + 1) + " 条规则: " + e.getMessage());
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private String text(int row, int column) {
+        Object value = tableModel.getValueAt(row, column);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private void stopEditing() {
+        if (table.isEditing()) {
+            table.getCellEditor().stopCellEditing();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package burp;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.handler.HttpHandler;
+import burp.api.montoya.http.handler.HttpRequestToBeSent;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.RequestToBeSentAction;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * 按规则把经过 Burp 的流量自动放入分组。
+ *
+ * 规则由主机、过滤条件（与请求列表过滤栏的语法相同）和目标分组组成。规则集编译成一棵按域名标签
+ * 倒序建立的主机树，响应到达时先用主机名在树中找出候选规则，只对候选规则求值过滤条件，
+ * 没有命中主机的流量只需一次树查找。同一条流量可以进入多个分组。
+ *
+ * Burp 的 HTTP 线程只把命中的消息放入无锁队列；后台线程定时批量取出，按分组合并后写入
+ * GroupStore，所以每批每个分组只产生一次写日志和一次 UI 通知。队列有上限，积压时丢弃并计数。
+ */
+final class AutoGrouper implements HttpHandler {
+    private static final long DRAIN_INTERVAL_MS = 250;
+    private static final int MAX_BATCH = 5000;
+    private static final int MAX_QUEUED = 20000;
+    private static final int CLOSE_TIMEOUT_SECONDS = 10;
+
+    // 一条规则，以 JSON 保存在设置中
+    static final class Rule {
+        public boolean enabled = true;
+        public String group = "";
+        // 空表示任意主机，example.com 只匹配该主机，*.example.com 匹配该域名及其子域名
+        public String host = "";
+        // 过滤条件，语法见 ItemFilter
+        public String condition = "";
+        public boolean proxyOnly = true;
+    }
+
+    private static final class CompiledRule {
+        final String group;
+        final ItemFilter filter;
+        final boolean proxyOnly;
+
+        CompiledRule(String group, ItemFilter filter, boolean proxyOnly) {
+            this.group = group;
+            this.filter = filter;
+            this.proxyOnly = proxyOnly;
+        }
+    }
+
+    // 主机树的节点，按域名标签从顶级域开始向下
+    private static final class HostNode {
+        final Map<String, HostNode> children = new HashMap<>();
+        // 主机名恰好到此为止时命中的规则编号
+        final BitSet exact = new BitSet();
+        // 主机名经过此节点即命中的规则编号（*.example.com）
+        final BitSet wildcard = new BitSet();
+    }
+
+    private static final class RuleSet {
+        static final RuleSet EMPTY = new RuleSet(Collections.emptyList(), new HostNode(), new BitSet());
+
+        final List<CompiledRule> rules;
+        final HostNode hosts;
+        final BitSet anyHost;
+
+        RuleSet(List<CompiledRule> rules, HostNode hosts, BitSet anyHost) {
+            this.rules = rules;
+            this.hosts = hosts;
+            this.anyHost = anyHost;
+        }
+
+        BitSet candidates(String host) {
+            BitSet matches = (BitSet) anyHost.clone();
+            HostNode node = hosts;
+            int end = host.length();
+            while (node != null) {
+                matches.or(node.wildcard);
+                if (end <= 0) {
+                    matches.or(node.exact);
+                    break;
+                }
+                int dot = host.lastIndexOf('.', end - 1);
+                node = node.children.get(host.substring(dot + 1, end));
+                end = dot;
+            }
+            return matches;
+        }
+    }
+
+    // summary 是判断规则时生成的摘要（不含指纹），没有规则需要时为 null
+    private static final class Pending {
+        final String group;
+        final HttpRequestResponse message;
+        final ItemSummary summary;
+
+        Pending(String group, HttpRequestResponse message, ItemSummary summary) {
+            this.group = group;
+            this.message = message;
+            this.summary = summary;
+        }
+    }
+
+    private final GroupStore store;
+    private final Logging logging;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong grouped = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "GroupedHistory-AutoGroup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile RuleSet ruleSet = RuleSet.EMPTY;
+    private volatile boolean enabled;
+
+    AutoGrouper(GroupStore store, Logging logging) {
+        this.store = store;
+        this.logging = logging;
+        drainer.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // 条件无法编译的规则被跳过并记录错误；界面在保存前应先用 validate 检查
+    void setRules(List<Rule> rules) {
+        List<CompiledRule> compiled = new ArrayList<>();
+        HostNode hosts = new HostNode();
+        BitSet anyHost = new BitSet();
+        for (Rule rule : rules) {
+            if (!rule.enabled || rule.group == null || rule.group.trim().isEmpty()) {
+                continue;
+            }
+            ItemFilter filter;
+            try {
+                filter = compileCondition(rule);
+            } catch (IllegalArgumentException e) {
+                logging.logToError("Skipping auto-group rule for '" + rule.group + "': " + e.getMessage());
+                continue;
+            }
+
+            int index = compiled.size();
+            compiled.add(new CompiledRule(rule.group.trim(), filter, rule.proxyOnly));
+            String host = rule.host == null ? "" : rule.host.trim().toLowerCase(Locale.ROOT);
+            if (host.isEmpty() || host.equals("*")) {
+                anyHost.set(index);
+            } else if (host.startsWith("*.")) {
+                hostNode(hosts, host.substring(2)).wildcard.set(index);
+            } else {
+                hostNode(hosts, host).exact.set(index);
+            }
+        }
+        ruleSet = new RuleSet(compiled, hosts, anyHost);
+    }
+
+    // 检查规则，有错误时抛出 IllegalArgumentException
+    static void validate(Rule rule) {
+        if (rule.group == null || rule.group.trim().isEmpty()) {
+            throw new IllegalArgumentException("规则缺少目标分组");
+        }
+        compileCondition(rule);
+    }
+
+    // 等待写入分组的条目数
+    int queuedItems() {
+        return queued.get();
+    }
+
+    // 本次加载以来自动分组的条目数
+    long groupedItems() {
+        return grouped.get();
+    }
+
+    // 队列已满被丢弃的条目数
+    long droppedItems() {
+        return dropped.get();
+    }
+
+    @Override
+    public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent requestToBeSent) {
+        return RequestToBeSentAction.continueWith(requestToBeSent);
+    }
+
+    @Override
+    public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
+        RuleSet rules = ruleSet;
+        if (enabled && !rules.rules.isEmpty()) {
+            try {
+                route(rules, responseReceived);
+            } catch (Exception e) {
+                logging.logToError("Failed to auto-group response: " + e.getMessage());
+            }
+        }
+        return ResponseReceivedAction.continueWith(responseReceived);
+    }
+
+    // 卸载扩展时调用：把队列中剩余的条目写入分组后停止后台线程，应在关闭日志之前调用
+    void close() {
+        enabled = false;
+        drainer.execute(this::drain);
+        drainer.shutdown();
+        try {
+            if (!drainer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logging.logToError("Timed out draining auto-grouped items on unload");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(RuleSet rules, HttpResponseReceived responseReceived) {
+        HttpRequest request = responseReceived.initiatingRequest();
+        HttpService service = request.httpService();
+        String host = service != null && service.host() != null ? service.host().toLowerCase(Locale.ROOT) : "";
+        BitSet candidates = rules.candidates(host);
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        boolean fromProxy = responseReceived.toolSource().isFromTool(ToolType.PROXY);
+        HttpRequestResponse message = null;
+        ItemSummary summary = null;
+        List<String> routed = new ArrayList<>(2);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            CompiledRule rule = rules.rules.get(i);
+            if ((rule.proxyOnly && !fromProxy) || routed.contains(rule.group)) {
+                continue;
+            }
+            if (message == null) {
+                message = HttpRequestResponse.httpRequestResponse(request, responseReceived);
+            }
+            if (rule.filter != null) {
+                // 规则只用到方法、路径、状态码和响应类型等，指纹留给后台线程计算
+                if (summary == null) {
+                    summary = ItemSummary.withoutFingerprints(message);
+                }
+                if (!rule.filter.test(summary, message)) {
+                    continue;
+                }
+            }
+            enqueue(rule.group, message, summary);
+            routed.add(rule.group);
+        }
+    }
+
+    private void enqueue(String group, HttpRequestResponse message, ItemSummary summary) {
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(new Pending(group, message, summary));
+    }
+
+    private void drain() {
+        try {
+            while (!queue.isEmpty()) {
+                // 按分组合并一批，保持每个分组内的到达顺序；进入多个分组的消息只生成一次完整摘要
+                Map<String, List<HttpRequestResponse>> batch = new LinkedHashMap<>();
+                Map<String, List<ItemSummary>> summaries = new HashMap<>();
+                Map<HttpRequestResponse, ItemSummary> completed = new IdentityHashMap<>();
+                Pending pending;
+                int count = 0;
+                while (count < MAX_BATCH && (pending = queue.poll()) != null) {
+                    Pending current = pending;
+                    ItemSummary summary = completed.computeIfAbsent(current.message, message -> current.summary != null
+                            ? current.summary.withFingerprints(message.request()) : ItemSummary.of(message));
+                    batch.computeIfAbsent(current.group, k -> new ArrayList<>()).add(current.message);
+                    summaries.computeIfAbsent(current.group, k -> new ArrayList<>()).add(summary);
+                    count++;
+                }
+                queued.addAndGet(-count);
+                for (Map.Entry<String, List<HttpRequestResponse>> entry : batch.entrySet()) {
+                    // 按重复策略被跳过或合并的请求不计入
+                    grouped.addAndGet(store.append(entry.getKey(), entry.getValue(), summaries.get(entry.getKey())).added.size());
+                }
+            }
+        } catch (Exception e) {
+            logging.logToError("Failed to store auto-grouped items: " + e.getMessage());
+        }
+    }
+
+    private static ItemFilter compileCondition(Rule rule) {
+        String condition = rule.condition == null ? "" : rule.condition.trim();
+        return condition.isEmpty() ? null : ItemFilter.compile(condition);
+    }
+
+    private static HostNode hostNode(HostNode root, String host) {
+        HostNode node = root;
+        String[] labels = host.split("\\.");
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.children.computeIfAbsent(labels[i], k -> new HostNode());
+        }
+        return node;
+    }
+}
@@ -3,9 +3,7 @@ package burp;
 import burp.api.montoya.BurpExtension;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.http.message.HttpRequestResponse;
-import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
-import burp.api.montoya.persistence.Preferences;
 import burp.api.montoya.ui.UserInterface;
 import burp.api.montoya.ui.contextmenu.ContextMenuEvent;
 import burp.api.montoya.ui.contextmenu.ContextMenuItemsProvider;
@@ -16,26 +14,27 @@ import burp.api.montoya.ui.editor.EditorOptions;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
-    private static final String PERSISTENCE_KEY = "grouped_history_data";
-
     // 定义图标常量
     private static final String ICON_ADD = "➕";
     private static final String ICON_DELETE = "🗑️";
@@ -44,7 +43,13 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
     private static final String ICON_REMOVE = "❌";
     private static final String ICON_SEARCH = "🔍";
     private static final String ICON_EXPORT = "📤";
+    private static final String ICON_IMPORT = "📥";
+    private static final String ICON_REPLAY = "🔁";
+    private static final String ICON_COMPARE = "🆚";
     private static final String ICON_REFRESH = "🔄";
+    private static final String ICON_SETTINGS = "⚙️";
+    private static final String ICON_AUTO_GROUP = "⚡";
+    private static final String ICON_DIAGNOSTICS = "📊";
 
     // 定义颜色常量
     private static final Color PRIMARY_COLOR = new Color(51, 122, 183);
@@ -56,57 +61,84 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
     private MontoyaApi api;
     private JPanel mainPanel;
     private JPanel sidebarPanel;
-    private JPanel groupListPanel;
+    private JList<String> groupList;
+    private GroupListModel groupListModel;
     private String currentSelectedGroup;
-    private DefaultListModel<HttpRequestResponse> requestListModel;
-    private JList<HttpRequestResponse> requestList;
+    private GroupedItemListModel requestListModel;
+    private JList<GroupedItem> requestList;
     private HttpRequestEditor requestEditor;
     private HttpResponseEditor responseEditor;
-    private Map<String, List<HttpRequestResponse>> groupMap = new HashMap<>();
-    private Map<String, JToggleButton> groupButtons = new HashMap<>();
+    private GroupStore groupStore;
     private JTextField searchField;
     private JLabel statusLabel;
-    private ButtonGroup groupButtonGroup;
-    private Gson gson;
-
-    // 用于JSON序列化的数据类
-    private static class SerializableRequestResponse {
-        public String request;
-        public String response;
-
-        public SerializableRequestResponse(String request, String response) {
-            this.request = request;
-            this.response = response;
-        }
-    }
+    // 请求列表上方的分组统计
+    private JLabel groupStatsLabel;
+    private JLabel persistenceLabel;
+    private JLabel memoryLabel;
+    private JProgressBar loadProgressBar;
+    // 项目数据在后台加载期间为 true，此时不允许修改分组
+    private volatile boolean loading;
+    private Timer groupFilterTimer;
+    private JTextField requestFilterField;
+    private Timer requestFilterTimer;
+    // 当前生效的请求过滤条件，为 null 时显示全部
+    private ItemFilter requestFilter;
+    private SwingWorker<int[], Void> requestFilterWorker;
+    // 当前分组或过滤条件变化时递增，用于丢弃过期的后台过滤结果
+    private int requestFilterGeneration;
+    private GroupedHistoryCore core;
+    private HistoryJournal journal;
+    private GroupedHistorySettings settings;
+    private PayloadCompressor compressor;
+    private MessageCache messageCache;
+    private SpillStore spillStore;
+    private SearchIndex searchIndex;
+    private ResponseDiffer responseDiffer;
+    private JCheckBox compareWithFirstBox;
+    private AutoGrouper autoGrouper;
+    private FullTextSearchDialog searchDialog;
+    private PerformanceMetrics metrics;
+    private EdtWatchdog edtWatchdog;
+    private DiagnosticsDialog diagnosticsDialog;
 
     @Override
     public void initialize(MontoyaApi api) {
         this.api = api;
-        this.gson = new Gson();
+        this.core = new GroupedHistoryCore(api.persistence().extensionData(), api.persistence().preferences(), api.logging());
+        this.settings = core.settings();
+        this.compressor = core.compressor();
+        this.messageCache = core.messageCache();
+        this.spillStore = core.spillStore();
+        this.journal = core.journal();
+        this.groupStore = core.groupStore();
+        this.metrics = core.metrics();
+        this.edtWatchdog = new EdtWatchdog(metrics, api.logging());
+        applyDiagnosticsSettings();
+        this.searchIndex = new SearchIndex(api.logging());
+        this.responseDiffer = new ResponseDiffer(api.logging());
+        this.autoGrouper = new AutoGrouper(groupStore, api.logging());
+        autoGrouper.setRules(settings.autoGroupRules());
         api.extension().setName("Grouped History");
         api.userInterface().registerContextMenuItemsProvider(this);
-
-        // 清除现有数据，确保新项目从零开始
-        clearData();
+        api.http().registerHttpHandler(autoGrouper);
+        // 先把自动分组队列中的条目写入分组，再关闭日志
+        api.extension().registerUnloadingHandler(autoGrouper::close);
+        api.extension().registerUnloadingHandler(core::close);
+        api.extension().registerUnloadingHandler(searchIndex::close);
+        api.extension().registerUnloadingHandler(responseDiffer::close);
+        api.extension().registerUnloadingHandler(edtWatchdog::stop);
 
         SwingUtilities.invokeLater(() -> {
             createUI();
+            journal.setSaveListener(new PersistenceStatusListener());
+            groupStore.addListener(new GroupChangeListener());
+            responseDiffer.setListener((group, compared, total) ->
+                    SwingUtilities.invokeLater(() -> baselineProgress(group, compared, total)));
             api.userInterface().registerSuiteTab("Grouped History", mainPanel);
             loadDataFromProject();
         });
     }
 
-    private void clearData() {
-        try {
-            Preferences preferences = api.persistence().preferences();
-            preferences.deleteString(PERSISTENCE_KEY);
-            groupMap.clear();
-        } catch (Exception e) {
-            api.logging().logToError("Failed to clear grouped history data: " + e.getMessage());
-        }
-    }
-
     private void createUI() {
         mainPanel = new JPanel(new BorderLayout());
         mainPanel.setBackground(BACKGROUND_COLOR);
@@ -124,7 +156,7 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         mainPanel.add(sidebarPanel, BorderLayout.WEST);
 
         // 初始化
-        refreshAllGroupButtons();
+        refreshGroupList();
     }
 
     private void createSidebar() {
@@ -156,9 +188,19 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         refreshBtn.setToolTipText("刷新列表");
         refreshBtn.addActionListener(e -> refreshRequestList());
 
+        JButton autoGroupBtn = createStyledButton(ICON_AUTO_GROUP, PRIMARY_COLOR);
+        autoGroupBtn.setToolTipText("自动分组规则");
+        autoGroupBtn.addActionListener(e -> showAutoGroupDialog());
+
+        JButton settingsBtn = createStyledButton(ICON_SETTINGS, PRIMARY_COLOR);
+        settingsBtn.setToolTipText("存储设置");
+        settingsBtn.addActionListener(e -> showSettingsDialog());
+
         toolbarPanel.add(addGroupBtn);
         toolbarPanel.add(deleteGroupBtn);
         toolbarPanel.add(refreshBtn);
+        toolbarPanel.add(autoGroupBtn);
+        toolbarPanel.add(settingsBtn);
 
         sidebarHeader.add(titleLabel, BorderLayout.NORTH);
         sidebarHeader.add(toolbarPanel, BorderLayout.SOUTH);
@@ -171,17 +213,49 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         JLabel searchIcon = new JLabel(ICON_SEARCH);
         searchField = new JTextField();
         searchField.setToolTipText("搜索分组...");
-        searchField.addActionListener(e -> filterGroups());
+        // 输入停顿后再过滤，回车立即过滤
+        groupFilterTimer = new Timer(150, e -> filterGroups());
+        groupFilterTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                groupFilterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                groupFilterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                groupFilterTimer.restart();
+            }
+        });
+        searchField.addActionListener(e -> {
+            groupFilterTimer.stop();
+            filterGroups();
+        });
 
         searchPanel.add(searchIcon, BorderLayout.WEST);
         searchPanel.add(searchField, BorderLayout.CENTER);
 
-        // 分组列表容器
-        groupListPanel = new JPanel();
-        groupListPanel.setLayout(new BoxLayout(groupListPanel, BoxLayout.Y_AXIS));
-        groupListPanel.setBackground(SIDEBAR_COLOR);
+        // 分组列表，只绘制可见的行
+        groupListModel = new GroupListModel(groupStore);
+        groupList = new JList<>(groupListModel);
+        groupList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        groupList.setBackground(SIDEBAR_COLOR);
+        groupList.setCellRenderer(new GroupCellRenderer(groupListModel));
+        groupList.setFixedCellHeight(37);
+        groupList.addListSelectionListener(e -> {
+            String groupName = groupList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && groupName != null && !groupName.equals(currentSelectedGroup)) {
+                currentSelectedGroup = groupName;
+                refreshRequestList();
+            }
+        });
 
-        JScrollPane groupScrollPane = new JScrollPane(groupListPanel);
+        JScrollPane groupScrollPane = new JScrollPane(groupList);
         groupScrollPane.setBorder(null);
         groupScrollPane.getVerticalScrollBar().setUnitIncrement(16);
         groupScrollPane.setBackground(SIDEBAR_COLOR);
@@ -240,29 +314,94 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         removeBtn.setToolTipText("从当前分组中移除选中的请求");
         removeBtn.addActionListener(e -> removeSelectedRequestsFromCurrentGroup());
 
-        JButton exportBtn = createStyledButton(ICON_EXPORT + " 导出全部", PRIMARY_COLOR);
-        exportBtn.setToolTipText("导出所有分组的URL");
-        exportBtn.addActionListener(e -> exportAllGroups());
+        JButton searchBtn = createStyledButton(ICON_SEARCH + " 全文搜索", PRIMARY_COLOR);
+        searchBtn.setToolTipText("在所有分组的请求和响应内容中搜索");
+        searchBtn.addActionListener(e -> showFullTextSearch());
+
+        JButton exportBtn = createStyledButton(ICON_EXPORT + " 导出", PRIMARY_COLOR);
+        exportBtn.setToolTipText("导出分组内容（HAR、JSON Lines、原始 HTTP 或 URL 列表）");
+        exportBtn.addActionListener(e -> showExportDialog());
 
         listToolbar.add(removeBtn);
+        listToolbar.add(searchBtn);
+        JButton importBtn = createStyledButton(ICON_IMPORT + " 导入", PRIMARY_COLOR);
+        importBtn.setToolTipText("从 HAR、JSON Lines 或 Burp 保存的条目 XML 导入到分组");
+        importBtn.addActionListener(e -> showImportDialog());
+
+        JButton replayBtn = createStyledButton(ICON_REPLAY + " 重放", PRIMARY_COLOR);
+        replayBtn.setToolTipText("重新发送当前分组的所有请求，结果放入新的分组并统计状态码变化");
+        replayBtn.addActionListener(e -> showReplayDialog());
+
+        JButton compareBtn = createStyledButton(ICON_COMPARE + " 比较", PRIMARY_COLOR);
+        compareBtn.setToolTipText("比较选中的两个请求的响应；只选中一个时与分组的第一条比较");
+        compareBtn.addActionListener(e -> compareSelectedResponses());
+
+        // 列表每行末尾显示与分组第一条响应的差异行数，在后台逐条计算
+        compareWithFirstBox = new JCheckBox("Δ 与首条比较");
+        compareWithFirstBox.setToolTipText("在每个请求后显示其响应与分组第一条响应相比删除/添加的行数，便于找出异常的响应");
+        compareWithFirstBox.addActionListener(e -> toggleCompareWithFirst());
+
+        listToolbar.add(importBtn);
         listToolbar.add(exportBtn);
+        listToolbar.add(replayBtn);
+        listToolbar.add(compareBtn);
+        listToolbar.add(compareWithFirstBox);
+
+        // 过滤栏，输入停顿后再过滤，回车立即过滤
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 0));
+        filterPanel.setBorder(new EmptyBorder(0, 5, 5, 5));
+        requestFilterField = new JTextField();
+        requestFilterField.setToolTipText(ItemFilter.SYNTAX_HELP);
+        requestFilterTimer = new Timer(250, e -> applyRequestFilter());
+        requestFilterTimer.setRepeats(false);
+        requestFilterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                requestFilterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                requestFilterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                requestFilterTimer.restart();
+            }
+        });
+        requestFilterField.addActionListener(e -> {
+            requestFilterTimer.stop();
+            applyRequestFilter();
+        });
+        filterPanel.add(new JLabel("过滤:"), BorderLayout.WEST);
+        filterPanel.add(requestFilterField, BorderLayout.CENTER);
+
+        // 分组统计栏，随 GroupStore 增量维护的统计更新，不遍历条目
+        groupStatsLabel = new JLabel(" ");
+        groupStatsLabel.setFont(groupStatsLabel.getFont().deriveFont(Font.PLAIN, 11f));
+        groupStatsLabel.setForeground(Color.DARK_GRAY);
+        groupStatsLabel.setBorder(new EmptyBorder(0, 8, 5, 5));
+
+        JPanel listHeader = new JPanel(new BorderLayout());
+        listHeader.add(listToolbar, BorderLayout.NORTH);
+        listHeader.add(groupStatsLabel, BorderLayout.CENTER);
+        listHeader.add(filterPanel, BorderLayout.SOUTH);
 
         // 请求列表
-        requestListModel = new DefaultListModel<>();
+        requestListModel = new GroupedItemListModel();
         requestList = new JList<>(requestListModel);
-        requestList.setCellRenderer(new EnhancedRequestResponseCellRenderer());
+        requestList.setCellRenderer(new EnhancedRequestResponseCellRenderer(responseDiffer));
+        // 固定行高和行宽，布局时不必逐行调用渲染器测量
+        requestList.setPrototypeCellValue(new GroupedItem(0, new ItemSummary("DELETE", "/prototype/path?query=value",
+                "https://prototype.example/prototype/path?query=value", (short) 200, 1024, "HTML",
+                RequestFingerprint.UNKNOWN, RequestFingerprint.UNKNOWN), (GroupedItem.Loader) null));
         requestList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         requestList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                HttpRequestResponse selected = requestList.getSelectedValue();
-                if (selected != null) {
-                    requestEditor.setRequest(selected.request());
-                    if (selected.response() != null) {
-                        responseEditor.setResponse(selected.response());
-                    } else {
-                        responseEditor.setResponse(HttpResponse.httpResponse(""));
-                    }
-                    updateStatusLabel();
+                GroupedItem selectedItem = requestList.getSelectedValue();
+                if (selectedItem != null) {
+                    showSelectedRequest(selectedItem);
                 }
             }
         });
@@ -272,17 +411,44 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         JMenuItem removeFromGroupItem = new JMenuItem(ICON_REMOVE + " 从分组中移除");
         removeFromGroupItem.addActionListener(e -> removeSelectedRequestsFromCurrentGroup());
         requestListPopupMenu.add(removeFromGroupItem);
+        JMenuItem compareItem = new JMenuItem(ICON_COMPARE + " 比较响应");
+        compareItem.addActionListener(e -> compareSelectedResponses());
+        requestListPopupMenu.add(compareItem);
+        JMenuItem mostDifferentItem = new JMenuItem("Δ 跳到与首条差异最大的请求");
+        mostDifferentItem.addActionListener(e -> selectMostDifferent());
+        requestListPopupMenu.add(mostDifferentItem);
         requestList.setComponentPopupMenu(requestListPopupMenu);
 
         JScrollPane listScrollPane = new JScrollPane(requestList);
         listScrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
-        panel.add(listToolbar, BorderLayout.NORTH);
+        panel.add(listHeader, BorderLayout.NORTH);
         panel.add(listScrollPane, BorderLayout.CENTER);
 
         return panel;
     }
 
+    private void showSelectedRequest(GroupedItem selectedItem) {
+        long started = metrics.start();
+        try {
+            // 条目原文在第一次选中时才从项目文件读取
+            HttpRequestResponse selected = selectedItem.message();
+            if (selected == null) {
+                showStatusMessage("无法读取该请求，详情见扩展错误日志", DANGER_COLOR);
+                return;
+            }
+            requestEditor.setRequest(selected.request());
+            if (selected.response() != null) {
+                responseEditor.setResponse(selected.response());
+            } else {
+                responseEditor.setResponse(HttpResponse.httpResponse(""));
+            }
+            updateStatusLabel();
+        } finally {
+            metrics.record(PerformanceMetrics.Operation.SHOW_MESSAGE, started);
+        }
+    }
+
     private void createStatusBar() {
         JPanel statusPanel = new JPanel(new BorderLayout());
         statusPanel.setBorder(new EmptyBorder(5, 10, 5, 10));
@@ -291,10 +457,111 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         statusLabel = new JLabel("就绪");
         statusLabel.setFont(statusLabel.getFont().deriveFont(Font.PLAIN, 12f));
 
+        persistenceLabel = new JLabel("");
+        persistenceLabel.setFont(persistenceLabel.getFont().deriveFont(Font.PLAIN, 11f));
+        persistenceLabel.setForeground(Color.GRAY);
+
+        // 内存缓存和堆外缓存的占用，定时刷新
+        memoryLabel = new JLabel("");
+        memoryLabel.setFont(memoryLabel.getFont().deriveFont(Font.PLAIN, 11f));
+        memoryLabel.setForeground(Color.GRAY);
+        Timer memoryTimer = new Timer(2000, e -> updateMemoryLabel());
+        memoryTimer.start();
+        api.extension().registerUnloadingHandler(memoryTimer::stop);
+
+        // 启动时加载项目数据的进度，加载完成后隐藏
+        loadProgressBar = new JProgressBar();
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setPreferredSize(new Dimension(180, 16));
+        loadProgressBar.setVisible(false);
+
+        JButton diagnosticsBtn = new JButton(ICON_DIAGNOSTICS);
+        diagnosticsBtn.setToolTipText("性能诊断");
+        diagnosticsBtn.setMargin(new Insets(0, 4, 0, 4));
+        diagnosticsBtn.setFocusPainted(false);
+        diagnosticsBtn.addActionListener(e -> showDiagnostics());
+
+        JPanel eastPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 0));
+        eastPanel.setOpaque(false);
+        eastPanel.add(loadProgressBar);
+        eastPanel.add(memoryLabel);
+        eastPanel.add(persistenceLabel);
+        eastPanel.add(diagnosticsBtn);
+
         statusPanel.add(statusLabel, BorderLayout.WEST);
+        statusPanel.add(eastPanel, BorderLayout.EAST);
         mainPanel.add(statusPanel, BorderLayout.SOUTH);
     }
 
+    private void updateMemoryLabel() {
+        String text = "缓存 " + Formats.bytes(messageCache.heapBytes()) + " | 堆外 " + Formats.bytes(spillStore.mappedBytes());
+        if (spillStore.hasFailed()) {
+            text += " (写入失败，已停用)";
+        } else if (spillStore.isFull()) {
+            text += " (已满)";
+        }
+        int indexing = searchIndex.pendingItems();
+        if (indexing > 0) {
+            text += " | 正在建立索引: 剩余 " + indexing;
+        }
+        if (settings.autoGroupEnabled()) {
+            text += " | 自动分组 " + autoGrouper.groupedItems();
+            if (autoGrouper.droppedItems() > 0) {
+                text += " (丢弃 " + autoGrouper.droppedItems() + ")";
+            }
+        }
+        memoryLabel.setText(text);
+    }
+
+    private void showDiagnostics() {
+        if (diagnosticsDialog == null) {
+            diagnosticsDialog = new DiagnosticsDialog(mainPanel, metrics, settings, groupStore, messageCache, spillStore,
+                    this::applyDiagnosticsSettings);
+            api.extension().registerUnloadingHandler(() -> SwingUtilities.invokeLater(diagnosticsDialog::close));
+        }
+        diagnosticsDialog.setVisible(true);
+        diagnosticsDialog.toFront();
+    }
+
+    // 性能统计关闭时不计时，EDT 监视线程也不运行
+    private void applyDiagnosticsSettings() {
+        boolean enabled = settings.diagnosticsEnabled();
+        metrics.setEnabled(enabled);
+        if (enabled) {
+            edtWatchdog.start(settings.stallThresholdMs());
+        } else {
+            edtWatchdog.stop();
+        }
+    }
+
+    private void showFullTextSearch() {
+        if (searchDialog == null) {
+            searchDialog = new FullTextSearchDialog(mainPanel, searchIndex, this::openSearchMatch);
+        }
+        searchDialog.setVisible(true);
+        searchDialog.toFront();
+    }
+
+    // 打开搜索结果所在的分组并选中该请求
+    private void openSearchMatch(SearchIndex.Match match) {
+        int row = groupStore.items(match.group).indexOf(match.item);
+        if (row < 0) {
+            showStatusMessage("该请求已被移除", DANGER_COLOR);
+            return;
+        }
+        currentSelectedGroup = match.group;
+        selectGroupInSidebar(match.group);
+        refreshRequestList();
+        row = requestListModel.indexOf(match.item);
+        if (row < 0) {
+            // 被当前的过滤条件隐藏了
+            clearRequestFilter();
+            row = requestListModel.indexOf(match.item);
+        }
+        requestList.setSelectedIndex(row);
+        requestList.ensureIndexIsVisible(row);
+    }
+
     private JButton createStyledButton(String text, Color backgroundColor) {
         JButton button = new JButton(text);
         button.setBackground(backgroundColor);
@@ -320,155 +587,467 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         return button;
     }
 
-    private JToggleButton createGroupButton(String groupName) {
-        String buttonText = ICON_FOLDER + " " + groupName;
-        JToggleButton button = new JToggleButton(buttonText);
-        button.setHorizontalAlignment(SwingConstants.LEFT);
-        button.setMaximumSize(new Dimension(Integer.MAX_VALUE, 35));
-        button.setPreferredSize(new Dimension(260, 35));
-        button.setBackground(Color.WHITE);
-        button.setBorder(new EmptyBorder(8, 12, 8, 12));
-        button.setFont(button.getFont().deriveFont(Font.PLAIN, 12f));
-        button.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        button.setFocusPainted(false);
+    // 在侧边栏中选中分组，被过滤掉的分组只清除选中状态
+    private void selectGroupInSidebar(String groupName) {
+        int index = groupListModel.indexOf(groupName);
+        if (index >= 0) {
+            groupList.setSelectedIndex(index);
+            groupList.ensureIndexIsVisible(index);
+        } else {
+            groupList.clearSelection();
+        }
+    }
 
-        button.addActionListener(e -> {
+    private void showAddGroupDialog() {
+        if (rejectWhileLoading()) {
+            return;
+        }
+        String groupName = JOptionPane.showInputDialog(mainPanel, "输入分组名称：", "新建分组", JOptionPane.PLAIN_MESSAGE);
+        if (groupName != null && !groupName.trim().isEmpty() && groupStore.createGroup(groupName)) {
             currentSelectedGroup = groupName;
-            updateSelectedGroupButton(groupName);
+            selectGroupInSidebar(groupName);
             refreshRequestList();
             updateStatusLabel();
-        });
-
-        // 添加悬停效果
-        button.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseEntered(MouseEvent e) {
-                if (!button.isSelected()) {
-                    button.setBackground(new Color(230, 230, 230));
-                }
-            }
-
-            @Override
-            public void mouseExited(MouseEvent e) {
-                if (!button.isSelected()) {
-                    button.setBackground(Color.WHITE);
-                }
-            }
-        });
-
-        return button;
+            showStatusMessage("分组 '" + groupName + "' 创建成功", SUCCESS_COLOR);
+        }
     }
 
-    private void updateSelectedGroupButton(String selectedGroupName) {
-        for (Map.Entry<String, JToggleButton> entry : groupButtons.entrySet()) {
-            String groupName = entry.getKey();
-            JToggleButton button = entry.getValue();
+    private void showSettingsDialog() {
+        JSpinner levelSpinner = new JSpinner(new SpinnerNumberModel(settings.compressionLevel(), 0, 9, 1));
+        JSpinner thresholdSpinner = new JSpinner(new SpinnerNumberModel(settings.compressionThreshold(), 0, Integer.MAX_VALUE, 256));
+        JSpinner spillSpinner = new JSpinner(new SpinnerNumberModel(settings.spillThreshold() / 1024, 0, Integer.MAX_VALUE / 1024, 64));
+        JSpinner cacheSpinner = new JSpinner(new SpinnerNumberModel(settings.cacheSizeMb(), 1, 4096, 16));
+        JComboBox<DuplicatePolicy> duplicateBox = new JComboBox<>(DuplicatePolicy.values());
+        duplicateBox.setSelectedItem(settings.duplicatePolicy());
+        JCheckBox compareHeadersBox = new JCheckBox("比较请求头", settings.duplicateCompareHeaders());
+        compareHeadersBox.setToolTipText("忽略 Cookie、日期、缓存校验、追踪ID等每次请求都可能变化的头");
+
+        JPanel panel = new JPanel(new GridLayout(0, 2, 10, 8));
+        panel.add(new JLabel("压缩级别 (0 = 不压缩)："));
+        panel.add(levelSpinner);
+        panel.add(new JLabel("压缩阈值 (字节)："));
+        panel.add(thresholdSpinner);
+        panel.add(new JLabel("堆外缓存阈值 (KB, 0 = 不使用)："));
+        panel.add(spillSpinner);
+        panel.add(new JLabel("内存缓存上限 (MB)："));
+        panel.add(cacheSpinner);
+        panel.add(new JLabel("重复请求："));
+        panel.add(duplicateBox);
+        panel.add(new JLabel());
+        panel.add(compareHeadersBox);
+        panel.add(new JLabel("本次识别的重复请求："));
+        panel.add(new JLabel(String.valueOf(groupStore.suppressedDuplicates())));
+        panel.add(new JLabel("本次写入 (原始 / 存储)："));
+        panel.add(new JLabel(Formats.bytes(compressor.rawBytes()) + " / " + Formats.bytes(compressor.storedBytes())));
+        panel.add(new JLabel("压缩率："));
+        panel.add(new JLabel(formatCompressionRatio()));
+        panel.add(new JLabel("本次去重 (未重复写入)："));
+        panel.add(new JLabel(Formats.bytes(compressor.deduplicatedBytes())));
+
+        int result = JOptionPane.showConfirmDialog(mainPanel, panel, "存储设置", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result == JOptionPane.OK_OPTION) {
+            settings.setCompressionLevel((Integer) levelSpinner.getValue());
+            settings.setCompressionThreshold((Integer) thresholdSpinner.getValue());
+            settings.setSpillThreshold((Integer) spillSpinner.getValue() * 1024);
+            settings.setCacheSizeMb((Integer) cacheSpinner.getValue());
+            settings.setDuplicatePolicy((DuplicatePolicy) duplicateBox.getSelectedItem());
+            settings.setDuplicateCompareHeaders(compareHeadersBox.isSelected());
+            core.applySettings();
+            updateMemoryLabel();
+            showStatusMessage("存储设置已保存", SUCCESS_COLOR);
+        }
+    }
 
-            boolean isSelected = groupName.equals(selectedGroupName);
-            button.setSelected(isSelected);
+    private String duplicateActionText() {
+        switch (settings.duplicatePolicy()) {
+            case SKIP:
+                return "跳过";
+            case REPLACE:
+                return "替换旧条目";
+            default:
+                return "合并计数";
+        }
+    }
 
-            if (isSelected) {
-                button.setText(ICON_FOLDER_OPEN + " " + groupName);
-                button.setBackground(PRIMARY_COLOR);
-                button.setForeground(Color.WHITE);
-            } else {
-                button.setText(ICON_FOLDER + " " + groupName);
-                button.setBackground(Color.WHITE);
-                button.setForeground(Color.BLACK);
+    private void showAutoGroupDialog() {
+        AutoGroupRulesPanel panel = new AutoGroupRulesPanel(settings.autoGroupRules(), settings.autoGroupEnabled());
+        while (true) {
+            int result = JOptionPane.showConfirmDialog(mainPanel, panel, "自动分组规则", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (result != JOptionPane.OK_OPTION) {
+                return;
+            }
+            List<AutoGrouper.Rule> rules;
+            try {
+                rules = panel.rules();
+            } catch (IllegalArgumentException e) {
+                // 保留已编辑的内容，修改后重新提交
+                JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "规则无效", JOptionPane.ERROR_MESSAGE);
+                continue;
             }
+            settings.setAutoGroupRules(rules);
+            settings.setAutoGroupEnabled(panel.isAutoGroupEnabled());
+            autoGrouper.setRules(rules);
+            autoGrouper.setEnabled(panel.isAutoGroupEnabled());
+            showStatusMessage("自动分组规则已保存", SUCCESS_COLOR);
+            return;
         }
     }
 
-    private void showAddGroupDialog() {
-        String groupName = JOptionPane.showInputDialog(mainPanel, "输入分组名称：", "新建分组", JOptionPane.PLAIN_MESSAGE);
-        if (groupName != null && !groupName.trim().isEmpty() && !groupMap.containsKey(groupName)) {
-            groupMap.put(groupName, new ArrayList<>());
-            addGroupButton(groupName);
-            currentSelectedGroup = groupName;
-            updateSelectedGroupButton(groupName);
-            refreshRequestList();
-            saveDataToProject();
-            updateStatusLabel();
-            showStatusMessage("分组 '" + groupName + "' 创建成功", SUCCESS_COLOR);
+    private String formatCompressionRatio() {
+        if (compressor.rawBytes() == 0) {
+            return "-";
         }
+        return String.format("%.0f%%", compressor.compressionRatio() * 100);
     }
 
     private void deleteCurrentGroup() {
-        if (currentSelectedGroup == null || groupMap.isEmpty()) {
+        if (rejectWhileLoading()) {
+            return;
+        }
+        if (currentSelectedGroup == null || groupStore.isEmpty()) {
             JOptionPane.showMessageDialog(mainPanel, "没有可删除的分组", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        int requestCount = groupMap.get(currentSelectedGroup).size();
+        int requestCount = groupStore.size(currentSelectedGroup);
         int result = JOptionPane.showConfirmDialog(mainPanel,
                 "确定要删除分组 '" + currentSelectedGroup + "' 吗？\n这将删除该分组中的 " + requestCount + " 个请求。",
                 "确认删除", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
             String deletedGroup = currentSelectedGroup;
-            groupMap.remove(currentSelectedGroup);
-            refreshAllGroupButtons();
-            saveDataToProject();
+            groupStore.deleteGroup(deletedGroup);
             showStatusMessage("分组 '" + deletedGroup + "' 已删除", SUCCESS_COLOR);
         }
     }
 
-    private void addGroupButton(String groupName) {
-        JToggleButton groupButton = createGroupButton(groupName);
-        groupButtons.put(groupName, groupButton);
-        groupListPanel.add(groupButton);
-        groupListPanel.add(Box.createVerticalStrut(5));
-        groupListPanel.revalidate();
-        groupListPanel.repaint();
+    // 分组被整体替换后重建侧边栏
+    private void refreshGroupList() {
+        long started = metrics.start();
+        groupListModel.reload();
+        selectFirstGroup();
+        metrics.record(PerformanceMetrics.Operation.REFRESH_GROUP_LIST, started);
     }
 
-    private void refreshAllGroupButtons() {
-        groupListPanel.removeAll();
-        groupButtons.clear();
+    private void selectFirstGroup() {
         currentSelectedGroup = null;
+        List<String> groupNames = groupStore.groupNames();
+        if (!groupNames.isEmpty()) {
+            currentSelectedGroup = groupNames.get(0);
+            selectGroupInSidebar(currentSelectedGroup);
+            refreshRequestList();
+        } else {
+            groupList.clearSelection();
+            requestListModel.setItems(Collections.emptyList());
+            showStatusMessage("暂无分组", null);
+        }
+    }
+
+    private void refreshRequestList() {
+        long started = metrics.start();
+        List<GroupedItem> requests = Collections.emptyList();
+        if (currentSelectedGroup != null) {
+            requests = groupStore.items(currentSelectedGroup);
+        }
 
-        for (String groupName : groupMap.keySet()) {
-            addGroupButton(groupName);
+        if (compareWithFirstBox.isSelected()) {
+            responseDiffer.compareWithFirst(currentSelectedGroup, requests);
         }
 
-        if (!groupMap.isEmpty()) {
-            currentSelectedGroup = groupMap.keySet().iterator().next();
-            updateSelectedGroupButton(currentSelectedGroup);
+        int generation = ++requestFilterGeneration;
+        if (requestFilterWorker != null) {
+            requestFilterWorker.cancel(false);
+            requestFilterWorker = null;
+        }
+        ItemFilter filter = requestFilter;
+        if (filter == null) {
+            requestListModel.setItems(requests);
+        } else if (!filter.needsMessage()) {
+            // 只用摘要的条件直接求值，5万条也只需几十毫秒
+            requestListModel.setItems(requests, filter.evaluate(requests, 0, requests.size()));
+        } else {
+            // 需要解码原文的条件在后台对同一个快照求值，期间分组被修改时会重新过滤
+            requestListModel.setItems(requests, new int[0]);
+            List<GroupedItem> snapshot = requests;
+            requestFilterWorker = new SwingWorker<int[], Void>() {
+                @Override
+                protected int[] doInBackground() {
+                    return filter.evaluate(snapshot, 0, snapshot.size());
+                }
+
+                @Override
+                protected void done() {
+                    if (generation != requestFilterGeneration) {
+                        return;
+                    }
+                    requestFilterWorker = null;
+                    try {
+                        requestListModel.setItems(snapshot, get());
+                    } catch (Exception e) {
+                        api.logging().logToError("Failed to filter grouped history requests: " + e.getMessage());
+                    }
+                    // 求值期间追加的条目
+                    requestsAppended();
+                }
+            };
+            requestFilterWorker.execute();
+        }
+        updateStatusLabel();
+        metrics.record(PerformanceMetrics.Operation.REFRESH_REQUEST_LIST, started);
+    }
+
+    // 当前分组末尾追加了条目；列表显示的快照之后还有其他修改时整体刷新
+    private void requestsAppended() {
+        long started = metrics.start();
+        if (requestFilterWorker != null) {
+            // 后台过滤完成后会接着处理这期间追加的条目
+            return;
+        }
+        GroupStore.Items requests = groupStore.items(currentSelectedGroup);
+        List<GroupedItem> shown = requestListModel.items();
+        if (!requests.extendsFrom(shown)) {
+            refreshRequestList();
+            return;
+        }
+        if (compareWithFirstBox.isSelected()) {
+            responseDiffer.compareWithFirst(currentSelectedGroup, requests);
+        }
+        appendFilteredRows(requests, shown.size());
+        updateStatusLabel();
+        metrics.record(PerformanceMetrics.Operation.APPEND_REQUEST_LIST, started);
+    }
+
+    /*
+     * 把 requests 中从 from 开始的新条目按当前过滤条件加入列表。需要解码原文的条件在后台对这段新条目求值，
+     * 完成后再处理求值期间追加的条目；期间列表被整体刷新时丢弃结果。
+     */
+    private void appendFilteredRows(GroupStore.Items requests, int from) {
+        ItemFilter filter = requestFilter;
+        if (filter == null) {
+            requestListModel.itemsAppended(requests);
+        } else if (!filter.needsMessage()) {
+            requestListModel.rowsAppended(requests, filter.evaluate(requests, from, requests.size()));
+        } else if (from < requests.size()) {
+            int generation = ++requestFilterGeneration;
+            requestFilterWorker = new SwingWorker<int[], Void>() {
+                @Override
+                protected int[] doInBackground() {
+                    return filter.evaluate(requests, from, requests.size());
+                }
+
+                @Override
+                protected void done() {
+                    if (generation != requestFilterGeneration) {
+                        return;
+                    }
+                    requestFilterWorker = null;
+                    try {
+                        requestListModel.rowsAppended(requests, get());
+                    } catch (Exception e) {
+                        api.logging().logToError("Failed to filter grouped history requests: " + e.getMessage());
+                        refreshRequestList();
+                        return;
+                    }
+                    requestsAppended();
+                }
+            };
+            requestFilterWorker.execute();
+        }
+    }
+
+    // 当前分组移除了条目：沿用已有的过滤结果，只去掉被移除的行，并保留其余选中行
+    private void requestsRemoved(List<GroupedItem> removed) {
+        long started = metrics.start();
+        if (compareWithFirstBox.isSelected()) {
+            responseDiffer.itemsRemoved(currentSelectedGroup, removed);
+        }
+        if (requestFilterWorker != null) {
             refreshRequestList();
+            return;
+        }
+        GroupStore.Items requests = groupStore.items(currentSelectedGroup);
+        if (compareWithFirstBox.isSelected()) {
+            // 首条被移除时重新开始比较
+            responseDiffer.compareWithFirst(currentSelectedGroup, requests);
+        }
+        int[] selection = requestList.getSelectedIndices();
+        int shown = requestListModel.itemsRemoved(requests, selection);
+        appendFilteredRows(requests, shown);
+        restoreSelection(selection);
+        updateStatusLabel();
+        metrics.record(PerformanceMetrics.Operation.REMOVE_REQUEST_LIST, started);
+    }
+
+    // 选中两行时比较这两行，选中一行时与分组的第一条比较
+    private void compareSelectedResponses() {
+        int[] rows = requestList.getSelectedIndices();
+        if (currentSelectedGroup == null || rows.length == 0 || rows.length > 2) {
+            showStatusMessage("请选择一个或两个请求进行比较", DANGER_COLOR);
+            return;
+        }
+        GroupedItem right = requestListModel.getElementAt(rows[rows.length - 1]);
+        GroupedItem left;
+        String leftLabel;
+        if (rows.length == 2) {
+            left = requestListModel.getElementAt(rows[0]);
+            leftLabel = "第 " + (rows[0] + 1) + " 行  " + left.summary().displayText();
         } else {
-            requestListModel.clear();
-            showStatusMessage("暂无分组", null);
+            List<GroupedItem> items = groupStore.items(currentSelectedGroup);
+            if (items.isEmpty() || items.get(0) == right) {
+                showStatusMessage("请再选择一个请求进行比较", DANGER_COLOR);
+                return;
+            }
+            left = items.get(0);
+            leftLabel = "分组第一条  " + left.summary().displayText();
         }
+        String rightLabel = "第 " + (rows[rows.length - 1] + 1) + " 行  " + right.summary().displayText();
+        new ResponseDiffDialog(mainPanel, responseDiffer, left, leftLabel, right, rightLabel).setVisible(true);
+    }
 
-        groupListPanel.revalidate();
-        groupListPanel.repaint();
+    private void toggleCompareWithFirst() {
+        if (compareWithFirstBox.isSelected() && currentSelectedGroup != null) {
+            responseDiffer.compareWithFirst(currentSelectedGroup, groupStore.items(currentSelectedGroup));
+        } else {
+            responseDiffer.stopComparing();
+        }
+        requestList.repaint();
     }
 
-    private void refreshRequestList() {
-        requestListModel.clear();
-        if (currentSelectedGroup != null) {
-            List<HttpRequestResponse> requests = groupMap.getOrDefault(currentSelectedGroup, new ArrayList<>());
-            for (HttpRequestResponse item : requests) {
-                requestListModel.addElement(item);
+    // 比较线程的进度，已在 EDT 上
+    private void baselineProgress(String group, int compared, int total) {
+        if (!group.equals(currentSelectedGroup) || !responseDiffer.isComparing()) {
+            return;
+        }
+        requestList.repaint();
+        if (compared < total) {
+            showStatusMessage("正在与首条比较: " + compared + "/" + total, null);
+            return;
+        }
+        int row = mostDifferentRow();
+        if (row < 0) {
+            showStatusMessage("已与首条比较 " + total + " 个请求，响应都相同", SUCCESS_COLOR);
+        } else {
+            ResponseDiff.Stat stat = responseDiffer.stat(requestListModel.getElementAt(row));
+            showStatusMessage("已与首条比较 " + total + " 个请求，差异最大的是第 " + (row + 1) + " 行 (" + stat.label + ")",
+                    SUCCESS_COLOR);
+        }
+    }
+
+    // 当前显示的行中与首条差异最大的一行，还没有结果时为 -1
+    private int mostDifferentRow() {
+        int best = -1;
+        int bestSize = 0;
+        for (int row = 0; row < requestListModel.getSize(); row++) {
+            ResponseDiff.Stat stat = responseDiffer.stat(requestListModel.getElementAt(row));
+            if (stat != null && stat.size() > bestSize) {
+                best = row;
+                bestSize = stat.size();
             }
         }
-        updateStatusLabel();
+        return best;
+    }
+
+    private void selectMostDifferent() {
+        if (!responseDiffer.isComparing()) {
+            compareWithFirstBox.setSelected(true);
+            toggleCompareWithFirst();
+            showStatusMessage("正在与首条比较，完成后再试", null);
+            return;
+        }
+        int row = mostDifferentRow();
+        if (row < 0) {
+            showStatusMessage("没有与首条不同的响应", null);
+            return;
+        }
+        requestList.setSelectedIndex(row);
+        requestList.ensureIndexIsVisible(row);
+    }
+
+    // 选中升序的行号（-1 表示已不存在），连续的行合并为一个区间，只触发一次选择事件
+    private void restoreSelection(int[] rows) {
+        ListSelectionModel selectionModel = requestList.getSelectionModel();
+        selectionModel.setValueIsAdjusting(true);
+        selectionModel.clearSelection();
+        int start = -1;
+        int end = -1;
+        for (int row : rows) {
+            if (row < 0) {
+                continue;
+            }
+            if (start >= 0 && row == end + 1) {
+                end = row;
+                continue;
+            }
+            if (start >= 0) {
+                selectionModel.addSelectionInterval(start, end);
+            }
+            start = row;
+            end = row;
+        }
+        if (start >= 0) {
+            selectionModel.addSelectionInterval(start, end);
+        }
+        selectionModel.setValueIsAdjusting(false);
+    }
+
+    private void applyRequestFilter() {
+        String query = requestFilterField.getText().trim();
+        ItemFilter filter = null;
+        if (!query.isEmpty()) {
+            try {
+                filter = ItemFilter.compile(query);
+            } catch (IllegalArgumentException e) {
+                requestFilterField.setBackground(new Color(255, 235, 235));
+                requestFilterField.setToolTipText(e.getMessage());
+                showStatusMessage("过滤条件无效: " + e.getMessage(), DANGER_COLOR);
+                return;
+            }
+        }
+        requestFilterField.setBackground(UIManager.getColor("TextField.background"));
+        requestFilterField.setToolTipText(ItemFilter.SYNTAX_HELP);
+        requestFilter = filter;
+        refreshRequestList();
+    }
+
+    private void clearRequestFilter() {
+        requestFilterField.setText("");
+        requestFilterTimer.stop();
+        applyRequestFilter();
     }
 
     private void updateStatusLabel() {
+        updateGroupStats();
         if (currentSelectedGroup == null) {
             statusLabel.setText("就绪");
         } else {
-            int totalRequests = groupMap.getOrDefault(currentSelectedGroup, new ArrayList<>()).size();
+            int totalRequests = groupStore.size(currentSelectedGroup);
             int selectedRequests = requestList.getSelectedIndices().length;
+            String text = "分组: " + currentSelectedGroup + " | 总数: " + totalRequests;
+            if (requestFilterWorker != null) {
+                text += " | 正在过滤...";
+            } else if (requestListModel.isFiltered()) {
+                text += " | 匹配: " + requestListModel.getSize();
+            }
             if (selectedRequests > 0) {
-                statusLabel.setText("分组: " + currentSelectedGroup + " | 总数: " + totalRequests + " | 已选择: " + selectedRequests);
+                statusLabel.setText(text + " | 已选择: " + selectedRequests);
             } else {
-                statusLabel.setText("分组: " + currentSelectedGroup + " | 总数: " + totalRequests + " 个请求");
+                statusLabel.setText(text + " 个请求");
             }
         }
     }
 
+    // 统计快照在分组修改后只生成一次，选中请求等不修改分组的刷新直接复用
+    private void updateGroupStats() {
+        if (currentSelectedGroup == null) {
+            groupStatsLabel.setText(" ");
+            groupStatsLabel.setToolTipText(null);
+            return;
+        }
+        GroupStats.Snapshot stats = groupStore.stats(currentSelectedGroup);
+        groupStatsLabel.setText(stats.summary());
+        groupStatsLabel.setToolTipText(stats.details());
+    }
+
     private void showStatusMessage(String message, Color color) {
         statusLabel.setText(message);
         if (color != null) {
@@ -484,105 +1063,316 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
     }
 
     private void filterGroups() {
-        String searchText = searchField.getText().toLowerCase().trim();
-
-        for (Map.Entry<String, JToggleButton> entry : groupButtons.entrySet()) {
-            String groupName = entry.getKey();
-            JToggleButton button = entry.getValue();
-            boolean matches = searchText.isEmpty() || groupName.toLowerCase().contains(searchText);
-            button.setVisible(matches);
+        long started = metrics.start();
+        groupListModel.setFilter(searchField.getText());
+        if (currentSelectedGroup != null) {
+            selectGroupInSidebar(currentSelectedGroup);
         }
-
-        groupListPanel.revalidate();
-        groupListPanel.repaint();
+        metrics.record(PerformanceMetrics.Operation.REFRESH_GROUP_LIST, started);
     }
 
     private void removeSelectedRequestsFromCurrentGroup() {
+        if (rejectWhileLoading()) {
+            return;
+        }
         if (currentSelectedGroup == null) {
             JOptionPane.showMessageDialog(mainPanel, "请先选择一个分组", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        List<HttpRequestResponse> selectedRequests = requestList.getSelectedValuesList();
-        if (selectedRequests.isEmpty()) {
+        // 按选中的行号移除，不需要在分组中逐个查找条目
+        int[] selectedRows = requestList.getSelectedIndices();
+        if (selectedRows.length == 0) {
             JOptionPane.showMessageDialog(mainPanel, "请先选择要移除的请求", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
         int result = JOptionPane.showConfirmDialog(mainPanel,
-                "确定要从分组 '" + currentSelectedGroup + "' 中移除 " + selectedRequests.size() + " 个请求吗？",
+                "确定要从分组 '" + currentSelectedGroup + "' 中移除 " + selectedRows.length + " 个请求吗？",
                 "确认移除", JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            List<HttpRequestResponse> groupList = groupMap.get(currentSelectedGroup);
-            for (HttpRequestResponse request : selectedRequests) {
-                groupList.remove(request);
+            List<GroupedItem> shown = requestListModel.items();
+            BitSet rows = new BitSet(shown.size());
+            for (int index : selectedRows) {
+                rows.set(requestListModel.itemRow(index));
             }
-            refreshRequestList();
-            saveDataToProject();
-            showStatusMessage("已移除 " + selectedRequests.size() + " 个请求", SUCCESS_COLOR);
+            List<GroupedItem> removed = groupStore.removeRows(currentSelectedGroup, shown, rows);
+            showStatusMessage("已移除 " + removed.size() + " 个请求", SUCCESS_COLOR);
         }
     }
 
-    private void exportAllGroups() {
-        if (groupMap.isEmpty()) {
+    private void showExportDialog() {
+        if (groupStore.isEmpty()) {
             JOptionPane.showMessageDialog(mainPanel, "没有可导出的分组", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        // 创建文件选择器
+        JComboBox<GroupExporter.Format> formatBox = new JComboBox<>(GroupExporter.Format.values());
+        JRadioButton currentGroupBtn = new JRadioButton("当前分组" + (currentSelectedGroup != null ? " '" + currentSelectedGroup + "'" : ""));
+        JRadioButton allGroupsBtn = new JRadioButton("所有分组", true);
+        currentGroupBtn.setEnabled(currentSelectedGroup != null);
+        ButtonGroup scopeGroup = new ButtonGroup();
+        scopeGroup.add(currentGroupBtn);
+        scopeGroup.add(allGroupsBtn);
+        JCheckBox perGroupBox = new JCheckBox("每个分组一个文件（选择目录）");
+        currentGroupBtn.addActionListener(e -> perGroupBox.setEnabled(false));
+        allGroupsBtn.addActionListener(e -> perGroupBox.setEnabled(true));
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 5));
+        panel.add(new JLabel("格式："));
+        panel.add(formatBox);
+        panel.add(new JLabel("范围："));
+        panel.add(currentGroupBtn);
+        panel.add(allGroupsBtn);
+        panel.add(perGroupBox);
+
+        int option = JOptionPane.showConfirmDialog(mainPanel, panel, "导出分组", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        GroupExporter.Format format = (GroupExporter.Format) formatBox.getSelectedItem();
+        Map<String, List<GroupedItem>> groups;
+        if (currentGroupBtn.isSelected()) {
+            groups = Collections.singletonMap(currentSelectedGroup, groupStore.items(currentSelectedGroup));
+        } else {
+            groups = groupStore.snapshot();
+        }
+        boolean perGroup = allGroupsBtn.isSelected() && perGroupBox.isSelected();
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出分组");
+        if (perGroup) {
+            fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        } else {
+            String baseName = currentGroupBtn.isSelected() ? "group_export" : "all_groups_export";
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setSelectedFile(new File(baseName + "." + format.extension));
+            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(format.toString(), format.extension));
+        }
+        if (fileChooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File selected = fileChooser.getSelectedFile();
+        if (!perGroup && !selected.getName().toLowerCase().endsWith("." + format.extension)) {
+            selected = new File(selected.getAbsolutePath() + "." + format.extension);
+        }
+        exportInBackground(groups, format, selected.toPath(), perGroup);
+    }
+
+    // 在后台线程导出；快照是不可变的，导出期间分组可以继续修改
+    private void exportInBackground(Map<String, List<GroupedItem>> groups, GroupExporter.Format format, Path target, boolean perGroup) {
+        runWithProgress("正在导出到 " + target,
+                progress -> perGroup
+                        ? GroupExporter.exportToDirectory(groups, format, target, progress)
+                        : GroupExporter.exportToFile(groups, format, target, progress),
+                result -> {
+                    String message = "已导出 " + result.exported + " 个请求到 " + target;
+                    if (result.skipped > 0) {
+                        message += "（" + result.skipped + " 个无法读取已跳过）";
+                    }
+                    showStatusMessage(message, SUCCESS_COLOR);
+                },
+                "导出", "export groups");
+    }
+
+    private void showImportDialog() {
+        if (rejectWhileLoading()) {
+            return;
+        }
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("导出所有分组的URL");
+        fileChooser.setDialogTitle("导入到分组");
         fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-        fileChooser.setSelectedFile(new File("all_groups_export.txt"));
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "HAR / JSON Lines / Burp XML", "har", "jsonl", "ndjson", "xml"));
+        if (fileChooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = fileChooser.getSelectedFile().toPath();
+
+        JComboBox<GroupImporter.Format> formatBox = new JComboBox<>(GroupImporter.Format.values());
+        try {
+            formatBox.setSelectedItem(GroupImporter.Format.detect(file));
+        } catch (IOException e) {
+            showStatusMessage("无法读取文件: " + e.getMessage(), DANGER_COLOR);
+            return;
+        }
+        JComboBox<String> groupBox = new JComboBox<>(groupStore.groupNames().toArray(new String[0]));
+        groupBox.setEditable(true);
+        groupBox.setSelectedItem(currentSelectedGroup != null ? currentSelectedGroup : "导入");
+        JCheckBox fileGroupsBox = new JCheckBox("使用文件中记录的分组名（HAR 的 comment、JSON Lines 的 group）", true);
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 5));
+        panel.add(new JLabel("格式："));
+        panel.add(formatBox);
+        panel.add(new JLabel("目标分组："));
+        panel.add(groupBox);
+        panel.add(fileGroupsBox);
+
+        int option = JOptionPane.showConfirmDialog(mainPanel, panel, "导入 " + file.getFileName(), JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        Object selectedGroup = groupBox.getSelectedItem();
+        String group = selectedGroup != null ? selectedGroup.toString().trim() : "";
+        if (group.isEmpty()) {
+            showStatusMessage("请指定目标分组", DANGER_COLOR);
+            return;
+        }
+        GroupImporter.Format format = (GroupImporter.Format) formatBox.getSelectedItem();
+        boolean useFileGroups = fileGroupsBox.isSelected();
+
+        // 条目按批写入分组，侧边栏、列表和搜索索引由 GroupChangeListener 每批更新一次
+        runWithProgress("正在导入 " + file.getFileName(),
+                progress -> new GroupImporter(groupStore, journal, group, useFileGroups, progress).importFile(file, format),
+                result -> {
+                    String message = "已导入 " + result.imported + " 个请求到 " + result.groups.size() + " 个分组";
+                    if (result.duplicates > 0) {
+                        message += "，" + result.duplicates + " 个重复请求已" + duplicateActionText();
+                    }
+                    if (result.failed > 0) {
+                        message += "，" + result.failed + " 个条目无法解析";
+                    }
+                    showStatusMessage(message, result.failed > 0 ? DANGER_COLOR : SUCCESS_COLOR);
+                },
+                "导入", "import items");
+    }
+
+    private void showReplayDialog() {
+        if (rejectWhileLoading()) {
+            return;
+        }
+        if (currentSelectedGroup == null || groupStore.size(currentSelectedGroup) == 0) {
+            JOptionPane.showMessageDialog(mainPanel, "请先选择一个包含请求的分组", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String sourceGroup = currentSelectedGroup;
+        List<GroupedItem> items = groupStore.items(sourceGroup);
+
+        JSpinner concurrencySpinner = new JSpinner(new SpinnerNumberModel(settings.replayConcurrency(), 1, 64, 1));
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(settings.replayRate(), 0, 10000, 1));
+        JTextArea headersArea = new JTextArea(4, 36);
+        headersArea.setToolTipText("每行一个 名称: 值，替换同名请求头，没有时添加");
+        JTextField cookiesField = new JTextField();
+        cookiesField.setToolTipText("名称=值; 名称=值，替换 Cookie 请求头中的同名 Cookie，没有时添加");
+        JCheckBox secureBox = new JCheckBox("无法确定协议时使用 HTTPS", true);
+
+        JPanel optionsPanel = new JPanel(new GridLayout(0, 2, 10, 8));
+        optionsPanel.add(new JLabel("并发数："));
+        optionsPanel.add(concurrencySpinner);
+        optionsPanel.add(new JLabel("每秒请求数 (0 = 不限)："));
+        optionsPanel.add(rateSpinner);
+        optionsPanel.add(new JLabel("替换 Cookie："));
+        optionsPanel.add(cookiesField);
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(new JLabel("重新发送分组 '" + sourceGroup + "' 中的 " + items.size() + " 个请求"), BorderLayout.NORTH);
+        JPanel center = new JPanel(new BorderLayout(0, 5));
+        center.add(optionsPanel, BorderLayout.NORTH);
+        center.add(new JLabel("替换请求头（每行一个 名称: 值）："), BorderLayout.CENTER);
+        panel.add(center, BorderLayout.CENTER);
+        JPanel south = new JPanel(new BorderLayout(0, 5));
+        south.add(new JScrollPane(headersArea), BorderLayout.CENTER);
+        south.add(secureBox, BorderLayout.SOUTH);
+        panel.add(south, BorderLayout.SOUTH);
+
+        GroupReplayer.Options options;
+        while (true) {
+            int option = JOptionPane.showConfirmDialog(mainPanel, panel, "重放分组", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (option != JOptionPane.OK_OPTION) {
+                return;
+            }
+            try {
+                options = new GroupReplayer.Options((Integer) concurrencySpinner.getValue(), (Integer) rateSpinner.getValue(),
+                        GroupReplayer.Options.parseHeaders(headersArea.getText()),
+                        GroupReplayer.Options.parseCookies(cookiesField.getText()), secureBox.isSelected());
+                break;
+            } catch (IllegalArgumentException e) {
+                // 保留已输入的内容，修改后重新提交
+                JOptionPane.showMessageDialog(mainPanel, e.getMessage(), "输入无效", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        settings.setReplayConcurrency(options.concurrency);
+        settings.setReplayRate(options.requestsPerSecond);
+
+        String targetGroup = GroupReplayer.targetName(groupStore, sourceGroup, LocalDateTime.now());
+        GroupReplayer.Options replayOptions = options;
+        runWithProgress("正在重放 " + sourceGroup,
+                progress -> new GroupReplayer(groupStore, request -> api.http().sendRequest(request), replayOptions, progress)
+                        .replay(items, targetGroup),
+                result -> {
+                    api.logging().logToOutput("Replayed group " + sourceGroup + " into " + result.group + ": "
+                            + result.replayed + " requests, " + result.changed() + " status changes, "
+                            + result.failed + " without response, " + result.skipped + " skipped");
+                    currentSelectedGroup = result.group;
+                    selectGroupInSidebar(result.group);
+                    refreshRequestList();
+                    showStatusMessage("已重放 " + result.replayed + " 个请求，状态码变化 " + result.changed() + " 个",
+                            result.changed() > 0 || result.failed > 0 ? DANGER_COLOR : SUCCESS_COLOR);
+                    JOptionPane.showMessageDialog(mainPanel, result.summary(), "重放完成", JOptionPane.INFORMATION_MESSAGE);
+                },
+                "重放", "replay group");
+    }
+
+    // 可取消的后台任务，取消时抛出 CancellationException
+    private interface BackgroundTask<T> {
+        T run(TaskProgress progress) throws Exception;
+    }
+
+    // 在后台线程执行任务，进度显示在可取消的 ProgressMonitor 中，结果在 EDT 上处理
+    private <T> void runWithProgress(String title, BackgroundTask<T> task, Consumer<T> onSuccess, String actionText, String logAction) {
+        ProgressMonitor monitor = new ProgressMonitor(mainPanel, title, "", 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        TaskProgress progress = new TaskProgress() {
             @Override
-            public boolean accept(File f) {
-                return f.isDirectory() || f.getName().toLowerCase().endsWith(".txt");
+            public void update(long done, long total, String note) {
+                SwingUtilities.invokeLater(() -> {
+                    if (monitor.isCanceled()) {
+                        cancelled.set(true);
+                        return;
+                    }
+                    monitor.setProgress(total > 0 ? (int) Math.min(1000, done * 1000 / total) : 1000);
+                    monitor.setNote(note);
+                });
             }
 
             @Override
-            public String getDescription() {
-                return "Text Files (*.txt)";
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+        // 进度回调是节流的，单个条目很大时靠定时器及时发现取消
+        Timer cancelPoll = new Timer(200, e -> {
+            if (monitor.isCanceled()) {
+                cancelled.set(true);
             }
         });
+        cancelPoll.start();
 
-        int result = fileChooser.showSaveDialog(mainPanel);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = fileChooser.getSelectedFile();
-            // 确保文件有 .txt 扩展名
-            if (!selectedFile.getName().toLowerCase().endsWith(".txt")) {
-                selectedFile = new File(selectedFile.getAbsolutePath() + ".txt");
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run(progress);
             }
 
-            try {
-                // 构建导出内容
-                StringBuilder exportContent = new StringBuilder();
-                for (Map.Entry<String, List<HttpRequestResponse>> entry : groupMap.entrySet()) {
-                    String groupName = entry.getKey();
-                    List<HttpRequestResponse> requests = entry.getValue();
-                    exportContent.append("【").append(groupName).append("】\n");
-                    for (HttpRequestResponse requestResponse : requests) {
-                        String url = requestResponse.request().path();
-                        if (requestResponse.request().query() != null && !requestResponse.request().query().isEmpty()) {
-                            url += "?" + requestResponse.request().query();
-                        }
-                        exportContent.append(url).append("\n");
+            @Override
+            protected void done() {
+                cancelPoll.stop();
+                monitor.close();
+                try {
+                    onSuccess.accept(get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        showStatusMessage(actionText + "已取消", DANGER_COLOR);
+                        return;
                     }
-                    exportContent.append("\n"); // 分组间空一行
-                }
-
-                // 写入文件
-                try (FileWriter writer = new FileWriter(selectedFile, StandardCharsets.UTF_8)) {
-                    writer.write(exportContent.toString());
+                    api.logging().logToError("Failed to " + logAction + ": " + e.getCause());
+                    showStatusMessage(actionText + "失败: " + e.getCause().getMessage(), DANGER_COLOR);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-
-                showStatusMessage("所有分组已导出到 " + selectedFile.getAbsolutePath(), SUCCESS_COLOR);
-            } catch (IOException e) {
-                api.logging().logToError("Failed to export all groups: " + e.getMessage());
-                showStatusMessage("导出失败: " + e.getMessage(), DANGER_COLOR);
             }
-        }
+        }.execute();
     }
 
     @Override
@@ -593,9 +1383,9 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
             JMenuItem item = new JMenuItem(ICON_FOLDER + " 发送到分组历史");
             item.addActionListener(e -> {
                 List<HttpRequestResponse> messages = event.selectedRequestResponses();
-                if (messages.isEmpty()) return;
+                if (messages.isEmpty() || rejectWhileLoading()) return;
 
-                String[] groupNames = groupMap.keySet().toArray(new String[0]);
+                String[] groupNames = groupStore.groupNames().toArray(new String[0]);
                 String group = (String) JOptionPane.showInputDialog(
                         null,
                         "选择或输入分组：",
@@ -607,20 +1397,18 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
                 );
 
                 if (group != null && !group.trim().isEmpty()) {
-                    groupMap.putIfAbsent(group, new ArrayList<>());
-                    for (HttpRequestResponse message : messages) {
-                        groupMap.get(group).add(message);
+                    // 侧边栏、当前列表和搜索索引由 GroupChangeListener 更新
+                    GroupStore.AppendResult result = groupStore.append(group, messages);
+                    if (!group.equals(currentSelectedGroup)) {
+                        currentSelectedGroup = group;
+                        selectGroupInSidebar(group);
+                        refreshRequestList();
                     }
-
-                    if (!groupButtons.containsKey(group)) {
-                        addGroupButton(group);
+                    String message = "已添加 " + result.added.size() + " 个请求到分组 '" + group + "'";
+                    if (result.duplicates > 0) {
+                        message += "，" + result.duplicates + " 个重复请求已" + duplicateActionText();
                     }
-
-                    currentSelectedGroup = group;
-                    updateSelectedGroupButton(group);
-                    refreshRequestList();
-                    saveDataToProject();
-                    showStatusMessage("已添加 " + messages.size() + " 个请求到分组 '" + group + "'", SUCCESS_COLOR);
+                    showStatusMessage(message, SUCCESS_COLOR);
                 }
             });
             menuItems.add(item);
@@ -629,151 +1417,178 @@ public class BurpExtender implements BurpExtension, ContextMenuItemsProvider {
         return menuItems;
     }
 
-    private void saveDataToProject() {
-        try {
-            Preferences preferences = api.persistence().preferences();
-            Map<String, List<SerializableRequestResponse>> serializableData = new HashMap<>();
-
-            for (Map.Entry<String, List<HttpRequestResponse>> entry : groupMap.entrySet()) {
-                String groupName = entry.getKey();
-                List<HttpRequestResponse> requests = entry.getValue();
-                List<SerializableRequestResponse> serializableRequests = new ArrayList<>();
-
-                for (HttpRequestResponse requestResponse : requests) {
-                    String requestBase64 = null;
-                    String responseBase64 = null;
+    // 在后台线程加载项目数据，分组就绪后逐个出现在侧边栏，进度显示在状态栏
+    private void loadDataFromProject() {
+        loading = true;
+        loadProgressBar.setIndeterminate(true);
+        loadProgressBar.setString("正在加载分组...");
+        loadProgressBar.setVisible(true);
+        Thread loader = new Thread(() -> {
+            long started = System.nanoTime();
+            core.load((group, items, loadedGroups, totalGroups) -> SwingUtilities.invokeLater(() -> {
+                loadProgressBar.setIndeterminate(false);
+                loadProgressBar.setMaximum(totalGroups);
+                loadProgressBar.setValue(loadedGroups);
+                loadProgressBar.setString("正在加载分组 " + loadedGroups + "/" + totalGroups);
+            }));
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            SwingUtilities.invokeLater(() -> {
+                loading = false;
+                loadProgressBar.setVisible(false);
+                persistenceLabel.setText("已加载 " + groupStore.groupNames().size() + " 个分组 (" + elapsedMillis + " ms)");
+                // 分组加载完成后才开始接收自动分组的流量
+                autoGrouper.setEnabled(settings.autoGroupEnabled());
+            });
+        }, "GroupedHistory-Loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
-                    if (requestResponse.request() != null) {
-                        requestBase64 = Base64.getEncoder().encodeToString(
-                                requestResponse.request().toByteArray().getBytes());
-                    }
+    // 加载期间修改分组会被加载结果覆盖，提示稍后再试；返回 true 表示应放弃本次操作
+    private boolean rejectWhileLoading() {
+        if (loading) {
+            JOptionPane.showMessageDialog(mainPanel, "正在加载项目中的分组，请稍候再试", "提示", JOptionPane.INFORMATION_MESSAGE);
+        }
+        return loading;
+    }
 
-                    if (requestResponse.response() != null) {
-                        responseBase64 = Base64.getEncoder().encodeToString(
-                                requestResponse.response().toByteArray().getBytes());
-                    }
+    // 分组变更通知，在 EDT 上调用
+    private class GroupChangeListener implements GroupStore.Listener {
+        @Override
+        public void groupsReloaded() {
+            refreshGroupList();
+            searchIndex.rebuild(groupStore.snapshot());
+        }
 
-                    serializableRequests.add(new SerializableRequestResponse(requestBase64, responseBase64));
-                }
+        @Override
+        public void groupCreated(String group) {
+            groupListModel.groupAdded(group);
+        }
 
-                serializableData.put(groupName, serializableRequests);
+        @Override
+        public void groupDeleted(String group, List<GroupedItem> items) {
+            searchIndex.remove(items);
+            groupListModel.groupRemoved(group);
+            if (group.equals(currentSelectedGroup)) {
+                selectFirstGroup();
             }
-
-            String jsonData = gson.toJson(serializableData);
-            preferences.setString(PERSISTENCE_KEY, jsonData);
-
-        } catch (Exception e) {
-            api.logging().logToError("Failed to save grouped history data: " + e.getMessage());
         }
-    }
 
-    private void loadDataFromProject() {
-        try {
-            Preferences preferences = api.persistence().preferences();
-            String jsonData = preferences.getString(PERSISTENCE_KEY);
-
-            if (jsonData == null || jsonData.trim().isEmpty()) {
-                return;
+        @Override
+        public void itemsAdded(String group, List<GroupedItem> items) {
+            metrics.recordIngested(items.size());
+            searchIndex.add(group, items);
+            groupListModel.groupChanged(group);
+            if (group.equals(currentSelectedGroup)) {
+                requestsAppended();
             }
+        }
 
-            Type type = new TypeToken<Map<String, List<SerializableRequestResponse>>>(){}.getType();
-            Map<String, List<SerializableRequestResponse>> serializableData = gson.fromJson(jsonData, type);
-
-            groupMap.clear();
-
-            for (Map.Entry<String, List<SerializableRequestResponse>> entry : serializableData.entrySet()) {
-                String groupName = entry.getKey();
-                List<SerializableRequestResponse> serializableRequests = entry.getValue();
-                List<HttpRequestResponse> requests = new ArrayList<>();
-
-                for (SerializableRequestResponse serializableRequest : serializableRequests) {
-                    try {
-                        HttpRequest request = null;
-                        HttpResponse response = null;
+        @Override
+        public void itemsRemoved(String group, List<GroupedItem> items) {
+            searchIndex.remove(items);
+            groupListModel.groupChanged(group);
+            if (group.equals(currentSelectedGroup)) {
+                requestsRemoved(items);
+            }
+        }
 
-                        if (serializableRequest.request != null) {
-                            byte[] requestBytes = Base64.getDecoder().decode(serializableRequest.request);
-                            request = HttpRequest.httpRequest(new String(requestBytes, StandardCharsets.UTF_8));
-                        }
+        @Override
+        public void itemsUpdated(String group, List<GroupedItem> items) {
+            if (group.equals(currentSelectedGroup)) {
+                requestList.repaint();
+            }
+        }
+    }
 
-                        if (serializableRequest.response != null) {
-                            byte[] responseBytes = Base64.getDecoder().decode(serializableRequest.response);
-                            response = HttpResponse.httpResponse(new String(responseBytes, StandardCharsets.UTF_8));
-                        }
+    // 后台保存的进度显示在状态栏，回调来自写入线程
+    private class PersistenceStatusListener implements HistoryJournal.SaveListener {
+        @Override
+        public void saveStarted(int pendingOperations) {
+            SwingUtilities.invokeLater(() -> persistenceLabel.setText("正在保存 " + pendingOperations + " 项变更..."));
+        }
 
-                        if (request != null) {
-                            HttpRequestResponse requestResponse = HttpRequestResponse.httpRequestResponse(request, response);
-                            requests.add(requestResponse);
-                        }
+        @Override
+        public void saveFinished(int operations, long elapsedMillis) {
+            SwingUtilities.invokeLater(() -> persistenceLabel.setText(
+                    "已保存 (" + elapsedMillis + " ms) | 压缩率 " + formatCompressionRatio()));
+        }
 
-                    } catch (Exception e) {
-                        api.logging().logToError("Failed to load request from group " + groupName + ": " + e.getMessage());
-                    }
-                }
+        @Override
+        public void saveFailed(Exception error) {
+            SwingUtilities.invokeLater(() -> {
+                persistenceLabel.setText("保存失败");
+                showStatusMessage("保存失败: " + error.getMessage(), DANGER_COLOR);
+            });
+        }
+    }
 
-                if (!requests.isEmpty()) {
-                    groupMap.put(groupName, requests);
-                }
-            }
+    // 侧边栏的分组行：名称、条目数量和 4xx/5xx 响应数，工具提示是完整统计；选中的分组使用主题色
+    private static class GroupCellRenderer extends DefaultListCellRenderer {
+        private static final EmptyBorder CELL_BORDER = new EmptyBorder(8, 12, 8, 12);
 
-            refreshAllGroupButtons();
+        private final GroupListModel model;
 
-        } catch (Exception e) {
-            api.logging().logToError("Failed to load grouped history data: " + e.getMessage());
+        GroupCellRenderer(GroupListModel model) {
+            this.model = model;
         }
-    }
 
-    private static class EnhancedRequestResponseCellRenderer extends DefaultListCellRenderer {
         @Override
         public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
             super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
 
-            if (value instanceof HttpRequestResponse) {
-                HttpRequestResponse message = (HttpRequestResponse) value;
-                HttpRequest request = message.request();
-                HttpResponse response = message.response();
+            String groupName = (String) value;
+            GroupStats.Snapshot stats = model.stats(groupName);
+            int errors = stats.errors();
+            setText((isSelected ? ICON_FOLDER_OPEN : ICON_FOLDER) + " " + groupName + "  (" + stats.count
+                    + (errors > 0 ? " · ⚠ " + errors : "") + ")");
+            setToolTipText(stats.details());
+            setBackground(isSelected ? PRIMARY_COLOR : Color.WHITE);
+            setForeground(isSelected ? Color.WHITE : Color.BLACK);
+            setBorder(CELL_BORDER);
+            return this;
+        }
+    }
 
-                String method = request.method();
-                String path = request.path();
-                if (request.query() != null && !request.query().isEmpty()) {
-                    path += "?" + request.query();
-                }
+    // 行文本来自条目摘要中缓存的字符串，颜色和边框共用常量，绘制时不解析报文；只有与首条比较时才拼接差异标签
+    static class EnhancedRequestResponseCellRenderer extends DefaultListCellRenderer {
+        private static final Color SUCCESS_STATUS_COLOR = new Color(0, 128, 0);
+        private static final Color ERROR_STATUS_COLOR = new Color(220, 20, 60);
+        private static final EmptyBorder CELL_BORDER = new EmptyBorder(5, 10, 5, 10);
 
-                String status = "";
-                if (response != null) {
-                    status = " [" + response.statusCode() + "]";
-                }
+        private final ResponseDiffer differ;
 
-                setText(method + " " + path + status);
+        EnhancedRequestResponseCellRenderer() {
+            this(null);
+        }
 
-                // 根据HTTP方法设置图标
-                String methodIcon = getMethodIcon(method);
-                setText(methodIcon + " " + getText());
+        EnhancedRequestResponseCellRenderer(ResponseDiffer differ) {
+            this.differ = differ;
+        }
 
-                // 根据状态码设置颜色
-                if (response != null) {
-                    int statusCode = response.statusCode();
-                    if (statusCode >= 200 && statusCode < 300) {
-                        setForeground(isSelected ? Color.WHITE : new Color(0, 128, 0));
-                    } else if (statusCode >= 400) {
-                        setForeground(isSelected ? Color.WHITE : new Color(220, 20, 60));
-                    }
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            if (!(value instanceof GroupedItem)) {
+                return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            }
+            // 只使用摘要，绘制列表时不会触发条目原文的加载；行文本都已缓存，绘制时不再拼接
+            GroupedItem item = (GroupedItem) value;
+            String text = differ != null && differ.isComparing() ? differ.displayText(item) : item.displayText();
+            super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+
+            // 根据状态码设置颜色
+            ItemSummary summary = item.summary();
+            if (summary.hasResponse()) {
+                int statusCode = summary.statusCode();
+                if (statusCode >= 200 && statusCode < 300) {
+                    setForeground(isSelected ? Color.WHITE : SUCCESS_STATUS_COLOR);
+                } else if (statusCode >= 400) {
+                    setForeground(isSelected ? Color.WHITE : ERROR_STATUS_COLOR);
                 }
-
-                setBorder(new EmptyBorder(5, 10, 5, 10));
             }
-            return this;
-        }
 
-        private String getMethodIcon(String method) {
-            switch (method.toUpperCase()) {
-                case "GET": return "📄";
-                case "POST": return "📝";
-                case "PUT": return "✏️";
-                case "DELETE": return "🗑️";
-                case "PATCH": return "🔧";
-                default: return "📋";
-            }
+            setBorder(CELL_BORDER);
+            return this;
         }
     }
 }
@@ -0,0 +1,279 @@
+package burp;
+
+import com.google.gson.stream.JsonWriter;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// 性能诊断窗口：显示 PerformanceMetrics 的统计、内存占用和各分组的大小，每秒刷新，可导出为 JSON
+final class DiagnosticsDialog extends JDialog {
+    private static final String[] OPERATION_COLUMNS = {"操作", "次数", "平均 (ms)", "最长 (ms)", "数据量"};
+    private static final String[] GROUP_COLUMNS = {"分组", "条目数", "响应大小"};
+
+    // 某个分组当前的大小
+    private static final class GroupStat {
+        final String name;
+        final int items;
+        final long responseBytes;
+
+        GroupStat(String name, int items, long responseBytes) {
+            this.name = name;
+            this.items = items;
+            this.responseBytes = responseBytes;
+        }
+    }
+
+    private final PerformanceMetrics metrics;
+    private final GroupedHistorySettings settings;
+    private final GroupStore groupStore;
+    private final MessageCache messageCache;
+    private final SpillStore spillStore;
+    private final Runnable settingsChanged;
+
+    private final JCheckBox enabledBox = new JCheckBox("启用性能统计和 EDT 卡顿监视");
+    private final JSpinner thresholdSpinner;
+    private final DefaultTableModel operationModel = readOnlyModel(OPERATION_COLUMNS);
+    private final DefaultTableModel groupModel = readOnlyModel(GROUP_COLUMNS);
+    private final JLabel heapLabel = new JLabel();
+    private final JLabel cacheLabel = new JLabel();
+    private final JLabel ingestionLabel = new JLabel();
+    private final JLabel stallLabel = new JLabel();
+    private final JLabel sinceLabel = new JLabel();
+    private final Timer refreshTimer = new Timer(1000, e -> refresh());
+
+    DiagnosticsDialog(Component parent, PerformanceMetrics metrics, GroupedHistorySettings settings, GroupStore groupStore,
+                      MessageCache messageCache, SpillStore spillStore, Runnable settingsChanged) {
+        super(SwingUtilities.getWindowAncestor(parent), "性能诊断", ModalityType.MODELESS);
+        this.metrics = metrics;
+        this.settings = settings;
+        this.groupStore = groupStore;
+        this.messageCache = messageCache;
+        this.spillStore = spillStore;
+        this.settingsChanged = settingsChanged;
+
+        enabledBox.setSelected(settings.diagnosticsEnabled());
+        enabledBox.setToolTipText("关闭时不计时也不监视 EDT，几乎没有额外开销");
+        enabledBox.addActionListener(e -> applySettings());
+        thresholdSpinner = new JSpinner(new SpinnerNumberModel(settings.stallThresholdMs(), 50, 60000, 50));
+        thresholdSpinner.setToolTipText("EDT 被本扩展阻塞超过该时长时写入扩展错误日志");
+        thresholdSpinner.addChangeListener(e -> applySettings());
+
+        JPanel settingsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        settingsPanel.add(enabledBox);
+        settingsPanel.add(new JLabel("卡顿阈值 (ms)："));
+        settingsPanel.add(thresholdSpinner);
+
+        JPanel summaryPanel = new JPanel(new GridLayout(0, 2, 10, 4));
+        summaryPanel.setBorder(new TitledBorder("概览"));
+        summaryPanel.add(new JLabel("JVM 堆 (已用 / 上限)："));
+        summaryPanel.add(heapLabel);
+        summaryPanel.add(new JLabel("内存缓存 / 堆外缓存："));
+        summaryPanel.add(cacheLabel);
+        summaryPanel.add(new JLabel("新增条目 (最近 10 秒速率)："));
+        summaryPanel.add(ingestionLabel);
+        summaryPanel.add(new JLabel("EDT 卡顿 (次数 / 最长)："));
+        summaryPanel.add(stallLabel);
+        summaryPanel.add(new JLabel("统计开始于："));
+        summaryPanel.add(sinceLabel);
+
+        JScrollPane operationPane = new JScrollPane(new JTable(operationModel));
+        operationPane.setBorder(new TitledBorder("耗时"));
+        operationPane.setPreferredSize(new Dimension(0, 170));
+        JScrollPane groupPane = new JScrollPane(new JTable(groupModel));
+        groupPane.setBorder(new TitledBorder("分组"));
+
+        JPanel tables = new JPanel(new BorderLayout(0, 8));
+        tables.add(operationPane, BorderLayout.NORTH);
+        tables.add(groupPane, BorderLayout.CENTER);
+
+        JButton resetButton = new JButton("清零");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        JButton exportButton = new JButton("📤 导出 JSON");
+        exportButton.addActionListener(e -> exportJson());
+        JButton closeButton = new JButton("关闭");
+        closeButton.addActionListener(e -> setVisible(false));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        buttons.add(resetButton);
+        buttons.add(exportButton);
+        buttons.add(closeButton);
+
+        JPanel north = new JPanel(new BorderLayout(0, 8));
+        north.add(settingsPanel, BorderLayout.NORTH);
+        north.add(summaryPanel, BorderLayout.CENTER);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(new EmptyBorder(10, 10, 10, 10));
+        content.add(north, BorderLayout.NORTH);
+        content.add(tables, BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+
+        // 只在窗口可见时刷新
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                refresh();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                refreshTimer.stop();
+            }
+        });
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setContentPane(content);
+        setSize(640, 620);
+        setLocationRelativeTo(parent);
+    }
+
+    // 卸载扩展时调用
+    void close() {
+        refreshTimer.stop();
+        dispose();
+    }
+
+    private void applySettings() {
+        settings.setDiagnosticsEnabled(enabledBox.isSelected());
+        settings.setStallThresholdMs((Integer) thresholdSpinner.getValue());
+        settingsChanged.run();
+        refresh();
+    }
+
+    // 每张表一次换掉全部数据，只触发一次表格事件
+    private void refresh() {
+        PerformanceMetrics.Operation[] operations = PerformanceMetrics.Operation.values();
+        Object[][] operationRows = new Object[operations.length][];
+        for (int i = 0; i < operations.length; i++) {
+            PerformanceMetrics.Stat stat = metrics.stat(operations[i]);
+            operationRows[i] = new Object[]{
+                    operations[i].label,
+                    stat.count,
+                    String.format("%.2f", stat.averageMillis()),
+                    String.format("%.1f", stat.maxMillis()),
+                    stat.bytes > 0 ? Formats.bytes(stat.bytes) : ""
+            };
+        }
+        operationModel.setDataVector(operationRows, OPERATION_COLUMNS);
+
+        List<GroupStat> groups = groupStats();
+        Object[][] groupRows = new Object[groups.size()][];
+        for (int i = 0; i < groups.size(); i++) {
+            GroupStat group = groups.get(i);
+            groupRows[i] = new Object[]{group.name, group.items, Formats.bytes(group.responseBytes)};
+        }
+        groupModel.setDataVector(groupRows, GROUP_COLUMNS);
+
+        Runtime runtime = Runtime.getRuntime();
+        heapLabel.setText(Formats.bytes(runtime.totalMemory() - runtime.freeMemory())
+                + " / " + Formats.bytes(runtime.maxMemory()));
+        cacheLabel.setText(Formats.bytes(messageCache.heapBytes()) + " / " + Formats.bytes(spillStore.mappedBytes()));
+        ingestionLabel.setText(metrics.ingestedItems() + " (" + String.format("%.1f", metrics.ingestionRate()) + " 条/秒)");
+        stallLabel.setText(metrics.stalls() + " / " + metrics.longestStallMillis() + " ms");
+        sinceLabel.setText(metrics.isEnabled() ? Instant.ofEpochMilli(metrics.resetAt()).toString() : "未启用");
+    }
+
+    // 取 GroupStore 增量维护的统计，不遍历条目
+    private List<GroupStat> groupStats() {
+        List<GroupStat> stats = new ArrayList<>();
+        for (String name : groupStore.groupNames()) {
+            GroupStats.Snapshot snapshot = groupStore.stats(name);
+            stats.add(new GroupStat(name, snapshot.count, snapshot.totalBytes));
+        }
+        return stats;
+    }
+
+    private void exportJson() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出性能诊断");
+        fileChooser.setSelectedFile(new File("grouped_history_diagnostics.json"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writeJson(out);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "导出失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JOptionPane.showMessageDialog(this, "已导出到 " + file, "导出完成", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void writeJson(Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("generatedAt").value(Instant.now().toString());
+        json.name("enabled").value(metrics.isEnabled());
+        json.name("since").value(Instant.ofEpochMilli(metrics.resetAt()).toString());
+        json.name("stallThresholdMs").value(settings.stallThresholdMs());
+
+        Runtime runtime = Runtime.getRuntime();
+        json.name("memory").beginObject();
+        json.name("heapUsedBytes").value(runtime.totalMemory() - runtime.freeMemory());
+        json.name("heapMaxBytes").value(runtime.maxMemory());
+        json.name("messageCacheBytes").value(messageCache.heapBytes());
+        json.name("offHeapBytes").value(spillStore.mappedBytes());
+        json.endObject();
+
+        json.name("operations").beginObject();
+        for (PerformanceMetrics.Operation operation : PerformanceMetrics.Operation.values()) {
+            PerformanceMetrics.Stat stat = metrics.stat(operation);
+            json.name(operation.key).beginObject();
+            json.name("count").value(stat.count);
+            json.name("totalMillis").value(stat.totalNanos / 1_000_000.0);
+            json.name("averageMillis").value(stat.averageMillis());
+            json.name("maxMillis").value(stat.maxMillis());
+            json.name("bytes").value(stat.bytes);
+            json.endObject();
+        }
+        json.endObject();
+
+        json.name("ingestion").beginObject();
+        json.name("items").value(metrics.ingestedItems());
+        json.name("itemsPerSecond").value(metrics.ingestionRate());
+        json.endObject();
+
+        json.name("edtStalls").beginObject();
+        json.name("count").value(metrics.stalls());
+        json.name("longestMillis").value(metrics.longestStallMillis());
+        json.endObject();
+
+        json.name("groups").beginArray();
+        for (GroupStat group : groupStats()) {
+            json.beginObject();
+            json.name("name").value(group.name);
+            json.name("items").value(group.items);
+            json.name("responseBytes").value(group.responseBytes);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package burp;
+
+// 添加到分组的请求与分组中已有条目指纹相同时的处理方式
+enum DuplicatePolicy {
+    ALLOW("允许重复"),
+    SKIP("跳过重复请求"),
+    REPLACE("替换为最新的请求"),
+    COUNT("保留最早的请求并计数");
+
+    private final String label;
+
+    DuplicatePolicy(String label) {
+        this.label = label;
+    }
+
+    static DuplicatePolicy fromName(String name) {
+        for (DuplicatePolicy policy : values()) {
+            if (policy.name().equals(name)) {
+                return policy;
+            }
+        }
+        return ALLOW;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,122 @@
+package burp;
+
+import burp.api.montoya.logging.Logging;
+
+import javax.swing.SwingUtilities;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * EDT 卡顿监视。后台线程不断向 EDT 投递心跳，心跳超过阈值仍未执行时取样 EDT 的调用栈；
+ * 栈中有本扩展的类时记为扩展造成的卡顿，等心跳执行后把阻塞时长和取样到的调用栈写入扩展日志。
+ * Burp 自身或其他扩展造成的卡顿不记录。只在性能统计启用时运行，关闭时线程退出。
+ */
+final class EdtWatchdog {
+    private static final int LOGGED_FRAMES = 12;
+    private static final long MIN_INTERVAL_MILLIS = 50;
+
+    private final PerformanceMetrics metrics;
+    private final Logging logging;
+    private final ClassLoader extensionLoader = EdtWatchdog.class.getClassLoader();
+    // 类名 -> 是否由本扩展的类加载器加载
+    private final Map<String, Boolean> extensionClasses = new ConcurrentHashMap<>();
+    private volatile long thresholdMillis;
+    private volatile Thread edt;
+    private Thread thread;
+
+    EdtWatchdog(PerformanceMetrics metrics, Logging logging) {
+        this.metrics = metrics;
+        this.logging = logging;
+    }
+
+    synchronized void start(long thresholdMillis) {
+        this.thresholdMillis = Math.max(MIN_INTERVAL_MILLIS, thresholdMillis);
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "GroupedHistory-EdtWatchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long threshold = thresholdMillis;
+                CountDownLatch heartbeat = new CountDownLatch(1);
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    heartbeat.countDown();
+                });
+                if (!heartbeat.await(threshold, TimeUnit.MILLISECONDS)) {
+                    awaitBlockedEdt(heartbeat, posted, threshold);
+                }
+                // 两次心跳之间的间隔不超过阈值的一半，超过阈值的卡顿至少会被取样一次
+                Thread.sleep(Math.max(MIN_INTERVAL_MILLIS, threshold / 2));
+            }
+        } catch (InterruptedException e) {
+            // 已停止
+        }
+    }
+
+    // EDT 已阻塞超过阈值：每隔一个阈值取样一次调用栈，直到心跳执行
+    private void awaitBlockedEdt(CountDownLatch heartbeat, long posted, long threshold) throws InterruptedException {
+        StackTraceElement[] blockedAt = null;
+        String extensionFrame = null;
+        do {
+            Thread current = edt;
+            if (extensionFrame == null && current != null) {
+                StackTraceElement[] stack = current.getStackTrace();
+                extensionFrame = findExtensionFrame(stack);
+                if (extensionFrame != null) {
+                    blockedAt = stack;
+                }
+            }
+        } while (!heartbeat.await(threshold, TimeUnit.MILLISECONDS));
+
+        if (extensionFrame == null) {
+            return;
+        }
+        long blockedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted);
+        metrics.recordStall(blockedMillis);
+        StringBuilder message = new StringBuilder("EDT blocked for ").append(blockedMillis)
+                .append(" ms in ").append(extensionFrame);
+        for (int i = 0; i < Math.min(LOGGED_FRAMES, blockedAt.length); i++) {
+            message.append("\n    at ").append(blockedAt[i]);
+        }
+        logging.logToError(message.toString());
+    }
+
+    private String findExtensionFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (isExtensionClass(frame.getClassName())) {
+                return frame.getClassName() + "." + frame.getMethodName();
+            }
+        }
+        return null;
+    }
+
+    // Burp 的类也在 burp 包中，只能通过类加载器区分；Burp 的类由父加载器加载
+    private boolean isExtensionClass(String className) {
+        if (!className.startsWith("burp.") || className.startsWith("burp.api.")) {
+            return false;
+        }
+        return extensionClasses.computeIfAbsent(className, name -> {
+            try {
+                return Class.forName(name, false, extensionLoader).getClassLoader() == extensionLoader;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package burp;
+
+/*
+ * 界面和统计文本共用的格式化，不依赖界面类，后台线程生成摘要和统计时也可以使用。
+ */
+final class Formats {
+    private Formats() {
+    }
+
+    static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        }
+        return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
+    }
+}
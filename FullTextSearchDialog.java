@@ -0,0 +1,125 @@
+package burp;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
+
+// 跨分组的全文搜索窗口，双击或回车打开结果所在的分组并选中该请求
+final class FullTextSearchDialog extends JDialog {
+    private static final int MAX_RESULTS = 1000;
+
+    private final SearchIndex searchIndex;
+    private final Consumer<SearchIndex.Match> navigator;
+    private final JTextField queryField = new JTextField();
+    private final DefaultListModel<SearchIndex.Match> resultModel = new DefaultListModel<>();
+    private final JList<SearchIndex.Match> resultList = new JList<>(resultModel);
+    private final JLabel resultLabel = new JLabel(" ");
+    private final Timer searchTimer = new Timer(200, e -> runSearch());
+
+    FullTextSearchDialog(Component parent, SearchIndex searchIndex, Consumer<SearchIndex.Match> navigator) {
+        super(SwingUtilities.getWindowAncestor(parent), "全文搜索", ModalityType.MODELESS);
+        this.searchIndex = searchIndex;
+        this.navigator = navigator;
+
+        searchTimer.setRepeats(false);
+        queryField.setToolTipText("在所有分组的请求/响应中搜索，多个词同时匹配，最后一个词按前缀匹配");
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        queryField.addActionListener(e -> {
+            searchTimer.stop();
+            runSearch();
+        });
+
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                SearchIndex.Match match = (SearchIndex.Match) value;
+                setText("📁 " + match.group + "  |  " + match.item.summary().displayText());
+                return this;
+            }
+        });
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelected();
+                }
+            }
+        });
+        resultList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "open");
+        resultList.getActionMap().put("open", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openSelected();
+            }
+        });
+
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.add(new JLabel("🔍"), BorderLayout.WEST);
+        searchPanel.add(queryField, BorderLayout.CENTER);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(new EmptyBorder(10, 10, 10, 10));
+        content.add(searchPanel, BorderLayout.NORTH);
+        content.add(new JScrollPane(resultList), BorderLayout.CENTER);
+        content.add(resultLabel, BorderLayout.SOUTH);
+
+        setContentPane(content);
+        setSize(720, 480);
+        setLocationRelativeTo(parent);
+    }
+
+    private void runSearch() {
+        String query = queryField.getText();
+        resultModel.clear();
+        if (query.trim().isEmpty()) {
+            resultLabel.setText(" ");
+            return;
+        }
+
+        long start = System.nanoTime();
+        SearchIndex.Result result = searchIndex.search(query, MAX_RESULTS);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        resultModel.addAll(result.matches);
+        String text = result.total + " 条结果 (" + elapsedMillis + " ms)";
+        if (result.total > result.matches.size()) {
+            text += "，只显示前 " + result.matches.size() + " 条";
+        }
+        int pending = searchIndex.pendingItems();
+        if (pending > 0) {
+            text += " | 还有 " + pending + " 个请求正在建立索引";
+        }
+        resultLabel.setText(text);
+    }
+
+    private void openSelected() {
+        SearchIndex.Match match = resultList.getSelectedValue();
+        if (match != null) {
+            navigator.accept(match);
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.params.HttpParameterType;
+import burp.api.montoya.http.message.params.ParsedHttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * 把分组内容流式导出到文件，在后台线程调用。
+ *
+ * 逐条读取原文（不放入内存缓存）并立即写入带缓冲的文件通道，内存占用与条目数无关。
+ * 导出到单个文件时按分组顺序依次写入；每个分组一个文件时多个分组并行写入。
+ * 取消或失败时删除本次写了一部分的文件。
+ */
+final class GroupExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 256;
+    private static final int MAX_THREADS = 4;
+
+    enum Format {
+        HAR("HAR", "har"),
+        JSONL("JSON Lines（Base64 原文）", "jsonl"),
+        RAW("原始 HTTP", "txt"),
+        URLS("URL 列表", "txt");
+
+        final String label;
+        final String extension;
+
+        Format(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        @Override
+        public String toString() {
+            return label + " (*." + extension + ")";
+        }
+    }
+
+    static final class Result {
+        final long exported;
+        // 原文无法读取而跳过的条目
+        final long skipped;
+        final List<Path> files;
+
+        Result(long exported, long skipped, List<Path> files) {
+            this.exported = exported;
+            this.skipped = skipped;
+            this.files = files;
+        }
+    }
+
+    private final Format format;
+    private final TaskProgress progress;
+    private final long total;
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    // 并行导出时一个分组失败，其余分组随之停止
+    private volatile boolean aborted;
+    private final String startedDateTime = Instant.now().toString();
+
+    private GroupExporter(Format format, TaskProgress progress, long total) {
+        this.format = format;
+        this.progress = progress;
+        this.total = total;
+    }
+
+    // 所有分组写入同一个文件
+    static Result exportToFile(Map<String, List<GroupedItem>> groups, Format format, Path file, TaskProgress progress) throws IOException {
+        GroupExporter exporter = new GroupExporter(format, progress, countItems(groups));
+        try {
+            exporter.write(groups, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        exporter.reportProgress(exporter.processed.get());
+        return exporter.result(Collections.singletonList(file));
+    }
+
+    // 每个分组写入目录下的一个文件，分组之间并行
+    static Result exportToDirectory(Map<String, List<GroupedItem>> groups, Format format, Path directory, TaskProgress progress) throws IOException {
+        GroupExporter exporter = new GroupExporter(format, progress, countItems(groups));
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        for (String group : groups.keySet()) {
+            files.add(directory.resolve(fileName(group, format, usedNames)));
+        }
+
+        int threads = Math.max(1, Math.min(MAX_THREADS, Math.min(groups.size(), Runtime.getRuntime().availableProcessors())));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "GroupedHistory-Export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            int index = 0;
+            for (Map.Entry<String, List<GroupedItem>> entry : groups.entrySet()) {
+                Path file = files.get(index++);
+                Map<String, List<GroupedItem>> single = Collections.singletonMap(entry.getKey(), entry.getValue());
+                futures.add(executor.submit(() -> {
+                    exporter.write(single, file);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exporter.abort(executor, files);
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            exporter.abort(executor, files);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        exporter.reportProgress(exporter.processed.get());
+        return exporter.result(files);
+    }
+
+    // 等其余分组停止写入后再删除，避免删除后又被重新创建
+    private void abort(ExecutorService executor, List<Path> files) {
+        aborted = true;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deleteAll(files);
+    }
+
+    private void reportProgress(long done) {
+        progress.update(done, total, done + " / " + total + " 个请求");
+    }
+
+    private Result result(List<Path> files) {
+        return new Result(exported.get(), skipped.get(), files);
+    }
+
+    private void write(Map<String, List<GroupedItem>> groups, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+             ItemWriter writer = newWriter(out)) {
+            writer.begin();
+            for (Map.Entry<String, List<GroupedItem>> entry : groups.entrySet()) {
+                for (GroupedItem item : entry.getValue()) {
+                    if (aborted || progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException();
+                    }
+                    HttpRequestResponse message = format == Format.URLS && !item.summary().url().startsWith("/")
+                            ? null : item.readMessage();
+                    if (message == null && format != Format.URLS) {
+                        skipped.incrementAndGet();
+                    } else {
+                        writer.write(entry.getKey(), item, message);
+                        exported.incrementAndGet();
+                    }
+                    long done = processed.incrementAndGet();
+                    if (done % PROGRESS_INTERVAL == 0) {
+                        reportProgress(done);
+                    }
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    private ItemWriter newWriter(OutputStream out) {
+        switch (format) {
+            case HAR:
+                return new HarWriter(out, startedDateTime);
+            case JSONL:
+                return new JsonLinesWriter(out);
+            case RAW:
+                return new RawWriter(out);
+            default:
+                return new UrlWriter(out);
+        }
+    }
+
+    // 没有服务信息的条目（从项目文件加载的）用 Host 头补全；无法得知协议，按 443 端口判断
+    static String urlOf(ItemSummary summary, HttpRequest request) {
+        String url = summary.url();
+        if (!url.startsWith("/") || request == null) {
+            return url;
+        }
+        String host = request.headerValue("Host");
+        if (host == null || host.isEmpty()) {
+            return url;
+        }
+        if (host.endsWith(":443")) {
+            return "https://" + host.substring(0, host.length() - 4) + url;
+        }
+        return "http://" + host + url;
+    }
+
+    private static long countItems(Map<String, List<GroupedItem>> groups) {
+        long count = 0;
+        for (List<GroupedItem> items : groups.values()) {
+            count += items.size();
+        }
+        return count;
+    }
+
+    private static String fileName(String group, Format format, Set<String> usedNames) {
+        String base = group.replaceAll("[\\\\/:*?\"<>|\\x00-\\x1f]", "_").trim();
+        if (base.isEmpty() || base.startsWith(".")) {
+            base = "_" + base;
+        }
+        String name = base + "." + format.extension;
+        for (int i = 2; !usedNames.add(name.toLowerCase(Locale.ROOT)); i++) {
+            name = base + "_" + i + "." + format.extension;
+        }
+        return name;
+    }
+
+    private static void deleteAll(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // 尽量清理，删除失败不影响报告原来的错误
+            }
+        }
+    }
+
+    // 按 UTF-8 严格解码，不是文本（或含控制字符）时返回 null
+    private static String textOf(byte[] bytes) {
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 && c != '\t' && c != '\r' && c != '\n') {
+                return null;
+            }
+        }
+        return text;
+    }
+
+    private interface ItemWriter extends Closeable {
+        void begin() throws IOException;
+
+        // URL 列表不需要原文时 message 为 null
+        void write(String group, GroupedItem item, HttpRequestResponse message) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    // HAR 1.2，分组名放在条目的 comment 中；没有记录请求时间，startedDateTime 使用导出时间
+    private static final class HarWriter implements ItemWriter {
+        private final Writer out;
+        private final JsonWriter json;
+        private final String startedDateTime;
+
+        HarWriter(OutputStream stream, String startedDateTime) {
+            this.out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            this.json = new JsonWriter(out);
+            this.startedDateTime = startedDateTime;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            json.beginObject().name("log").beginObject();
+            json.name("version").value("1.2");
+            json.name("creator").beginObject().name("name").value("Grouped History").name("version").value("1.0").endObject();
+            json.name("entries").beginArray();
+        }
+
+        @Override
+        public void write(String group, GroupedItem item, HttpRequestResponse message) throws IOException {
+            HttpRequest request = message.request();
+            json.beginObject();
+            json.name("startedDateTime").value(startedDateTime);
+            json.name("time").value(0);
+            json.name("comment").value(group);
+
+            json.name("request").beginObject();
+            json.name("method").value(request.method());
+            json.name("url").value(urlOf(item.summary(), request));
+            json.name("httpVersion").value(request.httpVersion());
+            json.name("cookies").beginArray().endArray();
+            writeHeaders(request.headers());
+            json.name("queryString").beginArray();
+            for (ParsedHttpParameter parameter : request.parameters(HttpParameterType.URL)) {
+                json.beginObject().name("name").value(parameter.name()).name("value").value(parameter.value()).endObject();
+            }
+            json.endArray();
+            byte[] requestBody = request.body().getBytes();
+            if (requestBody.length > 0) {
+                String text = textOf(requestBody);
+                json.name("postData").beginObject();
+                json.name("mimeType").value(headerValue(request.headerValue("Content-Type")));
+                json.name("text").value(text != null ? text : Base64.getEncoder().encodeToString(requestBody));
+                if (text == null) {
+                    // HAR 没有定义 postData 的编码，与 content 一样用 encoding 标记，导入时据此解码
+                    json.name("encoding").value("base64");
+                }
+                json.endObject();
+            }
+            json.name("headersSize").value(-1);
+            json.name("bodySize").value(requestBody.length);
+            json.endObject();
+
+            json.name("response").beginObject();
+            HttpResponse response = message.hasResponse() ? message.response() : null;
+            if (response != null) {
+                byte[] body = response.body().getBytes();
+                String text = textOf(body);
+                json.name("status").value(response.statusCode());
+                json.name("statusText").value(response.reasonPhrase());
+                json.name("httpVersion").value(response.httpVersion());
+                json.name("cookies").beginArray().endArray();
+                writeHeaders(response.headers());
+                json.name("content").beginObject();
+                json.name("size").value(body.length);
+                json.name("mimeType").value(headerValue(response.headerValue("Content-Type")));
+                if (text != null) {
+                    json.name("text").value(text);
+                } else {
+                    json.name("text").value(Base64.getEncoder().encodeToString(body));
+                    json.name("encoding").value("base64");
+                }
+                json.endObject();
+                json.name("redirectURL").value(headerValue(response.headerValue("Location")));
+                json.name("headersSize").value(-1);
+                json.name("bodySize").value(body.length);
+            } else {
+                // 没有响应的请求按 HAR 的惯例写状态 0
+                json.name("status").value(0);
+                json.name("statusText").value("");
+                json.name("httpVersion").value("");
+                json.name("cookies").beginArray().endArray();
+                json.name("headers").beginArray().endArray();
+                json.name("content").beginObject().name("size").value(0).name("mimeType").value("").endObject();
+                json.name("redirectURL").value("");
+                json.name("headersSize").value(-1);
+                json.name("bodySize").value(-1);
+            }
+            json.endObject();
+
+            json.name("cache").beginObject().endObject();
+            json.name("timings").beginObject().name("send").value(0).name("wait").value(0).name("receive").value(0).endObject();
+            json.endObject();
+        }
+
+        private void writeHeaders(List<HttpHeader> headers) throws IOException {
+            json.name("headers").beginArray();
+            for (HttpHeader header : headers) {
+                json.beginObject().name("name").value(header.name()).name("value").value(header.value()).endObject();
+            }
+            json.endArray();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            json.endArray().endObject().endObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    // 每行一个 JSON 对象，请求和响应是 Base64 编码的原始字节，可以由导入功能原样读回
+    private static final class JsonLinesWriter implements ItemWriter {
+        private final Writer out;
+
+        JsonLinesWriter(OutputStream stream) {
+            this.out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(String group, GroupedItem item, HttpRequestResponse message) throws IOException {
+            ItemSummary summary = item.summary();
+            // 每行使用新的 JsonWriter，不关闭它以免关闭底层的流
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("group").value(group);
+            json.name("method").value(summary.method());
+            json.name("url").value(urlOf(summary, message.request()));
+            json.name("status").value(summary.statusCode());
+            if (item.duplicates() > 0) {
+                json.name("duplicates").value(item.duplicates());
+            }
+            json.name("request").value(Base64.getEncoder().encodeToString(message.request().toByteArray().getBytes()));
+            if (message.hasResponse()) {
+                json.name("response").value(Base64.getEncoder().encodeToString(message.response().toByteArray().getBytes()));
+            }
+            json.endObject();
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    // 请求和响应的原始字节，条目之间用带分组名和URL的分隔行隔开
+    private static final class RawWriter implements ItemWriter {
+        private static final byte[] CRLF = {'\r', '\n'};
+
+        private final OutputStream out;
+
+        RawWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(String group, GroupedItem item, HttpRequestResponse message) throws IOException {
+            String separator = "======== [" + group + "] " + urlOf(item.summary(), message.request()) + " ========";
+            out.write(separator.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+            writeBytes(message.request().toByteArray());
+            out.write(CRLF);
+            if (message.hasResponse()) {
+                writeBytes(message.response().toByteArray());
+                out.write(CRLF);
+            }
+            out.write(CRLF);
+        }
+
+        private void writeBytes(ByteArray bytes) throws IOException {
+            out.write(bytes.getBytes());
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    // 每行一个完整URL
+    private static final class UrlWriter implements ItemWriter {
+        private final Writer out;
+
+        UrlWriter(OutputStream stream) {
+            this.out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(String group, GroupedItem item, HttpRequestResponse message) throws IOException {
+            out.write(urlOf(item.summary(), message != null ? message.request() : null));
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static String headerValue(String value) {
+        return value != null ? value : "";
+    }
+}
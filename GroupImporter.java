@@ -0,0 +1,523 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/*
+ * 把 HAR、JSON Lines（GroupExporter 导出的格式）和 Burp 保存的条目 XML 导入分组，在后台线程调用。
+ *
+ * 三种格式都用流式解析器逐条读取（Gson JsonReader、逐行、StAX），不把整个文档读入内存。
+ * 解析出的条目按分组攒成批次，每批对每个分组调用一次 GroupStore.append（一次写日志、一次界面通知），
+ * 然后等待写入线程落盘，已落盘的条目只保留摘要，所以导入很大的文件时内存占用也是有界的。
+ * 单个条目无法解析时跳过并计数；文件结构损坏时停止，已导入的批次保留。
+ */
+final class GroupImporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 500;
+    // 一批中原文的总字节数上限，条目很大时提前提交
+    private static final long BATCH_BYTES = 32L * 1024 * 1024;
+
+    enum Format {
+        HAR("HAR (*.har)"),
+        JSONL("JSON Lines (*.jsonl)"),
+        BURP_XML("Burp 保存的条目 (*.xml)");
+
+        private final String label;
+
+        Format(String label) {
+            this.label = label;
+        }
+
+        // 先看扩展名，无法判断时看文件的第一个非空白字符
+        static Format detect(Path file) throws IOException {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".har")) {
+                return HAR;
+            } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSONL;
+            } else if (name.endsWith(".xml")) {
+                return BURP_XML;
+            }
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                int c;
+                do {
+                    c = in.read();
+                } while (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == 0xEF || c == 0xBB || c == 0xBF);
+                return c == '<' ? BURP_XML : HAR;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    static final class Result {
+        final long imported;
+        // 按重复策略跳过或合并的请求
+        final long duplicates;
+        // 无法解析而跳过的条目
+        final long failed;
+        final List<String> groups;
+
+        Result(long imported, long duplicates, long failed, List<String> groups) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.failed = failed;
+            this.groups = groups;
+        }
+    }
+
+    private final GroupStore store;
+    private final HistoryJournal journal;
+    private final String defaultGroup;
+    // 为 true 时使用文件中记录的分组名（HAR 条目的 comment、JSONL 的 group），没有时用 defaultGroup
+    private final boolean useFileGroups;
+    private final TaskProgress progress;
+
+    private final Map<String, List<HttpRequestResponse>> batch = new LinkedHashMap<>();
+    private final List<String> groups = new ArrayList<>();
+    private int batchItems;
+    private long batchBytes;
+    private long imported;
+    private long duplicates;
+    private long failed;
+    private long totalBytes;
+    private CountingInputStream counter;
+
+    GroupImporter(GroupStore store, HistoryJournal journal, String defaultGroup, boolean useFileGroups, TaskProgress progress) {
+        this.store = store;
+        this.journal = journal;
+        this.defaultGroup = defaultGroup;
+        this.useFileGroups = useFileGroups;
+        this.progress = progress;
+    }
+
+    // 取消时抛出 CancellationException，此前已提交的批次保留在分组中
+    Result importFile(Path file, Format format) throws IOException, InterruptedException {
+        totalBytes = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            counter = new CountingInputStream(Channels.newInputStream(channel));
+            InputStream in = new BufferedInputStream(counter, BUFFER_SIZE);
+            switch (format) {
+                case HAR:
+                    readHar(new InputStreamReader(in, StandardCharsets.UTF_8));
+                    break;
+                case JSONL:
+                    readJsonLines(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE));
+                    break;
+                default:
+                    readBurpXml(in);
+                    break;
+            }
+        }
+        commitBatch();
+        return new Result(imported, duplicates, failed, groups);
+    }
+
+    private void readHar(Reader source) throws IOException, InterruptedException {
+        JsonReader reader = new JsonReader(source);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("log")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("entries")) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        // 单个条目作为一棵小树读出，缺字段或类型不对时只跳过这一条
+                        JsonElement entry = JsonParser.parseReader(reader);
+                        HarEntry harEntry;
+                        try {
+                            harEntry = HarEntry.of(entry.getAsJsonObject());
+                        } catch (RuntimeException e) {
+                            failed++;
+                            continue;
+                        }
+                        add(harEntry.group, harEntry.message);
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } catch (IllegalStateException | JsonParseException e) {
+            throw new IOException("HAR 文件格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    private void readJsonLines(BufferedReader reader) throws IOException, InterruptedException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String group;
+            HttpRequestResponse message;
+            try {
+                JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+                byte[] request = Base64.getDecoder().decode(object.get("request").getAsString());
+                byte[] response = object.has("response") && !object.get("response").isJsonNull()
+                        ? Base64.getDecoder().decode(object.get("response").getAsString()) : null;
+                String url = object.has("url") ? object.get("url").getAsString() : "";
+                group = object.has("group") ? object.get("group").getAsString() : null;
+                message = message(serviceOf(url), request, response);
+            } catch (RuntimeException e) {
+                failed++;
+                continue;
+            }
+            add(group, message);
+        }
+    }
+
+    // Burp 的 "Save items" XML：<items><item><host/><port/><protocol/><request base64=".."/><response .../></item></items>
+    private void readBurpXml(InputStream in) throws IOException, InterruptedException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // 不处理 DTD 和外部实体，Burp 导出文件中的内部 DTD 只描述结构，可以忽略
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("item")) {
+                        readXmlItem(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("XML 文件格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    private void readXmlItem(XMLStreamReader reader) throws XMLStreamException, InterruptedException {
+        String host = "";
+        String port = "";
+        String protocol = "";
+        byte[] request = null;
+        byte[] response = null;
+        boolean valid = true;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("item")) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            boolean base64 = "true".equals(reader.getAttributeValue(null, "base64"));
+            String text = reader.getElementText();
+            try {
+                switch (name) {
+                    case "host":
+                        host = text.trim();
+                        break;
+                    case "port":
+                        port = text.trim();
+                        break;
+                    case "protocol":
+                        protocol = text.trim();
+                        break;
+                    case "request":
+                        request = decodeXmlContent(text, base64);
+                        break;
+                    case "response":
+                        response = text.isEmpty() ? null : decodeXmlContent(text, base64);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                valid = false;
+            }
+        }
+        if (!valid || request == null || request.length == 0) {
+            failed++;
+            return;
+        }
+        HttpRequestResponse message;
+        try {
+            HttpService service = null;
+            if (!host.isEmpty()) {
+                boolean secure = protocol.equalsIgnoreCase("https");
+                service = HttpService.httpService(host, port.isEmpty() ? (secure ? 443 : 80) : Integer.parseInt(port), secure);
+            }
+            message = message(service, request, response);
+        } catch (RuntimeException e) {
+            failed++;
+            return;
+        }
+        add(null, message);
+    }
+
+    private static byte[] decodeXmlContent(String text, boolean base64) {
+        return base64 ? Base64.getMimeDecoder().decode(text) : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void add(String fileGroup, HttpRequestResponse message) throws InterruptedException {
+        if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+        String group = useFileGroups && fileGroup != null && !fileGroup.trim().isEmpty() ? fileGroup.trim() : defaultGroup;
+        batch.computeIfAbsent(group, k -> new ArrayList<>()).add(message);
+        batchItems++;
+        batchBytes += message.request().toByteArray().length()
+                + (message.hasResponse() ? message.response().toByteArray().length() : 0);
+        if (batchItems >= BATCH_SIZE || batchBytes >= BATCH_BYTES) {
+            commitBatch();
+        }
+    }
+
+    private void commitBatch() throws InterruptedException {
+        if (batchItems == 0) {
+            return;
+        }
+        for (Map.Entry<String, List<HttpRequestResponse>> entry : batch.entrySet()) {
+            GroupStore.AppendResult result = store.append(entry.getKey(), entry.getValue());
+            imported += result.added.size();
+            duplicates += result.duplicates;
+            if (!groups.contains(entry.getKey())) {
+                groups.add(entry.getKey());
+            }
+        }
+        batch.clear();
+        batchItems = 0;
+        batchBytes = 0;
+        journal.awaitFlush();
+        progress.update(counter.count, totalBytes, "已导入 " + imported + " 个请求，读取 "
+                + Formats.bytes(counter.count) + " / " + Formats.bytes(totalBytes));
+    }
+
+    private static HttpRequestResponse message(HttpService service, byte[] request, byte[] response) {
+        HttpRequest httpRequest = service != null
+                ? HttpRequest.httpRequest(service, ByteArray.byteArray(request))
+                : HttpRequest.httpRequest(ByteArray.byteArray(request));
+        HttpResponse httpResponse = response != null && response.length > 0
+                ? HttpResponse.httpResponse(ByteArray.byteArray(response)) : null;
+        return HttpRequestResponse.httpRequestResponse(httpRequest, httpResponse);
+    }
+
+    // 只从绝对URL中取出协议、主机和端口；相对URL返回 null
+    static HttpService serviceOf(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        boolean secure = url.substring(0, schemeEnd).equalsIgnoreCase("https");
+        String authority = url.substring(schemeEnd + 3);
+        int end = 0;
+        while (end < authority.length() && "/?#".indexOf(authority.charAt(end)) < 0) {
+            end++;
+        }
+        authority = authority.substring(authority.lastIndexOf('@', end - 1) + 1, end);
+        String host = authority;
+        int port = secure ? 443 : 80;
+        int colon = authority.lastIndexOf(':');
+        if (colon > authority.lastIndexOf(']')) {
+            host = authority.substring(0, colon);
+            port = Integer.parseInt(authority.substring(colon + 1));
+        }
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return host.isEmpty() ? null : HttpService.httpService(host, port, secure);
+    }
+
+    // 把 HAR 条目还原成原始请求/响应；HAR 中的响应体已经解码，所以去掉内容编码并重新计算长度
+    private static final class HarEntry {
+        final String group;
+        final HttpRequestResponse message;
+
+        private HarEntry(String group, HttpRequestResponse message) {
+            this.group = group;
+            this.message = message;
+        }
+
+        static HarEntry of(JsonObject entry) {
+            JsonObject request = entry.getAsJsonObject("request");
+            String url = request.get("url").getAsString();
+            int schemeEnd = url.indexOf("://");
+            String authority = "";
+            String target = url;
+            if (schemeEnd > 0) {
+                int pathStart = url.indexOf('/', schemeEnd + 3);
+                authority = url.substring(schemeEnd + 3, pathStart < 0 ? url.length() : pathStart);
+                target = pathStart < 0 ? "/" : url.substring(pathStart);
+            }
+            int fragment = target.indexOf('#');
+            if (fragment >= 0) {
+                target = target.substring(0, fragment);
+            }
+
+            byte[] requestBody = new byte[0];
+            JsonObject postData = optObject(request, "postData");
+            if (postData != null && postData.has("text")) {
+                requestBody = decodeText(postData);
+            }
+            StringBuilder head = new StringBuilder();
+            head.append(request.get("method").getAsString()).append(' ').append(target).append(' ')
+                    .append(httpVersion(optString(request, "httpVersion"))).append("\r\n");
+            boolean hasHost = appendHeaders(head, request, false);
+            if (!hasHost && !authority.isEmpty()) {
+                head.insert(head.indexOf("\r\n") + 2, "Host: " + authority.substring(authority.lastIndexOf('@') + 1) + "\r\n");
+            }
+            if (requestBody.length > 0) {
+                head.append("Content-Length: ").append(requestBody.length).append("\r\n");
+            }
+            byte[] rawRequest = concat(head.append("\r\n").toString(), requestBody);
+
+            byte[] rawResponse = null;
+            JsonObject response = optObject(entry, "response");
+            if (response != null && response.has("status") && response.get("status").getAsInt() > 0) {
+                byte[] body = new byte[0];
+                JsonObject content = optObject(response, "content");
+                if (content != null && content.has("text")) {
+                    body = decodeText(content);
+                }
+                StringBuilder responseHead = new StringBuilder();
+                responseHead.append(httpVersion(optString(response, "httpVersion"))).append(' ')
+                        .append(response.get("status").getAsInt()).append(' ')
+                        .append(optString(response, "statusText")).append("\r\n");
+                appendHeaders(responseHead, response, true);
+                responseHead.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+                rawResponse = concat(responseHead.toString(), body);
+            }
+
+            String group = optString(entry, "comment");
+            return new HarEntry(group.isEmpty() ? null : group, message(serviceOf(url), rawRequest, rawResponse));
+        }
+
+        // 跳过 HTTP/2 伪头和需要重新计算的头，返回是否有 Host 头
+        private static boolean appendHeaders(StringBuilder head, JsonObject message, boolean response) {
+            boolean hasHost = false;
+            if (!message.has("headers") || !message.get("headers").isJsonArray()) {
+                return false;
+            }
+            for (JsonElement element : message.getAsJsonArray("headers")) {
+                JsonObject header = element.getAsJsonObject();
+                String name = header.get("name").getAsString();
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (name.startsWith(":") || lower.equals("content-length")
+                        || (response && (lower.equals("content-encoding") || lower.equals("transfer-encoding")))) {
+                    continue;
+                }
+                hasHost |= lower.equals("host");
+                head.append(name).append(": ").append(optString(header, "value")).append("\r\n");
+            }
+            return hasHost;
+        }
+
+        private static byte[] decodeText(JsonObject content) {
+            String text = content.get("text").getAsString();
+            if ("base64".equalsIgnoreCase(optString(content, "encoding"))) {
+                return Base64.getMimeDecoder().decode(text);
+            }
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        // 浏览器导出的 HAR 中 HTTP/2 写作 "h2" 或 "HTTP/2.0"
+        private static String httpVersion(String version) {
+            String upper = version.toUpperCase(Locale.ROOT);
+            if (upper.equals("H2") || upper.startsWith("HTTP/2")) {
+                return "HTTP/2";
+            }
+            return upper.startsWith("HTTP/1.") ? upper : "HTTP/1.1";
+        }
+
+        private static JsonObject optObject(JsonObject object, String name) {
+            JsonElement element = object.get(name);
+            return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+        }
+
+        private static String optString(JsonObject object, String name) {
+            JsonElement element = object.get(name);
+            return element != null && element.isJsonPrimitive() ? element.getAsString() : "";
+        }
+
+        private static byte[] concat(String head, byte[] body) {
+            byte[] headBytes = head.getBytes(StandardCharsets.UTF_8);
+            byte[] result = new byte[headBytes.length + body.length];
+            System.arraycopy(headBytes, 0, result, 0, headBytes.length);
+            System.arraycopy(body, 0, result, headBytes.length, body.length);
+            return result;
+        }
+    }
+
+    // 统计从文件读出的字节数，用于显示进度
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package burp;
+
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * 侧边栏分组列表的数据模型。
+ *
+ * 按创建顺序保存全部分组名及其小写形式，按搜索词过滤后只向 JList 暴露匹配的分组；
+ * 名称到可见行号的映射使选中分组是 O(1) 的。搜索词在上一次的基础上继续输入时只在上次的结果里查找。
+ * 条目数量和统计直接取自 GroupStore 的快照，不单独保存；只在 EDT 上随 GroupStore 的通知更新。
+ */
+final class GroupListModel extends AbstractListModel<String> {
+    private final GroupStore store;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, String> lowerNames = new HashMap<>();
+
+    private List<String> visible = new ArrayList<>();
+    private final Map<String, Integer> visibleIndex = new HashMap<>();
+    private String filter = "";
+
+    GroupListModel(GroupStore store) {
+        this.store = store;
+    }
+
+    // 分组被整体替换后调用
+    void reload() {
+        names.clear();
+        lowerNames.clear();
+        for (String name : store.groupNames()) {
+            names.add(name);
+            lowerNames.put(name, name.toLowerCase(Locale.ROOT));
+        }
+        applyFilter(filter, names);
+    }
+
+    void groupAdded(String name) {
+        if (lowerNames.containsKey(name)) {
+            return;
+        }
+        names.add(name);
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        lowerNames.put(name, lowerName);
+        if (lowerName.contains(filter)) {
+            int index = visible.size();
+            visible.add(name);
+            visibleIndex.put(name, index);
+            fireIntervalAdded(this, index, index);
+        }
+    }
+
+    void groupRemoved(String name) {
+        if (lowerNames.remove(name) == null) {
+            return;
+        }
+        names.remove(name);
+        Integer index = visibleIndex.remove(name);
+        if (index != null) {
+            visible.remove((int) index);
+            for (int i = index; i < visible.size(); i++) {
+                visibleIndex.put(visible.get(i), i);
+            }
+            fireIntervalRemoved(this, index, index);
+        }
+    }
+
+    // 分组的条目数量变化后调用，只重绘这一行
+    void groupChanged(String name) {
+        Integer index = visibleIndex.get(name);
+        if (index != null) {
+            fireContentsChanged(this, index, index);
+        }
+    }
+
+    void setFilter(String text) {
+        String newFilter = text.trim().toLowerCase(Locale.ROOT);
+        if (newFilter.equals(filter)) {
+            return;
+        }
+        // 新的搜索词包含旧的搜索词时，匹配结果只会更少
+        applyFilter(newFilter, newFilter.contains(filter) ? visible : names);
+    }
+
+    private void applyFilter(String newFilter, List<String> candidates) {
+        int oldSize = visible.size();
+        List<String> matches = new ArrayList<>();
+        for (String name : candidates) {
+            if (lowerNames.get(name).contains(newFilter)) {
+                matches.add(name);
+            }
+        }
+        filter = newFilter;
+        visible = matches;
+        visibleIndex.clear();
+        for (int i = 0; i < matches.size(); i++) {
+            visibleIndex.put(matches.get(i), i);
+        }
+
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (!matches.isEmpty()) {
+            fireIntervalAdded(this, 0, matches.size() - 1);
+        }
+    }
+
+    // 被过滤掉或不存在时返回 -1
+    int indexOf(String name) {
+        Integer index = visibleIndex.get(name);
+        return index != null ? index : -1;
+    }
+
+    // 分组的统计快照，分组修改后第一次读取时生成
+    GroupStats.Snapshot stats(String name) {
+        return store.stats(name);
+    }
+
+    @Override
+    public int getSize() {
+        return visible.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return visible.get(index);
+    }
+}
@@ -0,0 +1,473 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * 重放分组：把分组中的每个请求重新发送一遍，新的请求/响应按原顺序放入一个新的分组，
+ * 并统计与原响应相比状态码的变化。在后台线程调用。
+ *
+ * 固定数量的工作线程从同一个计数器领取条目，并发数有上限；所有线程共用一个按时间片分配的限速器。
+ * 发送前可以替换或添加请求头和 Cookie（直接修改原始字节，请求体不变）。
+ * 调用线程每隔一段时间把已完成的连续前缀一次追加到目标分组并更新进度；取消时停止领取新条目，
+ * 已完成的结果保留在目标分组中。实际发送由 Sender 完成，Burp 中是 api.http()，测试时可以换成直接连接本地服务。
+ */
+final class GroupReplayer {
+    private static final long POLL_MILLIS = 100;
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+    private static final DateTimeFormatter NAME_TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm:ss");
+
+    // 发送一个请求并返回请求/响应，连接失败时可以抛出异常或返回没有响应的结果
+    interface Sender {
+        HttpRequestResponse send(HttpRequest request) throws Exception;
+    }
+
+    static final class Options {
+        final int concurrency;
+        // 每秒最多发送的请求数，0 表示不限制
+        final int requestsPerSecond;
+        // 名称不区分大小写，替换已有的同名请求头，没有时添加
+        final Map<String, String> headers;
+        // 替换 Cookie 请求头中的同名 Cookie，没有时添加
+        final Map<String, String> cookies;
+        // 条目没有记录目标服务、只能从 Host 请求头得知主机时是否使用 HTTPS
+        final boolean defaultSecure;
+
+        Options(int concurrency, int requestsPerSecond, Map<String, String> headers, Map<String, String> cookies,
+                boolean defaultSecure) {
+            this.concurrency = Math.max(1, concurrency);
+            this.requestsPerSecond = Math.max(0, requestsPerSecond);
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            this.headers.putAll(headers);
+            this.cookies = new LinkedHashMap<>(cookies);
+            this.defaultSecure = defaultSecure;
+        }
+
+        // 每行一个 "名称: 值"，忽略空行
+        static Map<String, String> parseHeaders(String text) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String line : text.split("\\r?\\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("请求头格式应为 名称: 值 —— " + line.trim());
+                }
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+            return headers;
+        }
+
+        // "a=1; b=2"，也可以每行一个
+        static Map<String, String> parseCookies(String text) {
+            Map<String, String> cookies = new LinkedHashMap<>();
+            for (String pair : text.split("[;\\r\\n]+")) {
+                if (pair.trim().isEmpty()) {
+                    continue;
+                }
+                int equals = pair.indexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException("Cookie 格式应为 名称=值 —— " + pair.trim());
+                }
+                cookies.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+            }
+            return cookies;
+        }
+    }
+
+    static final class Result {
+        final String group;
+        final int replayed;
+        // 状态码与原响应相同的请求数
+        final int unchanged;
+        // 发送失败或没有收到响应
+        final int failed;
+        // 原文无法读取或无法确定目标服务，没有发送
+        final int skipped;
+        // "原状态码 → 新状态码" -> 次数，按次数从多到少
+        final Map<String, Integer> statusChanges;
+
+        Result(String group, int replayed, int unchanged, int failed, int skipped, Map<String, Integer> statusChanges) {
+            this.group = group;
+            this.replayed = replayed;
+            this.unchanged = unchanged;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.statusChanges = statusChanges;
+        }
+
+        int changed() {
+            int changed = 0;
+            for (int count : statusChanges.values()) {
+                changed += count;
+            }
+            return changed;
+        }
+
+        String summary() {
+            StringBuilder text = new StringBuilder("已重放 ").append(replayed).append(" 个请求到分组 '").append(group)
+                    .append("'：状态码不变 ").append(unchanged).append(" 个，变化 ").append(changed()).append(" 个");
+            if (failed > 0) {
+                text.append("，无响应 ").append(failed).append(" 个");
+            }
+            if (skipped > 0) {
+                text.append("，跳过 ").append(skipped).append(" 个");
+            }
+            for (Map.Entry<String, Integer> change : statusChanges.entrySet()) {
+                text.append("\n    ").append(change.getKey()).append("：").append(change.getValue());
+            }
+            return text.toString();
+        }
+    }
+
+    // 一个条目的重放结果，message 为 null 表示跳过
+    private static final class Outcome {
+        final HttpRequestResponse message;
+        final short originalStatus;
+
+        Outcome(HttpRequestResponse message, short originalStatus) {
+            this.message = message;
+            this.originalStatus = originalStatus;
+        }
+    }
+
+    private final GroupStore store;
+    private final Sender sender;
+    private final Options options;
+    private final TaskProgress progress;
+    private final long intervalNanos;
+    private final AtomicInteger completed = new AtomicInteger();
+    private long nextSlot = System.nanoTime();
+    private volatile boolean stopped;
+
+    // 由调用线程累计
+    private int replayed;
+    private int unchanged;
+    private int failed;
+    private int skipped;
+    private final Map<String, Integer> statusChanges = new LinkedHashMap<>();
+
+    GroupReplayer(GroupStore store, Sender sender, Options options, TaskProgress progress) {
+        this.store = store;
+        this.sender = sender;
+        this.options = options;
+        this.progress = progress;
+        this.intervalNanos = options.requestsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / options.requestsPerSecond : 0;
+    }
+
+    // 新分组的名称：原分组名加上重放时间，重名时加序号
+    static String targetName(GroupStore store, String sourceGroup, LocalDateTime time) {
+        String base = sourceGroup + " · 重放 " + NAME_TIME.format(time);
+        String name = base;
+        for (int i = 2; store.contains(name); i++) {
+            name = base + " (" + i + ")";
+        }
+        return name;
+    }
+
+    // 取消时抛出 CancellationException，已完成的结果保留在 targetGroup 中
+    Result replay(List<GroupedItem> items, String targetGroup) throws InterruptedException {
+        store.createGroup(targetGroup);
+        int total = items.size();
+        AtomicReferenceArray<Outcome> outcomes = new AtomicReferenceArray<>(total);
+        AtomicInteger next = new AtomicInteger();
+        int threads = Math.max(1, Math.min(options.concurrency, total));
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "GroupedHistory-Replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> {
+                int index;
+                while (!stopped && (index = next.getAndIncrement()) < total) {
+                    Outcome outcome = replayItem(items.get(index));
+                    if (outcome == null) {
+                        return;
+                    }
+                    outcomes.set(index, outcome);
+                    completed.incrementAndGet();
+                }
+            });
+        }
+        workers.shutdown();
+
+        int appended = 0;
+        try {
+            while (true) {
+                boolean finished = workers.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                appended = appendCompleted(outcomes, appended, targetGroup, !finished);
+                progress.update(completed.get(), total, "已重放 " + completed.get() + " / " + total + " 个请求");
+                if (finished) {
+                    break;
+                }
+                if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    stop(workers);
+                    appendCompleted(outcomes, appended, targetGroup, false);
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            stop(workers);
+            throw e;
+        }
+
+        List<Map.Entry<String, Integer>> changes = new ArrayList<>(statusChanges.entrySet());
+        changes.sort((a, b) -> b.getValue() - a.getValue());
+        Map<String, Integer> sortedChanges = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> change : changes) {
+            sortedChanges.put(change.getKey(), change.getValue());
+        }
+        return new Result(targetGroup, replayed, unchanged, failed, skipped, Collections.unmodifiableMap(sortedChanges));
+    }
+
+    private void stop(ExecutorService workers) throws InterruptedException {
+        stopped = true;
+        workers.shutdownNow();
+        workers.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /*
+     * 从 from 开始把已完成的结果一次追加到目标分组，返回下一个未追加的位置。
+     * contiguous 为 true 时遇到未完成的条目就停下，保证分组中的顺序与原分组一致；
+     * 为 false 时（全部结束或已取消）跳过未完成的条目。
+     */
+    private int appendCompleted(AtomicReferenceArray<Outcome> outcomes, int from, String targetGroup, boolean contiguous) {
+        List<HttpRequestResponse> messages = new ArrayList<>();
+        int index = from;
+        for (; index < outcomes.length(); index++) {
+            Outcome outcome = outcomes.get(index);
+            if (outcome == null) {
+                if (contiguous) {
+                    break;
+                }
+                continue;
+            }
+            if (outcome.message == null) {
+                skipped++;
+                continue;
+            }
+            messages.add(outcome.message);
+            count(outcome);
+        }
+        if (!messages.isEmpty()) {
+            store.append(targetGroup, messages);
+        }
+        return index;
+    }
+
+    private void count(Outcome outcome) {
+        replayed++;
+        short status = outcome.message.response() != null ? outcome.message.response().statusCode() : 0;
+        if (status == 0) {
+            failed++;
+        }
+        if (status == outcome.originalStatus) {
+            unchanged++;
+        } else {
+            statusChanges.merge(statusText(outcome.originalStatus) + " → " + statusText(status), 1, Integer::sum);
+        }
+    }
+
+    private static String statusText(short status) {
+        return status != 0 ? String.valueOf(status) : "无响应";
+    }
+
+    // 在工作线程上调用；被中断时返回 null
+    private Outcome replayItem(GroupedItem item) {
+        short originalStatus = item.summary().statusCode();
+        HttpRequest request = buildRequest(item);
+        if (request == null) {
+            return new Outcome(null, originalStatus);
+        }
+        try {
+            awaitSlot();
+        } catch (InterruptedException e) {
+            return null;
+        }
+        HttpRequestResponse message;
+        try {
+            message = sender.send(request);
+        } catch (Exception e) {
+            message = null;
+        }
+        if (message == null) {
+            message = HttpRequestResponse.httpRequestResponse(request, null);
+        }
+        return new Outcome(message, originalStatus);
+    }
+
+    // 限速：每个请求占用一个时间片，时间片未到时等待
+    private void awaitSlot() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    // 读取原始请求并替换请求头和 Cookie；原文无法读取或无法确定目标服务时返回 null
+    private HttpRequest buildRequest(GroupedItem item) {
+        HttpRequestResponse original = item.readMessage();
+        if (original == null) {
+            return null;
+        }
+        byte[] raw = substitute(original.request().toByteArray().getBytes(), options.headers, options.cookies);
+        HttpService service = serviceOf(item, original.request(), raw);
+        return service != null ? HttpRequest.httpRequest(service, ByteArray.byteArray(raw)) : null;
+    }
+
+    // 依次尝试摘要中的完整URL、请求自带的服务和 Host 请求头
+    private HttpService serviceOf(GroupedItem item, HttpRequest request, byte[] raw) {
+        HttpService service = GroupImporter.serviceOf(item.summary().url());
+        if (service != null) {
+            return service;
+        }
+        try {
+            service = request.httpService();
+        } catch (Exception e) {
+            service = null;
+        }
+        if (service != null && service.host() != null && !service.host().isEmpty()) {
+            return service;
+        }
+        String host = headerValue(raw, "Host");
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        return GroupImporter.serviceOf((options.defaultSecure ? "https://" : "http://") + host);
+    }
+
+    /*
+     * 在原始请求的头部中替换或添加请求头和 Cookie，请求行和请求体保持不变。
+     * 按 ISO-8859-1 逐字节转换，非 ASCII 的头部内容原样保留；换行符沿用请求原来的写法。
+     */
+    static byte[] substitute(byte[] raw, Map<String, String> headers, Map<String, String> cookies) {
+        if (headers.isEmpty() && cookies.isEmpty()) {
+            return raw;
+        }
+        int headerEnd = headerEnd(raw);
+        String head = new String(raw, 0, headerEnd, StandardCharsets.ISO_8859_1);
+        String newline = head.contains("\r\n") ? "\r\n" : "\n";
+        String[] lines = head.split("\r?\n", -1);
+
+        Map<String, String> pendingHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        pendingHeaders.putAll(headers);
+        boolean cookieWritten = cookies.isEmpty();
+        StringBuilder result = new StringBuilder(head.length() + 256).append(lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isEmpty()) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String name = colon > 0 ? line.substring(0, colon).trim() : "";
+            String replacement = pendingHeaders.remove(name);
+            if (replacement != null) {
+                line = name + ": " + replacement;
+            }
+            if (!cookieWritten && name.equalsIgnoreCase("Cookie")) {
+                line = name + ": " + mergeCookies(line.substring(colon + 1).trim(), cookies);
+                cookieWritten = true;
+            }
+            result.append(newline).append(line);
+        }
+        for (Map.Entry<String, String> header : pendingHeaders.entrySet()) {
+            result.append(newline).append(header.getKey()).append(": ").append(header.getValue());
+        }
+        if (!cookieWritten) {
+            result.append(newline).append("Cookie: ").append(mergeCookies("", cookies));
+        }
+        result.append(newline).append(newline);
+
+        byte[] newHead = result.toString().getBytes(StandardCharsets.ISO_8859_1);
+        int bodyStart = bodyStart(raw, headerEnd);
+        byte[] replaced = new byte[newHead.length + raw.length - bodyStart];
+        System.arraycopy(newHead, 0, replaced, 0, newHead.length);
+        System.arraycopy(raw, bodyStart, replaced, newHead.length, raw.length - bodyStart);
+        return replaced;
+    }
+
+    private static String mergeCookies(String header, Map<String, String> cookies) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String pair : header.split(";")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                merged.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+            }
+        }
+        merged.putAll(cookies);
+        StringBuilder value = new StringBuilder();
+        for (Map.Entry<String, String> cookie : merged.entrySet()) {
+            if (value.length() > 0) {
+                value.append("; ");
+            }
+            value.append(cookie.getKey()).append('=').append(cookie.getValue());
+        }
+        return value.toString();
+    }
+
+    private static String headerValue(byte[] raw, String name) {
+        String head = new String(raw, 0, headerEnd(raw), StandardCharsets.ISO_8859_1);
+        for (String line : head.split("\r?\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    // 头部结束的位置（不含结尾的空行），没有空行时为整个请求
+    private static int headerEnd(byte[] raw) {
+        for (int i = 0; i + 1 < raw.length; i++) {
+            if (raw[i] == '\n' && raw[i + 1] == '\n') {
+                return i;
+            }
+            if (raw[i] == '\n' && raw[i + 1] == '\r' && i + 2 < raw.length && raw[i + 2] == '\n') {
+                return i > 0 && raw[i - 1] == '\r' ? i - 1 : i;
+            }
+        }
+        return raw.length;
+    }
+
+    // 跳过头部之后的空行
+    private static int bodyStart(byte[] raw, int headerEnd) {
+        int index = headerEnd;
+        int newlines = 0;
+        while (index < raw.length && newlines < 2) {
+            if (raw[index] == '\n') {
+                newlines++;
+            }
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,264 @@
+package burp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 一个分组的统计：按状态码类别、方法、主机和响应类型计数，以及响应大小的分布。
+ * 由 GroupStore 在分组锁内随追加和移除增量更新，每个条目 O(1)，只使用条目摘要；读取时生成不可变的 Snapshot。
+ *
+ * 响应大小记录在对数分桶的直方图中：第 i 个桶覆盖 [GAMMA^(i-1), GAMMA^i)，相邻边界相差 2%，
+ * 最小值、最大值和分位数取桶的中点，相对误差约 1%；总和精确。直方图支持移除，最多约 1100 个桶。
+ */
+final class GroupStats {
+    static final String[] STATUS_CLASSES = {"无响应", "1xx", "2xx", "3xx", "4xx", "5xx", "其他"};
+    static final int NO_RESPONSE = 0;
+    static final int CLIENT_ERROR = 4;
+    static final int SERVER_ERROR = 5;
+
+    // 统计栏和工具提示中每类最多列出的项数
+    private static final int SUMMARY_TOP = 3;
+    private static final int DETAILS_TOP = 10;
+    private static final double GAMMA = 1.02;
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private int count;
+    private final int[] statusClasses = new int[STATUS_CLASSES.length];
+    private final Map<String, int[]> methods = new HashMap<>();
+    private final Map<String, int[]> hosts = new HashMap<>();
+    private final Map<String, int[]> mimeTypes = new HashMap<>();
+    // 有响应的条目的大小
+    private int[] sizeBuckets = new int[64];
+    private int responses;
+    private long totalBytes;
+
+    void add(ItemSummary summary) {
+        update(summary, 1);
+    }
+
+    void remove(ItemSummary summary) {
+        update(summary, -1);
+    }
+
+    private void update(ItemSummary summary, int delta) {
+        count += delta;
+        statusClasses[statusClass(summary.statusCode())] += delta;
+        adjust(methods, summary.method(), delta);
+        adjust(hosts, Hosts.ofUrl(summary.url()), delta);
+        adjust(mimeTypes, summary.mimeType().isEmpty() ? "未知" : summary.mimeType(), delta);
+        if (summary.hasResponse()) {
+            int bucket = bucketOf(summary.length());
+            if (bucket >= sizeBuckets.length) {
+                sizeBuckets = Arrays.copyOf(sizeBuckets, Math.max(sizeBuckets.length * 2, bucket + 1));
+            }
+            sizeBuckets[bucket] += delta;
+            responses += delta;
+            totalBytes += (long) delta * summary.length();
+        }
+    }
+
+    private static void adjust(Map<String, int[]> counts, String key, int delta) {
+        int[] counter = counts.get(key);
+        if (counter == null) {
+            if (delta < 0) {
+                return;
+            }
+            counts.put(key, new int[]{delta});
+            return;
+        }
+        counter[0] += delta;
+        if (counter[0] <= 0) {
+            counts.remove(key);
+        }
+    }
+
+    static int statusClass(int statusCode) {
+        if (statusCode == 0) {
+            return NO_RESPONSE;
+        }
+        int statusClass = statusCode / 100;
+        return statusClass >= 1 && statusClass <= 5 ? statusClass : STATUS_CLASSES.length - 1;
+    }
+
+    private static int bucketOf(int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        return 1 + (int) Math.floor(Math.log(length) / LOG_GAMMA);
+    }
+
+    // 桶中点，桶 0 只有 0
+    private static long valueOf(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        double low = Math.pow(GAMMA, bucket - 1);
+        double high = low * GAMMA;
+        return Math.max(1, Math.round((low + high) / 2));
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // 某一时刻的统计，计数按从多到少排列
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new GroupStats());
+
+        final int count;
+        final int[] statusClasses;
+        final List<Map.Entry<String, Integer>> methods;
+        final List<Map.Entry<String, Integer>> hosts;
+        final List<Map.Entry<String, Integer>> mimeTypes;
+        // 以下只统计有响应的条目
+        final int responses;
+        final long totalBytes;
+        final long minBytes;
+        final long medianBytes;
+        final long p95Bytes;
+        final long maxBytes;
+        // 文本在第一次使用时生成，侧边栏和统计栏重绘时不再拼接
+        private String summary;
+        private String details;
+
+        private Snapshot(GroupStats stats) {
+            count = stats.count;
+            statusClasses = stats.statusClasses.clone();
+            methods = sorted(stats.methods);
+            hosts = sorted(stats.hosts);
+            mimeTypes = sorted(stats.mimeTypes);
+            responses = stats.responses;
+            totalBytes = stats.totalBytes;
+            int[] buckets = stats.sizeBuckets;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > 0) {
+                    if (first < 0) {
+                        first = i;
+                    }
+                    last = i;
+                }
+            }
+            minBytes = first < 0 ? 0 : valueOf(first);
+            maxBytes = last < 0 ? 0 : valueOf(last);
+            medianBytes = percentile(buckets, responses, 0.5);
+            p95Bytes = percentile(buckets, responses, 0.95);
+        }
+
+        private static List<Map.Entry<String, Integer>> sorted(Map<String, int[]> counts) {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.size());
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue()[0]));
+            }
+            entries.sort((a, b) -> a.getValue().equals(b.getValue())
+                    ? a.getKey().compareTo(b.getKey()) : Integer.compare(b.getValue(), a.getValue()));
+            return Collections.unmodifiableList(entries);
+        }
+
+        private static long percentile(int[] buckets, int total, double quantile) {
+            if (total <= 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        int errors() {
+            return statusClasses[CLIENT_ERROR] + statusClasses[SERVER_ERROR];
+        }
+
+        // 请求列表上方的一行统计，每类只列出最多的几项
+        String summary() {
+            String text = summary;
+            if (text == null) {
+                if (count == 0) {
+                    text = "没有请求";
+                } else {
+                    StringBuilder builder = new StringBuilder();
+                    appendStatusClasses(builder, " · ");
+                    builder.append("  |  ");
+                    appendTop(builder, methods, SUMMARY_TOP, " · ", false);
+                    builder.append("  |  ").append(hosts.size()).append(" 个主机");
+                    builder.append("  |  ");
+                    appendTop(builder, mimeTypes, SUMMARY_TOP, " · ", false);
+                    if (responses > 0) {
+                        builder.append("  |  ");
+                        appendSizes(builder, " · ");
+                    }
+                    text = builder.toString();
+                }
+                summary = text;
+            }
+            return text;
+        }
+
+        // 完整统计，用作侧边栏和统计栏的工具提示
+        String details() {
+            String text = details;
+            if (text == null) {
+                StringBuilder builder = new StringBuilder("<html>");
+                builder.append("请求: ").append(count).append("<br>状态码: ");
+                appendStatusClasses(builder, "，");
+                builder.append("<br>方法: ");
+                appendTop(builder, methods, DETAILS_TOP, "，", true);
+                builder.append("<br>主机 (").append(hosts.size()).append("): ");
+                appendTop(builder, hosts, DETAILS_TOP, "，", true);
+                builder.append("<br>类型: ");
+                appendTop(builder, mimeTypes, DETAILS_TOP, "，", true);
+                if (responses > 0) {
+                    builder.append("<br>响应大小: ");
+                    appendSizes(builder, "，");
+                }
+                text = builder.append("</html>").toString();
+                details = text;
+            }
+            return text;
+        }
+
+        private void appendStatusClasses(StringBuilder builder, String separator) {
+            boolean first = true;
+            for (int i = 0; i < statusClasses.length; i++) {
+                if (statusClasses[i] > 0) {
+                    builder.append(first ? "" : separator).append(STATUS_CLASSES[i]).append(' ').append(statusClasses[i]);
+                    first = false;
+                }
+            }
+        }
+
+        // html 为 true 时转义名称，主机名和响应类型来自流量
+        private static void appendTop(StringBuilder builder, List<Map.Entry<String, Integer>> entries, int limit,
+                                      String separator, boolean html) {
+            for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+                Map.Entry<String, Integer> entry = entries.get(i);
+                String name = entry.getKey().isEmpty() ? "(无)" : entry.getKey();
+                if (html) {
+                    name = name.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+                }
+                builder.append(i == 0 ? "" : separator).append(name).append(' ').append(entry.getValue());
+            }
+            if (entries.size() > limit) {
+                builder.append(separator).append("…");
+            }
+        }
+
+        private void appendSizes(StringBuilder builder, String separator) {
+            builder.append("合计 ").append(Formats.bytes(totalBytes))
+                    .append(separator).append("最小 ≈").append(Formats.bytes(minBytes))
+                    .append(separator).append("中位 ≈").append(Formats.bytes(medianBytes))
+                    .append(separator).append("P95 ≈").append(Formats.bytes(p95Bytes))
+                    .append(separator).append("最大 ≈").append(Formats.bytes(maxBytes));
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import javax.swing.SwingUtilities;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+ * 所有分组及其条目，可以从任意线程读写。
+ *
+ * 每个分组有自己的锁，不同分组的追加互不阻塞；修改内存中的条目和写日志在同一把锁内完成，
+ * 保证日志中的顺序与内存一致。读取得到的是不可变快照：追加只写入快照范围之外的数组位置，
+ * 移除则复制出新数组，所以拿到快照后不需要加锁，也不会看到后续修改。
+ * 创建、删除分组较少发生，用一把全局锁保护分组顺序；锁顺序总是先全局锁再分组锁。
+ *
+ * 每个分组随追加和移除增量维护 GroupStats（状态码、方法、主机、响应类型的计数和响应大小分布），
+ * 读取统计不需要遍历条目；统计快照在分组修改后第一次读取时生成。
+ *
+ * 重复策略不是 ALLOW 时，追加前按 RequestFingerprint 在分组内去重。每个分组的指纹索引在第一次
+ * 需要时由条目摘要建立，之后随追加增量更新，移除条目后丢弃重建。没有指纹的旧条目不参与去重。
+ *
+ * 变更通知在 EDT 上发出：在 EDT 上修改时同步通知，其他线程修改时通过 invokeLater 排队。
+ * 监听器收到通知时应读取当前快照，而不是假设通知与快照一一对应。
+ */
+final class GroupStore {
+    interface Listener {
+        // 分组被整体替换（加载项目后）
+        void groupsReloaded();
+
+        void groupCreated(String group);
+
+        void groupDeleted(String group, List<GroupedItem> items);
+
+        void itemsAdded(String group, List<GroupedItem> items);
+
+        void itemsRemoved(String group, List<GroupedItem> items);
+
+        // 条目的显示内容变化（重复计数增加）
+        void itemsUpdated(String group, List<GroupedItem> items);
+    }
+
+    static final class AppendResult {
+        // 实际加入分组的条目
+        final List<GroupedItem> added;
+        // 被识别为重复的请求数
+        final int duplicates;
+
+        AppendResult(List<GroupedItem> added, int duplicates) {
+            this.added = added;
+            this.duplicates = duplicates;
+        }
+    }
+
+    // 分组条目的不可变快照
+    static final class Items extends AbstractList<GroupedItem> implements RandomAccess {
+        static final Items EMPTY = new Items(null, new GroupedItem[0], 0, 0);
+
+        private final Object owner;
+        private final GroupedItem[] array;
+        private final int size;
+        private final int removals;
+
+        private Items(Object owner, GroupedItem[] array, int size, int removals) {
+            this.owner = owner;
+            this.array = array;
+            this.size = size;
+            this.removals = removals;
+        }
+
+        // 本快照是否由 previous 只追加条目得到，即 previous 的每一行在本快照中位置不变
+        boolean extendsFrom(List<GroupedItem> previous) {
+            if (!(previous instanceof Items)) {
+                return false;
+            }
+            Items other = (Items) previous;
+            return other.size == 0 || (other.owner == owner && other.removals == removals && other.size <= size);
+        }
+
+        @Override
+        public GroupedItem get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class Group {
+        // 以下字段由 Group 对象锁保护
+        GroupedItem[] array = new GroupedItem[16];
+        int size;
+        int removals;
+        boolean deleted;
+        // 指纹到最近一个该指纹条目的索引，null 表示需要重建
+        Map<Long, GroupedItem> fingerprints;
+        boolean fingerprintHeaders;
+        final GroupStats stats = new GroupStats();
+
+        volatile Items snapshot = Items.EMPTY;
+        // 为 null 时需要重新生成
+        volatile GroupStats.Snapshot statsSnapshot = GroupStats.Snapshot.EMPTY;
+
+        void publish() {
+            snapshot = new Items(this, array, size, removals);
+            statsSnapshot = null;
+        }
+
+        void append(List<GroupedItem> items) {
+            if (size + items.size() > array.length) {
+                array = Arrays.copyOf(array, Math.max(array.length * 2, size + items.size()));
+            }
+            for (GroupedItem item : items) {
+                array[size++] = item;
+                stats.add(item.summary());
+            }
+            publish();
+        }
+
+        // 返回被移除的条目，没有匹配时不修改
+        List<GroupedItem> removeAll(Set<Long> ids) {
+            BitSet rows = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                if (ids.contains(array[i].id())) {
+                    rows.set(i);
+                }
+            }
+            return removeRows(rows);
+        }
+
+        // 移除 rows 中置位的行：一趟复制出新数组，行之间未移除的区段整段复制；返回被移除的条目
+        List<GroupedItem> removeRows(BitSet rows) {
+            int first = rows.nextSetBit(0);
+            if (first < 0 || first >= size) {
+                return Collections.emptyList();
+            }
+            List<GroupedItem> removed = new ArrayList<>(rows.cardinality());
+            GroupedItem[] remaining = new GroupedItem[array.length];
+            int remainingSize = 0;
+            int start = 0;
+            for (int row = first; row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+                System.arraycopy(array, start, remaining, remainingSize, row - start);
+                remainingSize += row - start;
+                removed.add(array[row]);
+                stats.remove(array[row].summary());
+                start = row + 1;
+            }
+            System.arraycopy(array, start, remaining, remainingSize, size - start);
+            remainingSize += size - start;
+            array = remaining;
+            size = remainingSize;
+            removals++;
+            publish();
+            return removed;
+        }
+
+        Map<Long, GroupedItem> fingerprintIndex(boolean withHeaders) {
+            if (fingerprints == null || fingerprintHeaders != withHeaders) {
+                fingerprints = new HashMap<>(Math.max(16, size * 2));
+                fingerprintHeaders = withHeaders;
+                for (int i = 0; i < size; i++) {
+                    long fingerprint = array[i].summary().fingerprint(withHeaders);
+                    if (fingerprint != RequestFingerprint.UNKNOWN) {
+                        fingerprints.put(fingerprint, array[i]);
+                    }
+                }
+            }
+            return fingerprints;
+        }
+    }
+
+    private final HistoryJournal journal;
+    private final Object structureLock = new Object();
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    // 按创建顺序排列的分组名，由 structureLock 保护写入，读取时是不可变快照
+    private volatile List<String> names = Collections.emptyList();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong suppressedDuplicates = new AtomicLong();
+    private volatile DuplicatePolicy duplicatePolicy = DuplicatePolicy.ALLOW;
+    private volatile boolean compareHeaders;
+
+    GroupStore(HistoryJournal journal) {
+        this.journal = journal;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void setDuplicatePolicy(DuplicatePolicy policy, boolean compareHeaders) {
+        this.duplicatePolicy = policy;
+        this.compareHeaders = compareHeaders;
+        if (policy == DuplicatePolicy.ALLOW) {
+            for (Group group : groups.values()) {
+                synchronized (group) {
+                    group.fingerprints = null;
+                }
+            }
+        }
+    }
+
+    // 本次加载以来被识别为重复的请求数
+    long suppressedDuplicates() {
+        return suppressedDuplicates.get();
+    }
+
+    // 用从项目文件加载的数据替换全部分组，不写日志
+    void reload(Map<String, List<GroupedItem>> loaded) {
+        synchronized (structureLock) {
+            for (Group group : groups.values()) {
+                synchronized (group) {
+                    group.deleted = true;
+                }
+            }
+            groups.clear();
+            for (Map.Entry<String, List<GroupedItem>> entry : loaded.entrySet()) {
+                Group group = new Group();
+                synchronized (group) {
+                    group.append(entry.getValue());
+                }
+                groups.put(entry.getKey(), group);
+            }
+            names = Collections.unmodifiableList(new ArrayList<>(loaded.keySet()));
+        }
+        fire(Listener::groupsReloaded);
+    }
+
+    // 启动时逐个放入刚加载的分组，不写日志；分组已存在时忽略。全部加载完成后以 reload 的结果为准
+    void loadGroup(String name, List<GroupedItem> items) {
+        synchronized (structureLock) {
+            if (groups.containsKey(name)) {
+                return;
+            }
+            Group group = addGroup(name);
+            synchronized (group) {
+                group.append(items);
+            }
+        }
+        fire(listener -> listener.groupCreated(name));
+    }
+
+    // 分组已存在时返回 false
+    boolean createGroup(String name) {
+        synchronized (structureLock) {
+            if (groups.containsKey(name)) {
+                return false;
+            }
+            addGroup(name);
+            journal.createGroup(name);
+        }
+        fire(listener -> listener.groupCreated(name));
+        return true;
+    }
+
+    // 分组不存在时返回 false
+    boolean deleteGroup(String name) {
+        Items removed;
+        synchronized (structureLock) {
+            Group group = groups.remove(name);
+            if (group == null) {
+                return false;
+            }
+            List<String> newNames = new ArrayList<>(names);
+            newNames.remove(name);
+            names = Collections.unmodifiableList(newNames);
+            synchronized (group) {
+                group.deleted = true;
+                removed = group.snapshot;
+                journal.deleteGroup(name);
+            }
+        }
+        fire(listener -> listener.groupDeleted(name, removed));
+        return true;
+    }
+
+    // 追加到分组末尾，分组不存在时自动创建；按当前重复策略跳过、替换或计数重复的请求
+    AppendResult append(String name, List<HttpRequestResponse> messages) {
+        return append(name, messages, null);
+    }
+
+    // 同上；summaries 不为 null 时与 messages 一一对应，是调用方已经生成的摘要（含指纹），不再解析原文
+    AppendResult append(String name, List<HttpRequestResponse> messages, List<ItemSummary> summaries) {
+        // 生成摘要和指纹较慢，在锁外完成
+        List<GroupedItem> candidates = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            candidates.add(summaries != null ? journal.newItem(summaries.get(i), messages.get(i))
+                    : journal.newItem(messages.get(i)));
+        }
+        DuplicatePolicy policy = duplicatePolicy;
+        boolean withHeaders = compareHeaders;
+
+        while (true) {
+            boolean created = false;
+            Group group = groups.get(name);
+            if (group == null) {
+                synchronized (structureLock) {
+                    group = groups.get(name);
+                    if (group == null) {
+                        // 与 createGroup 一样记录创建，没有条目加入时分组在重新加载后也仍然存在
+                        group = addGroup(name);
+                        journal.createGroup(name);
+                        created = true;
+                    }
+                }
+            }
+
+            List<GroupedItem> items;
+            List<GroupedItem> replaced = Collections.emptyList();
+            List<GroupedItem> counted = new ArrayList<>();
+            int duplicates = 0;
+            synchronized (group) {
+                if (group.deleted) {
+                    // 刚被其他线程删除，重新创建
+                    continue;
+                }
+                if (policy == DuplicatePolicy.ALLOW) {
+                    items = candidates;
+                } else {
+                    Map<Long, GroupedItem> index = group.fingerprintIndex(withHeaders);
+                    // 同一批中的重复也要处理，所以待添加的条目按ID保存，替换时可以直接去掉
+                    Map<Long, GroupedItem> added = new LinkedHashMap<>();
+                    Set<Long> replacedIds = new HashSet<>();
+                    for (GroupedItem item : candidates) {
+                        long fingerprint = item.summary().fingerprint(withHeaders);
+                        GroupedItem existing = fingerprint != RequestFingerprint.UNKNOWN ? index.get(fingerprint) : null;
+                        if (existing == null) {
+                            added.put(item.id(), item);
+                            if (fingerprint != RequestFingerprint.UNKNOWN) {
+                                index.put(fingerprint, item);
+                            }
+                            continue;
+                        }
+                        duplicates++;
+                        if (policy == DuplicatePolicy.COUNT) {
+                            existing.addDuplicates(1);
+                            counted.add(existing);
+                        } else if (policy == DuplicatePolicy.REPLACE) {
+                            if (added.remove(existing.id()) == null) {
+                                replacedIds.add(existing.id());
+                            }
+                            added.put(item.id(), item);
+                            index.put(fingerprint, item);
+                        }
+                    }
+                    items = new ArrayList<>(added.values());
+                    if (!replacedIds.isEmpty()) {
+                        replaced = group.removeAll(replacedIds);
+                        journal.removeItems(name, replaced);
+                    }
+                }
+                journal.addItems(name, items);
+                group.append(items);
+                journal.recordDuplicates(name, counted);
+            }
+            if (duplicates > 0) {
+                suppressedDuplicates.addAndGet(duplicates);
+            }
+            if (created) {
+                fire(listener -> listener.groupCreated(name));
+            }
+            List<GroupedItem> removedItems = replaced;
+            if (!removedItems.isEmpty()) {
+                fire(listener -> listener.itemsRemoved(name, removedItems));
+            }
+            if (!items.isEmpty()) {
+                fire(listener -> listener.itemsAdded(name, items));
+            }
+            if (!counted.isEmpty()) {
+                List<GroupedItem> updated = new ArrayList<>(new LinkedHashSet<>(counted));
+                fire(listener -> listener.itemsUpdated(name, updated));
+            }
+            return new AppendResult(items, duplicates);
+        }
+    }
+
+    // 返回实际被移除的条目
+    List<GroupedItem> remove(String name, Collection<GroupedItem> items) {
+        Group group = groups.get(name);
+        if (group == null || items.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (GroupedItem item : items) {
+            ids.add(item.id());
+        }
+        List<GroupedItem> removed;
+        synchronized (group) {
+            if (group.deleted) {
+                return Collections.emptyList();
+            }
+            removed = group.removeAll(ids);
+            journalRemoved(name, group, removed);
+        }
+        if (!removed.isEmpty()) {
+            fire(listener -> listener.itemsRemoved(name, removed));
+        }
+        return removed;
+    }
+
+    /*
+     * 按行号移除：rows 是 snapshot 中要移除的行。snapshot 之后分组只追加过条目时行号仍然有效，
+     * 直接一趟压缩；否则（期间有移除）按这些行上条目的ID移除。请求列表批量移除选中行时使用，
+     * 不需要为每个条目查找位置。返回实际被移除的条目
+     */
+    List<GroupedItem> removeRows(String name, List<GroupedItem> snapshot, BitSet selectedRows) {
+        Group group = groups.get(name);
+        BitSet rows = selectedRows.get(0, snapshot.size());
+        if (group == null || rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<GroupedItem> removed;
+        synchronized (group) {
+            if (group.deleted) {
+                return Collections.emptyList();
+            }
+            if (group.snapshot.extendsFrom(snapshot)) {
+                removed = group.removeRows(rows);
+            } else {
+                Set<Long> ids = new HashSet<>();
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    ids.add(snapshot.get(row).id());
+                }
+                removed = group.removeAll(ids);
+            }
+            journalRemoved(name, group, removed);
+        }
+        if (!removed.isEmpty()) {
+            fire(listener -> listener.itemsRemoved(name, removed));
+        }
+        return removed;
+    }
+
+    // 在分组锁内调用，移除的条目作为一个操作写入日志
+    private void journalRemoved(String name, Group group, List<GroupedItem> removed) {
+        if (!removed.isEmpty()) {
+            journal.removeItems(name, removed);
+            group.fingerprints = null;
+        }
+    }
+
+    // 分组条目的当前快照，分组不存在时为空列表
+    Items items(String name) {
+        Group group = groups.get(name);
+        return group != null ? group.snapshot : Items.EMPTY;
+    }
+
+    int size(String name) {
+        return items(name).size();
+    }
+
+    // 分组的统计，分组不存在时为空统计
+    GroupStats.Snapshot stats(String name) {
+        Group group = groups.get(name);
+        if (group == null) {
+            return GroupStats.Snapshot.EMPTY;
+        }
+        GroupStats.Snapshot stats = group.statsSnapshot;
+        if (stats == null) {
+            synchronized (group) {
+                stats = group.statsSnapshot;
+                if (stats == null) {
+                    stats = group.stats.snapshot();
+                    group.statsSnapshot = stats;
+                }
+            }
+        }
+        return stats;
+    }
+
+    boolean contains(String name) {
+        return groups.containsKey(name);
+    }
+
+    boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    // 按创建顺序排列的分组名
+    List<String> groupNames() {
+        return names;
+    }
+
+    // 所有分组的快照，每个分组各自一致，用于导出和重建索引
+    Map<String, List<GroupedItem>> snapshot() {
+        Map<String, List<GroupedItem>> snapshot = new LinkedHashMap<>();
+        for (String name : names) {
+            Group group = groups.get(name);
+            if (group != null) {
+                snapshot.put(name, group.snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    // 调用方持有 structureLock
+    private Group addGroup(String name) {
+        Group group = new Group();
+        groups.put(name, group);
+        List<String> newNames = new ArrayList<>(names);
+        newNames.add(name);
+        names = Collections.unmodifiableList(newNames);
+        return group;
+    }
+
+    private void fire(Consumer<Listener> event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Runnable dispatch = () -> {
+            for (Listener listener : listeners) {
+                event.accept(listener);
+            }
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            dispatch.run();
+        } else {
+            SwingUtilities.invokeLater(dispatch);
+        }
+    }
+}
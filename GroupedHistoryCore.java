@@ -0,0 +1,112 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.PersistedObject;
+import burp.api.montoya.persistence.Preferences;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 与界面无关的核心组件：设置、压缩、缓存、持久化日志和分组存储。
+ * 只依赖 Montoya 的 PersistedObject、Preferences 和 Logging 三个接口，
+ * BurpExtender 用 Burp 提供的实现构造，无界面的压力测试用内存中的替身构造。
+ */
+final class GroupedHistoryCore {
+    private final Preferences preferences;
+    private final Logging logging;
+    private final GroupedHistorySettings settings;
+    private final PayloadCompressor compressor = new PayloadCompressor();
+    private final MessageCache messageCache = new MessageCache();
+    private final SpillStore spillStore = new SpillStore();
+    private final PerformanceMetrics metrics = new PerformanceMetrics();
+    private final HistoryJournal journal;
+    private final GroupStore groupStore;
+
+    GroupedHistoryCore(PersistedObject projectData, Preferences preferences, Logging logging) {
+        this.preferences = preferences;
+        this.logging = logging;
+        this.settings = new GroupedHistorySettings(preferences);
+        this.journal = new HistoryJournal(projectData, compressor, messageCache, spillStore, logging);
+        journal.setMetrics(metrics);
+        this.groupStore = new GroupStore(journal);
+        applySettings();
+    }
+
+    // 把当前设置应用到各组件，修改设置后调用
+    void applySettings() {
+        compressor.configure(settings.compressionLevel(), settings.compressionThreshold());
+        messageCache.configure(settings.cacheSizeMb() * 1024L * 1024L);
+        spillStore.configure(settings.spillThreshold());
+        groupStore.setDuplicatePolicy(settings.duplicatePolicy(), settings.duplicateCompareHeaders());
+    }
+
+    // 读取项目中的分组放入 GroupStore；项目里还没有数据时，迁移旧版本保存在 Preferences 中的 JSON
+    void load() {
+        load(null);
+    }
+
+    /*
+     * 同 load()，可在后台线程调用。listener 不为 null 时每个分组就绪后立即放入 GroupStore 并回调，
+     * 界面可以逐个显示分组；全部完成后再用完整的结果 reload 一次，确定分组顺序。
+     */
+    void load(HistoryJournal.LoadListener listener) {
+        try {
+            HistoryJournal.LoadListener progressive = null;
+            if (listener != null) {
+                progressive = (group, items, loadedGroups, totalGroups) -> {
+                    groupStore.loadGroup(group, items);
+                    listener.groupLoaded(group, items, loadedGroups, totalGroups);
+                };
+            }
+            Map<String, List<GroupedItem>> loaded = journal.load(progressive);
+            // 部分加载时项目中可能仍有读不出的分组，不把旧版本数据当作唯一的数据迁移
+            if (loaded.isEmpty() && !journal.isDegraded()) {
+                LegacyJsonMigration migration = new LegacyJsonMigration(preferences, logging);
+                Map<String, List<HttpRequestResponse>> legacyGroups = migration.read();
+                if (!legacyGroups.isEmpty()) {
+                    loaded = journal.importGroups(legacyGroups);
+                    migration.deleteLegacyData();
+                    logging.logToOutput("Migrated " + legacyGroups.size() + " legacy groups into the project file");
+                }
+            }
+            groupStore.reload(loaded);
+        } catch (Exception e) {
+            logging.logToError("Failed to load grouped history data: " + e.getMessage());
+        }
+    }
+
+    // 写完队列中剩余的操作后停止写入线程
+    void close() {
+        journal.close();
+    }
+
+    GroupedHistorySettings settings() {
+        return settings;
+    }
+
+    PayloadCompressor compressor() {
+        return compressor;
+    }
+
+    MessageCache messageCache() {
+        return messageCache;
+    }
+
+    SpillStore spillStore() {
+        return spillStore;
+    }
+
+    PerformanceMetrics metrics() {
+        return metrics;
+    }
+
+    HistoryJournal journal() {
+        return journal;
+    }
+
+    GroupStore groupStore() {
+        return groupStore;
+    }
+}
@@ -0,0 +1,168 @@
+package burp;
+
+import burp.api.montoya.persistence.Preferences;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 扩展的用户设置，保存在 Burp 的 Preferences 中（与项目无关）
+final class GroupedHistorySettings {
+    private static final String KEY_PREFIX = "grouped_history.settings.";
+    private static final String COMPRESSION_LEVEL = KEY_PREFIX + "compression_level";
+    private static final String COMPRESSION_THRESHOLD = KEY_PREFIX + "compression_threshold";
+    private static final String SPILL_THRESHOLD = KEY_PREFIX + "spill_threshold";
+    private static final String CACHE_SIZE_MB = KEY_PREFIX + "cache_size_mb";
+    private static final String AUTO_GROUP_ENABLED = KEY_PREFIX + "auto_group_enabled";
+    private static final String AUTO_GROUP_RULES = KEY_PREFIX + "auto_group_rules";
+    private static final String DUPLICATE_POLICY = KEY_PREFIX + "duplicate_policy";
+    private static final String DUPLICATE_COMPARE_HEADERS = KEY_PREFIX + "duplicate_compare_headers";
+    private static final String DIAGNOSTICS_ENABLED = KEY_PREFIX + "diagnostics_enabled";
+    private static final String STALL_THRESHOLD_MS = KEY_PREFIX + "stall_threshold_ms";
+    private static final String REPLAY_CONCURRENCY = KEY_PREFIX + "replay_concurrency";
+    private static final String REPLAY_RATE = KEY_PREFIX + "replay_rate";
+
+    static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    static final int DEFAULT_COMPRESSION_THRESHOLD = 512;
+    static final int DEFAULT_SPILL_THRESHOLD = 256 * 1024;
+    static final int DEFAULT_CACHE_SIZE_MB = 64;
+    static final int DEFAULT_STALL_THRESHOLD_MS = 200;
+    static final int DEFAULT_REPLAY_CONCURRENCY = 4;
+    static final int DEFAULT_REPLAY_RATE = 10;
+
+    private final Preferences preferences;
+    private final Gson gson = new Gson();
+
+    GroupedHistorySettings(Preferences preferences) {
+        this.preferences = preferences;
+    }
+
+    static boolean isSettingsKey(String key) {
+        return key.startsWith(KEY_PREFIX);
+    }
+
+    // 0 表示不压缩，1-9 与 Deflater 的压缩级别一致
+    int compressionLevel() {
+        return getInteger(COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    void setCompressionLevel(int level) {
+        preferences.setInteger(COMPRESSION_LEVEL, Math.max(0, Math.min(9, level)));
+    }
+
+    // 小于该字节数的条目不压缩
+    int compressionThreshold() {
+        return getInteger(COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    void setCompressionThreshold(int bytes) {
+        preferences.setInteger(COMPRESSION_THRESHOLD, Math.max(0, bytes));
+    }
+
+    // 不小于该字节数的请求/响应写入堆外缓存，0 表示不使用
+    int spillThreshold() {
+        return getInteger(SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    void setSpillThreshold(int bytes) {
+        preferences.setInteger(SPILL_THRESHOLD, Math.max(0, bytes));
+    }
+
+    // 已解码条目的内存缓存上限
+    int cacheSizeMb() {
+        return getInteger(CACHE_SIZE_MB, DEFAULT_CACHE_SIZE_MB);
+    }
+
+    void setCacheSizeMb(int megabytes) {
+        preferences.setInteger(CACHE_SIZE_MB, Math.max(1, megabytes));
+    }
+
+    boolean autoGroupEnabled() {
+        Boolean value = preferences.getBoolean(AUTO_GROUP_ENABLED);
+        return value != null && value;
+    }
+
+    void setAutoGroupEnabled(boolean enabled) {
+        preferences.setBoolean(AUTO_GROUP_ENABLED, enabled);
+    }
+
+    // 自动分组规则，按顺序保存为 JSON；无法解析时视为没有规则
+    List<AutoGrouper.Rule> autoGroupRules() {
+        String json = preferences.getString(AUTO_GROUP_RULES);
+        if (json == null || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<AutoGrouper.Rule> rules = gson.fromJson(json, new TypeToken<List<AutoGrouper.Rule>>() {}.getType());
+            return rules != null ? rules : new ArrayList<>();
+        } catch (JsonParseException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    void setAutoGroupRules(List<AutoGrouper.Rule> rules) {
+        preferences.setString(AUTO_GROUP_RULES, gson.toJson(rules));
+    }
+
+    DuplicatePolicy duplicatePolicy() {
+        return DuplicatePolicy.fromName(preferences.getString(DUPLICATE_POLICY));
+    }
+
+    void setDuplicatePolicy(DuplicatePolicy policy) {
+        preferences.setString(DUPLICATE_POLICY, policy.name());
+    }
+
+    // 判断重复时是否同时比较请求头（忽略易变的头）
+    boolean duplicateCompareHeaders() {
+        Boolean value = preferences.getBoolean(DUPLICATE_COMPARE_HEADERS);
+        return value != null && value;
+    }
+
+    void setDuplicateCompareHeaders(boolean compare) {
+        preferences.setBoolean(DUPLICATE_COMPARE_HEADERS, compare);
+    }
+
+    // 是否收集性能统计并监视 EDT 卡顿
+    boolean diagnosticsEnabled() {
+        Boolean value = preferences.getBoolean(DIAGNOSTICS_ENABLED);
+        return value != null && value;
+    }
+
+    void setDiagnosticsEnabled(boolean enabled) {
+        preferences.setBoolean(DIAGNOSTICS_ENABLED, enabled);
+    }
+
+    // EDT 被扩展阻塞超过该毫秒数时写入日志
+    int stallThresholdMs() {
+        return getInteger(STALL_THRESHOLD_MS, DEFAULT_STALL_THRESHOLD_MS);
+    }
+
+    void setStallThresholdMs(int milliseconds) {
+        preferences.setInteger(STALL_THRESHOLD_MS, Math.max(50, milliseconds));
+    }
+
+    // 重放分组时同时发送的请求数
+    int replayConcurrency() {
+        return getInteger(REPLAY_CONCURRENCY, DEFAULT_REPLAY_CONCURRENCY);
+    }
+
+    void setReplayConcurrency(int requests) {
+        preferences.setInteger(REPLAY_CONCURRENCY, Math.max(1, Math.min(64, requests)));
+    }
+
+    // 重放分组时每秒最多发送的请求数，0 表示不限制
+    int replayRate() {
+        return getInteger(REPLAY_RATE, DEFAULT_REPLAY_RATE);
+    }
+
+    void setReplayRate(int requestsPerSecond) {
+        preferences.setInteger(REPLAY_RATE, Math.max(0, requestsPerSecond));
+    }
+
+    private int getInteger(String key, int defaultValue) {
+        Integer value = preferences.getInteger(key);
+        return value != null ? value : defaultValue;
+    }
+}
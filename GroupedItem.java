@@ -0,0 +1,98 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+/*
+ * 分组中的一条记录：持久化层分配的稳定ID、列表显示用的摘要，以及请求/响应本身。
+ * 新添加的条目在落盘前持有原文，落盘后和从项目文件加载的条目一样只带摘要，
+ * 每次访问 message() 都经由 Loader 从缓存或项目文件取得原文。
+ */
+final class GroupedItem {
+    // 按ID读取条目原文，失败时返回 null；cache 为 false 时结果不放入内存缓存
+    interface Loader {
+        HttpRequestResponse load(long id, boolean cache);
+    }
+
+    private final long id;
+    private final ItemSummary summary;
+    private volatile Loader loader;
+    private volatile HttpRequestResponse message;
+    // 重复策略为“保留并计数”时，合并到本条目的重复请求数，由 GroupStore 在分组锁内修改
+    private volatile int duplicates;
+    // 带重复计数的列表行文本，计数改变时清空，下次绘制时重新生成
+    private volatile String duplicatesText;
+
+    GroupedItem(long id, HttpRequestResponse message) {
+        this(id, ItemSummary.of(message), message);
+    }
+
+    // 调用方已经生成了摘要（自动分组），不再解析原文
+    GroupedItem(long id, ItemSummary summary, HttpRequestResponse message) {
+        this.id = id;
+        this.summary = summary;
+        this.loader = null;
+        this.message = message;
+    }
+
+    GroupedItem(long id, ItemSummary summary, Loader loader) {
+        this.id = id;
+        this.summary = summary;
+        this.loader = loader;
+    }
+
+    long id() {
+        return id;
+    }
+
+    ItemSummary summary() {
+        return summary;
+    }
+
+    int duplicates() {
+        return duplicates;
+    }
+
+    void addDuplicates(int count) {
+        duplicates += count;
+        duplicatesText = null;
+    }
+
+    // 列表中的整行文本：摘要文本，有重复时加上次数
+    String displayText() {
+        int count = duplicates;
+        if (count == 0) {
+            return summary.displayText();
+        }
+        String text = duplicatesText;
+        if (text == null) {
+            text = summary.displayText() + "  ×" + (count + 1);
+            duplicatesText = text;
+        }
+        return text;
+    }
+
+    // 由写入线程在原文落盘后调用，之后不再持有原文
+    void markPersisted(Loader loader) {
+        this.loader = loader;
+        this.message = null;
+    }
+
+    // 无法读取时返回 null
+    HttpRequestResponse message() {
+        return read(true);
+    }
+
+    // 供后台批量处理（如建立搜索索引）读取原文，不挤占正在查看的条目的缓存
+    HttpRequestResponse readMessage() {
+        return read(false);
+    }
+
+    private HttpRequestResponse read(boolean cache) {
+        HttpRequestResponse current = message;
+        if (current != null) {
+            return current;
+        }
+        Loader currentLoader = loader;
+        return currentLoader != null ? currentLoader.load(id, cache) : null;
+    }
+}
@@ -0,0 +1,149 @@
+package burp;
+
+import javax.swing.AbstractListModel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * 请求列表的数据模型，直接引用当前分组在 GroupStore 中的不可变快照而不复制。
+ * 切换分组或批量修改后只触发一次移除和一次添加事件，开销与分组大小无关；移除条目只触发一次 contentsChanged；
+ * 配合 JList 的固定行高，列表只为可见行调用渲染器。
+ * 过滤时只保存满足条件的行号，getElementAt 通过行号取后备列表中的条目。
+ */
+final class GroupedItemListModel extends AbstractListModel<GroupedItem> {
+    private List<GroupedItem> items = Collections.emptyList();
+    // 过滤后可见的后备列表行号，升序；为 null 时显示全部
+    private int[] rows;
+    private int size;
+
+    void setItems(List<GroupedItem> items) {
+        setItems(items, null);
+    }
+
+    void setItems(List<GroupedItem> items, int[] rows) {
+        int oldSize = size;
+        this.items = items;
+        this.rows = rows;
+        this.size = rows != null ? rows.length : items.size();
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (size > 0) {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+
+    // 换成只在末尾追加了条目的新快照，已有行和选择保持不变
+    void itemsAppended(List<GroupedItem> items) {
+        int oldSize = size;
+        this.items = items;
+        size = items.size();
+        if (size > oldSize) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        }
+    }
+
+    // 过滤时换成只在末尾追加了条目的新快照，newRows 为新条目中满足条件的行号
+    void rowsAppended(List<GroupedItem> items, int[] newRows) {
+        int oldSize = size;
+        this.items = items;
+        int[] merged = Arrays.copyOf(rows, rows.length + newRows.length);
+        System.arraycopy(newRows, 0, merged, rows.length, newRows.length);
+        rows = merged;
+        size = merged.length;
+        if (size > oldSize) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        }
+    }
+
+    /*
+     * 换成移除了部分条目的新快照（之后可能又追加了条目）。一趟合并两个快照找出仍然存在的条目并重新编号，
+     * 过滤结果直接沿用，不必重新求值；只触发一次 contentsChanged。
+     * selection 中的旧行号原地换成新行号，被移除的行换成 -1。
+     * 返回新快照中已处理的条目数，之后追加的条目尚未显示，由调用者通过 itemsAppended/rowsAppended 补上
+     */
+    int itemsRemoved(List<GroupedItem> newItems, int[] selection) {
+        int oldSize = size;
+        List<GroupedItem> oldItems = items;
+        // 旧快照的行号 -> 新快照的行号，被移除的为 -1
+        int[] moved = new int[oldItems.size()];
+        int matched = 0;
+        for (int i = 0; i < oldItems.size(); i++) {
+            if (matched < newItems.size() && oldItems.get(i) == newItems.get(matched)) {
+                moved[i] = matched++;
+            } else {
+                moved[i] = -1;
+            }
+        }
+
+        // 显示的旧行号 -> 新行号
+        int[] visible;
+        if (rows == null) {
+            visible = moved;
+            size = matched;
+        } else {
+            visible = new int[rows.length];
+            int[] kept = new int[rows.length];
+            int keptSize = 0;
+            for (int i = 0; i < rows.length; i++) {
+                int row = moved[rows[i]];
+                if (row >= 0) {
+                    visible[i] = keptSize;
+                    kept[keptSize++] = row;
+                } else {
+                    visible[i] = -1;
+                }
+            }
+            rows = Arrays.copyOf(kept, keptSize);
+            size = keptSize;
+        }
+        items = newItems;
+        for (int i = 0; i < selection.length; i++) {
+            selection[i] = selection[i] < visible.length ? visible[selection[i]] : -1;
+        }
+
+        int changed = Math.max(oldSize, size);
+        if (changed > 0) {
+            fireContentsChanged(this, 0, changed - 1);
+        }
+        return matched;
+    }
+
+    // 显示的第 index 行在分组快照中的行号
+    int itemRow(int index) {
+        return rows != null ? rows[index] : index;
+    }
+
+    // 当前显示的分组快照（过滤前）
+    List<GroupedItem> items() {
+        return items;
+    }
+
+    boolean isFiltered() {
+        return rows != null;
+    }
+
+    // 条目在列表中的行号，被过滤掉或不存在时返回 -1
+    int indexOf(GroupedItem item) {
+        if (rows == null) {
+            return items.indexOf(item);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            if (items.get(rows[i]) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public GroupedItem getElementAt(int index) {
+        return rows != null ? items.get(rows[index]) : items.get(index);
+    }
+}
@@ -0,0 +1,1109 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.PersistedObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * 分组历史的增量持久化。
+ *
+ * 存储布局（均为项目文件中扩展数据的 ByteArray 键，格式见 RecordCodec）：
+ *   blob.<hash>   请求或响应原文，按内容寻址，多个条目引用同一内容时只保存一份
+ *   item.<id>     旧版本的单条请求/响应，只读取不再写入
+ *   group.<n>     某个分组的快照：分组名 + 条目ID、摘要和数据块哈希列表
+ *   journal.<seq> 一批操作记录（新建/删除分组、添加/移除条目、记录重复）
+ *   manifest      分组名 -> 快照编号，以及日志的起始序号
+ *   dict.<id>     条目压缩使用的主机字典（见 PayloadCompressor）
+ *
+ * 修改方法只把操作放入队列后立即返回，由后台写入线程统一落盘：
+ * 一段时间内的连续操作会合并成一条日志记录，添加后又被移除的条目不会写入。
+ * 日志累积到一定数量后，同一线程把受影响分组的快照重写一遍并删除已合并的日志（只涉及ID和摘要）。
+ *
+ * 启动时只读取清单、快照和日志，得到每个条目的摘要，各分组的快照并行解码；条目原文在被访问时才由 loadItem 读取解码，
+ * 解码结果放入 MessageCache，较大的原文另外写入 SpillStore，淘汰后再次访问时不必重新解压。
+ * 数据块的引用计数由索引推算，不单独保存：最后一个引用它的条目被移除后，数据块随日志一起删除。
+ */
+final class HistoryJournal {
+    private static final String MANIFEST_KEY = "manifest";
+    private static final String ITEM_PREFIX = "item.";
+    private static final String BLOB_PREFIX = "blob.";
+    private static final String GROUP_PREFIX = "group.";
+    private static final String JOURNAL_PREFIX = "journal.";
+    private static final String DICTIONARY_PREFIX = "dict.";
+
+    private static final int COMPACT_THRESHOLD = 64;
+    private static final long SAVE_DELAY_MS = 250;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    // 部分加载后新条目ID的起点与已知最大ID的间隔
+    private static final long DEGRADED_ID_GAP = 1L << 32;
+
+    private static final byte OP_CREATE_GROUP = 1;
+    private static final byte OP_DELETE_GROUP = 2;
+    private static final byte OP_ADD_ITEMS = 3;
+    private static final byte OP_REMOVE_ITEMS = 4;
+    private static final byte OP_ADD_DUPLICATES = 5;
+
+    // 后台写入的进度回调，在写入线程上调用
+    interface SaveListener {
+        void saveStarted(int pendingOperations);
+
+        void saveFinished(int operations, long elapsedMillis);
+
+        void saveFailed(Exception error);
+    }
+
+    // 日志中的一个操作，ADD 操作同时带有与 items 一一对应的索引项（旧版本记录中为空）
+    private static class JournalOperation {
+        final byte op;
+        final String group;
+        final List<Long> items;
+        final List<ItemEntry> entries;
+
+        JournalOperation(byte op, String group, List<Long> items, List<ItemEntry> entries) {
+            this.op = op;
+            this.group = group;
+            this.items = items;
+            this.entries = entries;
+        }
+    }
+
+    // 条目的索引项：摘要和原文所在的数据块，数据块为 null 表示原文在旧版本的 item.<id> 中
+    private static class ItemEntry {
+        final ItemSummary summary;
+        final String requestBlob;
+        final String responseBlob;
+        // 合并到该条目的重复请求数，由 OP_ADD_DUPLICATES 累加
+        int duplicates;
+
+        ItemEntry(ItemSummary summary, String requestBlob, String responseBlob) {
+            this.summary = summary;
+            this.requestBlob = requestBlob;
+            this.responseBlob = responseBlob;
+        }
+    }
+
+    // 等待写入的操作，ADD 携带条目本身，REMOVE 和 ADD_DUPLICATES 只需要ID
+    private static class PendingOperation {
+        final byte op;
+        final String group;
+        final List<GroupedItem> added;
+        final List<Long> ids;
+
+        PendingOperation(byte op, String group, List<GroupedItem> added, List<Long> ids) {
+            this.op = op;
+            this.group = group;
+            this.added = added;
+            this.ids = ids;
+        }
+    }
+
+    // 加载进度回调，在加载线程上调用
+    interface LoadListener {
+        // 分组的条目已经确定，不会再被加载过程修改；totalGroups 是预计的分组总数
+        void groupLoaded(String group, List<GroupedItem> items, int loadedGroups, int totalGroups);
+    }
+
+    // 并行解码得到的一个分组快照
+    private static class DecodedSnapshot {
+        final List<Long> itemIds = new ArrayList<>();
+        final List<ItemEntry> itemEntries = new ArrayList<>();
+    }
+
+    // 一次加载过程中跨分组累计的状态，只在加载线程上使用
+    private static class LoadState {
+        final Set<Long> storedItemIds;
+        final LoadListener listener;
+        final int totalGroups;
+        final Set<Long> referencedIds = new HashSet<>();
+        long maxId;
+        boolean needsCompaction;
+        int loadedGroups;
+
+        LoadState(Set<Long> storedItemIds, LoadListener listener, int totalGroups) {
+            this.storedItemIds = storedItemIds;
+            this.listener = listener;
+            this.totalGroups = totalGroups;
+        }
+    }
+
+    // 已持久化状态在内存中的镜像，只保存ID（索引项在 entries 中），用于合并日志
+    private static class GroupIndex {
+        // 合并时改为新写入的快照编号
+        int snapshotKey;
+        final List<Long> itemIds = new ArrayList<>();
+        boolean dirty;
+
+        GroupIndex(int snapshotKey) {
+            this.snapshotKey = snapshotKey;
+        }
+    }
+
+    private final PersistedObject store;
+    private final PayloadCompressor compressor;
+    private final MessageCache cache;
+    private final SpillStore spill;
+    private final Logging logging;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "GroupedHistory-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong nextItemId = new AtomicLong(1);
+
+    // 由调用方线程写入，写入线程取走
+    private final List<PendingOperation> pending = new ArrayList<>();
+    private boolean saveScheduled;
+    private volatile SaveListener saveListener;
+    private volatile PerformanceMetrics metrics = new PerformanceMetrics();
+
+    // 以下字段只在持有 this 锁时访问（写入线程或启动时的 load/importGroups）
+    private final Map<String, GroupIndex> groups = new LinkedHashMap<>();
+    private final Map<Long, ItemEntry> entries = new HashMap<>();
+    private final Map<String, Integer> blobReferences = new HashMap<>();
+    private final Set<Integer> deletedSnapshotKeys = new HashSet<>();
+    private int nextSnapshotKey = 1;
+    private long journalStart = 1;
+    private long nextSeq = 1;
+    /*
+     * 加载时清单、快照或日志有读取失败的部分：内存中的索引缺少这些分组，
+     * 据此清理或合并会删掉它们的数据，因此在下次完整加载之前不做加载后的清理，也不再合并日志。
+     */
+    private boolean degraded;
+    // 当前批次写入项目文件的字节数
+    private long writtenBytes;
+
+    HistoryJournal(PersistedObject store, PayloadCompressor compressor, MessageCache cache, SpillStore spill,
+                   Logging logging) {
+        this.store = store;
+        this.compressor = compressor;
+        this.cache = cache;
+        this.spill = spill;
+        this.logging = logging;
+    }
+
+    void setSaveListener(SaveListener saveListener) {
+        this.saveListener = saveListener;
+    }
+
+    void setMetrics(PerformanceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 上次加载有读取失败的部分，内存中的索引不完整
+    synchronized boolean isDegraded() {
+        return degraded;
+    }
+
+    // 读取快照并重放日志，返回 分组名 -> 条目列表（只带摘要，原文按需读取）
+    Map<String, List<GroupedItem>> load() {
+        return load(null);
+    }
+
+    /*
+     * 同 load()，各分组的快照由 ForkJoinPool 按分组并行读取解码。listener 不为 null 时，
+     * 每个分组的条目确定后立即回调：不受未合并日志影响的分组在快照解码后按清单顺序回调，
+     * 被日志修改过的分组在日志重放后回调。返回值仍是完整的结果，分组顺序与 load() 相同。
+     */
+    synchronized Map<String, List<GroupedItem>> load(LoadListener listener) {
+        groups.clear();
+        entries.clear();
+        blobReferences.clear();
+        deletedSnapshotKeys.clear();
+        degraded = false;
+
+        TreeMap<Long, String> journalKeys = new TreeMap<>();
+        Set<Long> storedItemIds = new HashSet<>();
+        List<String> storedBlobs = new ArrayList<>();
+        List<Integer> storedSnapshotKeys = new ArrayList<>();
+        for (String key : store.byteArrayKeys()) {
+            if (key.startsWith(BLOB_PREFIX)) {
+                storedBlobs.add(key.substring(BLOB_PREFIX.length()));
+            } else if (key.startsWith(DICTIONARY_PREFIX)) {
+                loadDictionary(key);
+            } else if (key.startsWith(JOURNAL_PREFIX)) {
+                journalKeys.put(parseSuffix(key, JOURNAL_PREFIX), key);
+            } else if (key.startsWith(ITEM_PREFIX)) {
+                storedItemIds.add(parseSuffix(key, ITEM_PREFIX));
+            } else if (key.startsWith(GROUP_PREFIX)) {
+                int snapshotKey = (int) parseSuffix(key, GROUP_PREFIX);
+                storedSnapshotKeys.add(snapshotKey);
+                nextSnapshotKey = Math.max(nextSnapshotKey, snapshotKey + 1);
+            }
+        }
+
+        journalStart = 1;
+        Map<String, Integer> snapshotKeys = new LinkedHashMap<>();
+        try {
+            ByteArray manifest = store.getByteArray(MANIFEST_KEY);
+            if (manifest != null) {
+                readManifest(manifest, snapshotKeys);
+            }
+        } catch (IOException e) {
+            logging.logToError("Failed to read grouped history manifest: " + e.getMessage());
+            degraded = true;
+        }
+
+        // 先读出尚未合并的日志，被其中操作涉及的分组要等重放之后才能确定；早于 journalStart 的是合并时没来得及删除的残留
+        List<JournalOperation> replay = new ArrayList<>();
+        Set<String> replayedGroups = new HashSet<>();
+        for (Map.Entry<Long, String> entry : journalKeys.entrySet()) {
+            if (entry.getKey() < journalStart) {
+                store.deleteByteArray(entry.getValue());
+                continue;
+            }
+            try {
+                ByteArray record = store.getByteArray(entry.getValue());
+                if (record != null) {
+                    for (JournalOperation operation : readJournal(record)) {
+                        replay.add(operation);
+                        replayedGroups.add(operation.group);
+                    }
+                }
+            } catch (IOException e) {
+                logging.logToError("Failed to replay grouped history journal " + entry.getValue() + ": " + e.getMessage());
+                degraded = true;
+            }
+        }
+        nextSeq = journalKeys.isEmpty() ? journalStart : Math.max(journalStart, journalKeys.lastKey() + 1);
+
+        Set<String> expectedGroups = new HashSet<>(snapshotKeys.keySet());
+        expectedGroups.addAll(replayedGroups);
+        LoadState state = new LoadState(storedItemIds, listener, expectedGroups.size());
+        Map<String, List<GroupedItem>> ready = new HashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            Map<String, ForkJoinTask<DecodedSnapshot>> decoding = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : snapshotKeys.entrySet()) {
+                String groupName = entry.getKey();
+                int snapshotKey = entry.getValue();
+                decoding.put(groupName, pool.submit(() -> decodeSnapshot(groupName, snapshotKey)));
+            }
+            // 按清单顺序取结果，索引只在本线程修改
+            for (Map.Entry<String, ForkJoinTask<DecodedSnapshot>> entry : decoding.entrySet()) {
+                String groupName = entry.getKey();
+                DecodedSnapshot decoded = entry.getValue().join();
+                if (decoded == null) {
+                    degraded = true;
+                    continue;
+                }
+                GroupIndex index = new GroupIndex(snapshotKeys.get(groupName));
+                index.itemIds.addAll(decoded.itemIds);
+                for (int j = 0; j < decoded.itemEntries.size(); j++) {
+                    putEntry(decoded.itemIds.get(j), decoded.itemEntries.get(j));
+                }
+                groups.put(groupName, index);
+                if (!replayedGroups.contains(groupName)) {
+                    ready.put(groupName, loadedItems(groupName, index, state));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        for (JournalOperation operation : replay) {
+            apply(operation);
+        }
+
+        Map<String, List<GroupedItem>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, GroupIndex> entry : groups.entrySet()) {
+            List<GroupedItem> items = ready.get(entry.getKey());
+            result.put(entry.getKey(), items != null ? items : loadedItems(entry.getKey(), entry.getValue(), state));
+        }
+
+        long maxId = state.maxId;
+        for (long id : storedItemIds) {
+            maxId = Math.max(maxId, id);
+        }
+        if (degraded) {
+            // 读不出的分组中的条目ID未知，新条目的ID跳过一段足够大的范围，以免修复后与它们冲突
+            logging.logToError("Grouped history data was only partially loaded; stored data is kept and the journal"
+                    + " will not be compacted until the project loads completely");
+            nextItemId.accumulateAndGet(maxId + DEGRADED_ID_GAP, Math::max);
+            return result;
+        }
+
+        // 清理写入了条目但日志没有落盘，或移除条目后没来得及删除的残留数据
+        for (long id : storedItemIds) {
+            if (!state.referencedIds.contains(id)) {
+                store.deleteByteArray(ITEM_PREFIX + id);
+            }
+        }
+        // 清单没有引用的快照是合并在写入清单之前中断留下的，其内容仍在日志中
+        Set<Integer> referencedSnapshots = new HashSet<>(snapshotKeys.values());
+        for (int snapshotKey : storedSnapshotKeys) {
+            if (!referencedSnapshots.contains(snapshotKey)) {
+                store.deleteByteArray(GROUP_PREFIX + snapshotKey);
+            }
+        }
+        // 引用计数来自完整加载的索引，没有引用的数据块才可以删除
+        for (String blob : storedBlobs) {
+            if (!blobReferences.containsKey(blob)) {
+                store.deleteByteArray(BLOB_PREFIX + blob);
+            }
+        }
+        // 加载在后台进行时界面可能已经分配了新的ID，不能回退
+        nextItemId.accumulateAndGet(maxId + 1, Math::max);
+
+        if (state.needsCompaction || nextSeq - journalStart >= COMPACT_THRESHOLD) {
+            writer.execute(this::compact);
+        }
+        return result;
+    }
+
+    // 在加载线程上读取并解析一个分组的快照，不修改共享状态；快照损坏时记录日志并返回 null，该分组不加载
+    private DecodedSnapshot decodeSnapshot(String groupName, int snapshotKey) {
+        DecodedSnapshot decoded = new DecodedSnapshot();
+        try {
+            ByteArray snapshot = store.getByteArray(GROUP_PREFIX + snapshotKey);
+            if (snapshot != null) {
+                RecordCodec.Reader reader = new RecordCodec.Reader(snapshot, RecordCodec.TYPE_SNAPSHOT);
+                reader.readString();
+                readEntries(reader, true, decoded.itemIds, decoded.itemEntries);
+            }
+            return decoded;
+        } catch (IOException e) {
+            logging.logToError("Failed to read grouped history snapshot of group " + groupName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 由索引生成分组的条目，并通知加载进度
+    private List<GroupedItem> loadedItems(String groupName, GroupIndex index, LoadState state) {
+        List<GroupedItem> items = new ArrayList<>(index.itemIds.size());
+        for (Iterator<Long> iterator = index.itemIds.iterator(); iterator.hasNext(); ) {
+            long id = iterator.next();
+            state.referencedIds.add(id);
+            state.maxId = Math.max(state.maxId, id);
+            ItemEntry itemEntry = entries.get(id);
+            if (itemEntry == null) {
+                // 旧版本的快照/日志没有摘要，只能读取原文生成，下次合并时补写
+                index.dirty = true;
+                state.needsCompaction = true;
+                if (!state.storedItemIds.contains(id)) {
+                    iterator.remove();
+                    continue;
+                }
+                itemEntry = new ItemEntry(summarizeStoredItem(groupName, id), null, null);
+                entries.put(id, itemEntry);
+            }
+            ItemEntry loadedEntry = itemEntry;
+            GroupedItem item = new GroupedItem(id, itemEntry.summary, (itemId, useCache) -> loadItem(itemId, loadedEntry, useCache));
+            item.addDuplicates(itemEntry.duplicates);
+            items.add(item);
+        }
+        state.loadedGroups++;
+        if (state.listener != null) {
+            state.listener.groupLoaded(groupName, items, state.loadedGroups, Math.max(state.loadedGroups, state.totalGroups));
+        }
+        return items;
+    }
+
+    // 读取并解码单个条目的原文，可在任意线程调用；失败时记录日志并返回 null
+    private HttpRequestResponse loadItem(long id, ItemEntry itemEntry, boolean useCache) {
+        HttpRequestResponse cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long started = metrics.start();
+        try {
+            HttpRequestResponse message;
+            long weight;
+            if (itemEntry.requestBlob == null) {
+                message = RecordCodec.decodeItem(readRecord(ITEM_PREFIX + id), compressor);
+                weight = message.request().toByteArray().length()
+                        + (message.response() != null ? message.response().toByteArray().length() : 0);
+            } else {
+                ByteArray request = readBlob(itemEntry.requestBlob);
+                ByteArray response = itemEntry.responseBlob != null ? readBlob(itemEntry.responseBlob) : null;
+                message = HttpRequestResponse.httpRequestResponse(HttpRequest.httpRequest(request),
+                        response != null ? HttpResponse.httpResponse(response) : null);
+                weight = request.length() + (response != null ? response.length() : 0);
+            }
+            if (useCache) {
+                cache.put(id, message, weight);
+            }
+            metrics.record(PerformanceMetrics.Operation.PERSIST_READ, started, weight);
+            return message;
+        } catch (Exception e) {
+            logging.logToError("Failed to load grouped history item " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 优先从堆外缓存复制，否则从项目文件读取解压，较大的原文顺便写入堆外缓存
+    private ByteArray readBlob(String blob) throws IOException {
+        ByteArray content = spill.get(blob);
+        if (content == null) {
+            content = RecordCodec.decodeBlob(readRecord(BLOB_PREFIX + blob), compressor);
+            if (spill.accepts(content.length())) {
+                spill.put(blob, content.getBytes());
+            }
+        }
+        return content;
+    }
+
+    private void writeRecord(String key, ByteArray record) {
+        store.setByteArray(key, record);
+        writtenBytes += record.length();
+    }
+
+    private ByteArray readRecord(String key) throws IOException {
+        ByteArray record = store.getByteArray(key);
+        if (record == null) {
+            throw new IOException(key + " is missing from the project file");
+        }
+        return record;
+    }
+
+    // 无法解码的条目仍保留在分组中，显示为占位摘要，原文不会被删除
+    private ItemSummary summarizeStoredItem(String groupName, long id) {
+        try {
+            return ItemSummary.of(RecordCodec.decodeItem(store.getByteArray(ITEM_PREFIX + id), compressor));
+        } catch (Exception e) {
+            logging.logToError("Failed to load request from group " + groupName + ": " + e.getMessage());
+            return ItemSummary.UNREADABLE;
+        }
+    }
+
+    // 同步写入从旧版本迁移过来的分组，返回可直接放入分组的记录
+    synchronized Map<String, List<GroupedItem>> importGroups(Map<String, List<HttpRequestResponse>> imported) {
+        Map<String, List<GroupedItem>> result = new LinkedHashMap<>();
+        List<PendingOperation> batch = new ArrayList<>();
+        for (Map.Entry<String, List<HttpRequestResponse>> entry : imported.entrySet()) {
+            List<GroupedItem> items = new ArrayList<>(entry.getValue().size());
+            for (HttpRequestResponse message : entry.getValue()) {
+                items.add(new GroupedItem(nextItemId.getAndIncrement(), message));
+            }
+            batch.add(new PendingOperation(OP_CREATE_GROUP, entry.getKey(), null, null));
+            batch.add(new PendingOperation(OP_ADD_ITEMS, entry.getKey(), items, null));
+            result.put(entry.getKey(), items);
+        }
+        writeBatch(batch);
+        compact();
+        return result;
+    }
+
+    void createGroup(String groupName) {
+        enqueue(new PendingOperation(OP_CREATE_GROUP, groupName, null, null));
+    }
+
+    void deleteGroup(String groupName) {
+        enqueue(new PendingOperation(OP_DELETE_GROUP, groupName, null, null));
+    }
+
+    // 为新条目分配ID并生成摘要；最终没有放入分组的条目不会落盘，ID也不会再使用
+    GroupedItem newItem(HttpRequestResponse message) {
+        return new GroupedItem(nextItemId.getAndIncrement(), message);
+    }
+
+    // 同 newItem(message)，使用调用方生成的摘要
+    GroupedItem newItem(ItemSummary summary, HttpRequestResponse message) {
+        return new GroupedItem(nextItemId.getAndIncrement(), summary, message);
+    }
+
+    // 把 newItem 创建的条目加入分组，内容由写入线程落盘
+    void addItems(String groupName, List<GroupedItem> items) {
+        if (!items.isEmpty()) {
+            enqueue(new PendingOperation(OP_ADD_ITEMS, groupName, new ArrayList<>(items), null));
+        }
+    }
+
+    void removeItems(String groupName, Collection<GroupedItem> items) {
+        if (!items.isEmpty()) {
+            enqueue(new PendingOperation(OP_REMOVE_ITEMS, groupName, null, idsOf(items)));
+        }
+    }
+
+    // 每出现一次表示该条目又合并了一个重复请求
+    void recordDuplicates(String groupName, List<GroupedItem> items) {
+        if (!items.isEmpty()) {
+            enqueue(new PendingOperation(OP_ADD_DUPLICATES, groupName, null, idsOf(items)));
+        }
+    }
+
+    private static List<Long> idsOf(Collection<GroupedItem> items) {
+        List<Long> ids = new ArrayList<>(items.size());
+        for (GroupedItem item : items) {
+            ids.add(item.id());
+        }
+        return ids;
+    }
+
+    // 立即写入队列中的操作并等待完成；批量导入每批之后调用，使尚未落盘的原文不会在内存中堆积
+    void awaitFlush() throws InterruptedException {
+        try {
+            writer.submit(this::flush).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            logging.logToError("Failed to flush grouped history data: " + e.getMessage());
+        }
+    }
+
+    // 卸载扩展时调用：写完队列中剩余的操作后停止写入线程
+    void close() {
+        writer.execute(this::flush);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logging.logToError("Timed out flushing grouped history data on unload");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cache.clear();
+        spill.close();
+    }
+
+    private void enqueue(PendingOperation operation) {
+        synchronized (pending) {
+            pending.add(operation);
+            if (saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        try {
+            writer.schedule(this::flush, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // 写入线程已停止（扩展正在卸载）
+            logging.logToError("Grouped history writer is not running: " + e.getMessage());
+        }
+    }
+
+    private synchronized void flush() {
+        List<PendingOperation> batch;
+        synchronized (pending) {
+            saveScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        SaveListener listener = saveListener;
+        if (listener != null) {
+            listener.saveStarted(batch.size());
+        }
+
+        long start = System.currentTimeMillis();
+        long started = metrics.start();
+        writtenBytes = 0;
+        try {
+            writeBatch(batch);
+            if (nextSeq - journalStart >= COMPACT_THRESHOLD) {
+                compact();
+            }
+            metrics.record(PerformanceMetrics.Operation.PERSIST_WRITE, started, writtenBytes);
+            if (listener != null) {
+                listener.saveFinished(batch.size(), System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            logging.logToError("Failed to save grouped history data: " + e.getMessage());
+            if (listener != null) {
+                listener.saveFailed(e);
+            }
+        }
+    }
+
+    // 把一批操作合并成一条日志记录写入
+    private void writeBatch(List<PendingOperation> batch) {
+        // 本批次中添加后又被移除（或所在分组被删除）的条目无需落盘
+        Set<Long> cancelled = new HashSet<>();
+        Map<String, List<Long>> addedInBatch = new HashMap<>();
+        for (PendingOperation operation : batch) {
+            switch (operation.op) {
+                case OP_ADD_ITEMS: {
+                    List<Long> added = addedInBatch.computeIfAbsent(operation.group, k -> new ArrayList<>());
+                    for (GroupedItem item : operation.added) {
+                        added.add(item.id());
+                    }
+                    break;
+                }
+                case OP_REMOVE_ITEMS: {
+                    Set<Long> added = new HashSet<>(addedInBatch.getOrDefault(operation.group, new ArrayList<>()));
+                    for (long id : operation.ids) {
+                        if (added.contains(id)) {
+                            cancelled.add(id);
+                        }
+                    }
+                    break;
+                }
+                case OP_DELETE_GROUP: {
+                    List<Long> added = addedInBatch.remove(operation.group);
+                    if (added != null) {
+                        cancelled.addAll(added);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        List<JournalOperation> records = new ArrayList<>();
+        Map<Long, ItemEntry> released = new HashMap<>();
+        Set<String> storedBlobs = new HashSet<>();
+        Set<Long> writtenInBatch = new HashSet<>();
+        Map<String, Set<Long>> persistedInBatch = new HashMap<>();
+        JournalOperation previous = null;
+        for (PendingOperation operation : batch) {
+            JournalOperation record = null;
+            switch (operation.op) {
+                case OP_CREATE_GROUP:
+                    record = new JournalOperation(OP_CREATE_GROUP, operation.group, new ArrayList<>(), new ArrayList<>());
+                    break;
+                case OP_DELETE_GROUP: {
+                    record = new JournalOperation(OP_DELETE_GROUP, operation.group, new ArrayList<>(), new ArrayList<>());
+                    persistedInBatch.remove(operation.group);
+                    GroupIndex index = groups.get(operation.group);
+                    if (index != null) {
+                        for (long id : index.itemIds) {
+                            released.put(id, entries.get(id));
+                        }
+                    }
+                    break;
+                }
+                case OP_ADD_ITEMS: {
+                    List<Long> ids = new ArrayList<>();
+                    List<ItemEntry> itemEntries = new ArrayList<>();
+                    for (GroupedItem item : operation.added) {
+                        if (!cancelled.contains(item.id())) {
+                            ids.add(item.id());
+                            itemEntries.add(storeItem(item, storedBlobs));
+                            writtenInBatch.add(item.id());
+                        }
+                    }
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    // 连续添加到同一分组的操作合并为一条
+                    if (previous != null && previous.op == OP_ADD_ITEMS && previous.group.equals(operation.group)) {
+                        previous.items.addAll(ids);
+                        previous.entries.addAll(itemEntries);
+                        apply(new JournalOperation(OP_ADD_ITEMS, operation.group, ids, itemEntries));
+                        continue;
+                    }
+                    record = new JournalOperation(OP_ADD_ITEMS, operation.group, ids, itemEntries);
+                    break;
+                }
+                case OP_REMOVE_ITEMS: {
+                    // 同一批次中对同一分组的多次移除共用一份已持久化ID的集合
+                    Set<Long> persistedIds = persistedInBatch.computeIfAbsent(operation.group, group -> {
+                        GroupIndex index = groups.get(group);
+                        return index != null ? new HashSet<>(index.itemIds) : new HashSet<>();
+                    });
+                    List<Long> ids = new ArrayList<>();
+                    for (long id : operation.ids) {
+                        if (!cancelled.contains(id) && persistedIds.contains(id)) {
+                            ids.add(id);
+                        }
+                    }
+                    if (!ids.isEmpty()) {
+                        record = new JournalOperation(OP_REMOVE_ITEMS, operation.group, ids, new ArrayList<>());
+                        for (long id : ids) {
+                            released.put(id, entries.get(id));
+                        }
+                    }
+                    break;
+                }
+                case OP_ADD_DUPLICATES: {
+                    // 本批次添加的条目直接累加到其索引项，随添加记录一起写出；被取消的条目不在 entries 中
+                    List<Long> ids = new ArrayList<>();
+                    for (long id : operation.ids) {
+                        ItemEntry itemEntry = entries.get(id);
+                        if (itemEntry == null) {
+                            continue;
+                        }
+                        if (writtenInBatch.contains(id)) {
+                            itemEntry.duplicates++;
+                        } else {
+                            ids.add(id);
+                        }
+                    }
+                    if (!ids.isEmpty()) {
+                        record = new JournalOperation(OP_ADD_DUPLICATES, operation.group, ids, new ArrayList<>());
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+            if (record != null) {
+                apply(record);
+                records.add(record);
+                previous = record;
+            }
+        }
+
+        // 新训练出的字典要在引用它的日志之前落盘
+        for (int dictionaryId : compressor.drainUnsavedDictionaries()) {
+            writeRecord(DICTIONARY_PREFIX + dictionaryId, writeDictionary(dictionaryId));
+        }
+
+        if (!records.isEmpty()) {
+            writeRecord(JOURNAL_PREFIX + nextSeq, writeJournal(records));
+            nextSeq++;
+        }
+
+        // 日志落盘后才删除不再被引用的条目和数据块；同一批次中又被重新引用的数据块保留
+        Set<String> releasedBlobs = new HashSet<>();
+        for (Map.Entry<Long, ItemEntry> entry : released.entrySet()) {
+            cache.remove(entry.getKey());
+            ItemEntry itemEntry = entry.getValue();
+            if (itemEntry == null || itemEntry.requestBlob == null) {
+                store.deleteByteArray(ITEM_PREFIX + entry.getKey());
+            } else {
+                releasedBlobs.add(itemEntry.requestBlob);
+                if (itemEntry.responseBlob != null) {
+                    releasedBlobs.add(itemEntry.responseBlob);
+                }
+            }
+        }
+        for (String blob : releasedBlobs) {
+            if (!blobReferences.containsKey(blob)) {
+                // 部分加载时读不出的分组可能也引用该数据块，留到下次完整加载时清理
+                if (!degraded) {
+                    store.deleteByteArray(BLOB_PREFIX + blob);
+                }
+                spill.remove(blob);
+            }
+        }
+    }
+
+    // 写入条目的请求和响应，已保存过的内容只增加引用；较大的原文同时写入堆外缓存
+    private ItemEntry storeItem(GroupedItem item, Set<String> storedBlobs) {
+        HttpRequestResponse message = item.message();
+        byte[] request = message.request().toByteArray().getBytes();
+        byte[] response = message.response() != null ? message.response().toByteArray().getBytes() : null;
+
+        String requestBlob = RecordCodec.contentHash(request);
+        String responseBlob = response != null ? RecordCodec.contentHash(response) : null;
+        boolean newRequest = isNewBlob(requestBlob, storedBlobs);
+        boolean newResponse = responseBlob != null && isNewBlob(responseBlob, storedBlobs);
+
+        // 只有真正需要压缩新内容时才选择字典（同时收集训练样本）
+        int dictionaryId = PayloadCompressor.DEFAULT_DICTIONARY_ID;
+        if ((newRequest && compressor.shouldCompress(request.length))
+                || (newResponse && compressor.shouldCompress(response.length))) {
+            dictionaryId = compressor.dictionaryFor(RecordCodec.hostOf(message.request()), request, response);
+        }
+
+        storeBlob(requestBlob, request, newRequest, dictionaryId);
+        if (responseBlob != null) {
+            storeBlob(responseBlob, response, newResponse, dictionaryId);
+        }
+
+        // 原文已落盘，条目改为按需读取，刚添加的条目先留在内存缓存中
+        ItemEntry itemEntry = new ItemEntry(item.summary(), requestBlob, responseBlob);
+        cache.put(item.id(), message, request.length + (response != null ? response.length : 0));
+        item.markPersisted((itemId, useCache) -> loadItem(itemId, itemEntry, useCache));
+        return itemEntry;
+    }
+
+    private boolean isNewBlob(String blob, Set<String> storedBlobs) {
+        return !blobReferences.containsKey(blob) && storedBlobs.add(blob);
+    }
+
+    private void storeBlob(String blob, byte[] content, boolean isNew, int dictionaryId) {
+        if (isNew) {
+            writeRecord(BLOB_PREFIX + blob, RecordCodec.encodeBlob(content, dictionaryId, compressor));
+        } else {
+            compressor.recordDeduplicated(content.length);
+        }
+        if (spill.accepts(content.length)) {
+            spill.put(blob, content);
+        }
+    }
+
+    private void apply(JournalOperation operation) {
+        switch (operation.op) {
+            case OP_CREATE_GROUP:
+                groupIndex(operation.group);
+                break;
+            case OP_DELETE_GROUP: {
+                GroupIndex removed = groups.remove(operation.group);
+                if (removed != null) {
+                    deletedSnapshotKeys.add(removed.snapshotKey);
+                    for (long id : removed.itemIds) {
+                        release(entries.remove(id));
+                    }
+                }
+                break;
+            }
+            case OP_ADD_ITEMS: {
+                // 条目ID全局唯一，已在索引中的条目来自已经包含这条日志的快照，重放时跳过；
+                // 旧版本的日志没有索引项，只能按分组中已有的ID判断
+                GroupIndex index = groupIndex(operation.group);
+                index.dirty = true;
+                boolean withEntries = operation.entries.size() == operation.items.size();
+                Set<Long> present = withEntries ? null : new HashSet<>(index.itemIds);
+                for (int i = 0; i < operation.items.size(); i++) {
+                    long id = operation.items.get(i);
+                    if (withEntries ? entries.containsKey(id) : !present.add(id)) {
+                        continue;
+                    }
+                    index.itemIds.add(id);
+                    if (withEntries) {
+                        putEntry(id, operation.entries.get(i));
+                    }
+                }
+                break;
+            }
+            case OP_REMOVE_ITEMS: {
+                GroupIndex index = groups.get(operation.group);
+                if (index != null) {
+                    Set<Long> removed = new HashSet<>(operation.items);
+                    index.itemIds.removeAll(removed);
+                    index.dirty = true;
+                    for (long id : removed) {
+                        release(entries.remove(id));
+                    }
+                }
+                break;
+            }
+            case OP_ADD_DUPLICATES: {
+                GroupIndex index = groups.get(operation.group);
+                if (index != null) {
+                    index.dirty = true;
+                }
+                for (long id : operation.items) {
+                    ItemEntry itemEntry = entries.get(id);
+                    if (itemEntry != null) {
+                        itemEntry.duplicates++;
+                    }
+                }
+                break;
+            }
+            default:
+                logging.logToError("Unknown grouped history journal operation: " + operation.op);
+                degraded = true;
+        }
+    }
+
+    private void putEntry(long id, ItemEntry itemEntry) {
+        release(entries.put(id, itemEntry));
+        if (itemEntry.requestBlob != null) {
+            blobReferences.merge(itemEntry.requestBlob, 1, Integer::sum);
+            if (itemEntry.responseBlob != null) {
+                blobReferences.merge(itemEntry.responseBlob, 1, Integer::sum);
+            }
+        }
+    }
+
+    private void release(ItemEntry itemEntry) {
+        if (itemEntry != null && itemEntry.requestBlob != null) {
+            releaseBlob(itemEntry.requestBlob);
+            if (itemEntry.responseBlob != null) {
+                releaseBlob(itemEntry.responseBlob);
+            }
+        }
+    }
+
+    private void releaseBlob(String blob) {
+        blobReferences.computeIfPresent(blob, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private GroupIndex groupIndex(String groupName) {
+        GroupIndex index = groups.get(groupName);
+        if (index == null) {
+            index = new GroupIndex(nextSnapshotKey++);
+            index.dirty = true;
+            groups.put(groupName, index);
+        }
+        return index;
+    }
+
+    /*
+     * 把日志合并进分组快照：被修改过的分组写入新的快照编号，再用一次清单写入切换到新快照和新的日志起点，
+     * 之后才删除旧快照和旧日志。任何一步中断时，旧清单仍指向完整的旧快照和日志，新快照在下次加载时清理。
+     */
+    private synchronized void compact() {
+        if (degraded) {
+            return;
+        }
+        try {
+            List<Integer> obsolete = new ArrayList<>(deletedSnapshotKeys);
+            for (Map.Entry<String, GroupIndex> entry : groups.entrySet()) {
+                GroupIndex index = entry.getValue();
+                if (index.dirty) {
+                    int snapshotKey = nextSnapshotKey++;
+                    writeRecord(GROUP_PREFIX + snapshotKey, writeSnapshot(entry.getKey(), index.itemIds));
+                    obsolete.add(index.snapshotKey);
+                    index.snapshotKey = snapshotKey;
+                    index.dirty = false;
+                }
+            }
+
+            writeRecord(MANIFEST_KEY, writeManifest(nextSeq));
+
+            for (int snapshotKey : obsolete) {
+                store.deleteByteArray(GROUP_PREFIX + snapshotKey);
+            }
+            deletedSnapshotKeys.clear();
+
+            for (long seq = journalStart; seq < nextSeq; seq++) {
+                store.deleteByteArray(JOURNAL_PREFIX + seq);
+            }
+            journalStart = nextSeq;
+        } catch (Exception e) {
+            logging.logToError("Failed to compact grouped history journal: " + e.getMessage());
+        }
+    }
+
+    private static ByteArray writeJournal(List<JournalOperation> operations) {
+        RecordCodec.Writer writer = new RecordCodec.Writer(RecordCodec.TYPE_JOURNAL);
+        writer.writeVarLong(operations.size());
+        for (JournalOperation operation : operations) {
+            writer.writeByte(operation.op);
+            writer.writeString(operation.group);
+            writer.writeVarLong(operation.items.size());
+            for (int i = 0; i < operation.items.size(); i++) {
+                writer.writeVarLong(operation.items.get(i));
+                if (operation.op == OP_ADD_ITEMS) {
+                    writeEntry(writer, operation.entries.get(i));
+                }
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    private static List<JournalOperation> readJournal(ByteArray record) throws IOException {
+        RecordCodec.Reader reader = new RecordCodec.Reader(record, RecordCodec.TYPE_JOURNAL);
+        int count = reader.readCount();
+        List<JournalOperation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte op = (byte) reader.readByte();
+            String group = reader.readString();
+            List<Long> ids = new ArrayList<>();
+            List<ItemEntry> itemEntries = new ArrayList<>();
+            readEntries(reader, op == OP_ADD_ITEMS, ids, itemEntries);
+            operations.add(new JournalOperation(op, group, ids, itemEntries));
+        }
+        return operations;
+    }
+
+    private ByteArray writeSnapshot(String groupName, List<Long> itemIds) {
+        RecordCodec.Writer writer = new RecordCodec.Writer(RecordCodec.TYPE_SNAPSHOT);
+        writer.writeString(groupName);
+        writer.writeVarLong(itemIds.size());
+        for (long id : itemIds) {
+            writer.writeVarLong(id);
+            writeEntry(writer, entries.get(id));
+        }
+        return writer.toByteArray();
+    }
+
+    private ByteArray writeManifest(long start) {
+        RecordCodec.Writer writer = new RecordCodec.Writer(RecordCodec.TYPE_MANIFEST);
+        writer.writeVarLong(start);
+        writer.writeVarLong(groups.size());
+        for (Map.Entry<String, GroupIndex> entry : groups.entrySet()) {
+            writer.writeString(entry.getKey());
+            writer.writeVarLong(entry.getValue().snapshotKey);
+        }
+        return writer.toByteArray();
+    }
+
+    // 读出日志起始序号和 分组名 -> 快照编号，快照由 load 并行读取
+    private void readManifest(ByteArray record, Map<String, Integer> snapshotKeys) throws IOException {
+        RecordCodec.Reader reader = new RecordCodec.Reader(record, RecordCodec.TYPE_MANIFEST);
+        journalStart = reader.readVarLong();
+        int count = reader.readCount();
+        for (int i = 0; i < count; i++) {
+            String groupName = reader.readString();
+            snapshotKeys.put(groupName, (int) reader.readVarLong());
+        }
+    }
+
+    private ByteArray writeDictionary(int dictionaryId) {
+        RecordCodec.Writer writer = new RecordCodec.Writer(RecordCodec.TYPE_DICTIONARY);
+        writer.writeVarLong(dictionaryId);
+        writer.writeString(compressor.dictionaryHost(dictionaryId));
+        writer.writeBytes(compressor.dictionary(dictionaryId));
+        return writer.toByteArray();
+    }
+
+    private void loadDictionary(String key) {
+        try {
+            ByteArray record = store.getByteArray(key);
+            if (record != null) {
+                RecordCodec.Reader reader = new RecordCodec.Reader(record, RecordCodec.TYPE_DICTIONARY);
+                int dictionaryId = (int) reader.readVarLong();
+                String host = reader.readString();
+                compressor.registerDictionary(dictionaryId, host, reader.readBytes());
+            }
+        } catch (IOException e) {
+            logging.logToError("Failed to read grouped history dictionary " + key + ": " + e.getMessage());
+        }
+    }
+
+    // 摘要之后是请求和响应的数据块哈希，请求哈希为空表示原文在 item.<id> 中，响应哈希为空表示没有响应，最后是重复次数
+    private static void writeEntry(RecordCodec.Writer writer, ItemEntry itemEntry) {
+        itemEntry.summary.writeTo(writer);
+        writer.writeBytes(itemEntry.requestBlob != null ? RecordCodec.hexToHash(itemEntry.requestBlob) : new byte[0]);
+        writer.writeBytes(itemEntry.responseBlob != null ? RecordCodec.hexToHash(itemEntry.responseBlob) : new byte[0]);
+        writer.writeVarLong(itemEntry.duplicates);
+    }
+
+    // 读取ID列表；版本 3 起带索引项的列表每个ID后紧跟其摘要，版本 4 起再跟数据块哈希，版本 6 起再跟重复次数
+    private static void readEntries(RecordCodec.Reader reader, boolean withEntries,
+                                    List<Long> ids, List<ItemEntry> itemEntries) throws IOException {
+        boolean hasSummaries = withEntries && reader.version() >= RecordCodec.SUMMARY_VERSION;
+        boolean hasBlobs = withEntries && reader.version() >= RecordCodec.BLOB_VERSION;
+        boolean hasDuplicates = withEntries && reader.version() >= RecordCodec.FINGERPRINT_VERSION;
+        int count = reader.readCount();
+        for (int i = 0; i < count; i++) {
+            ids.add(reader.readVarLong());
+            if (hasSummaries) {
+                ItemSummary summary = ItemSummary.readFrom(reader);
+                String requestBlob = null;
+                String responseBlob = null;
+                if (hasBlobs) {
+                    requestBlob = readHash(reader);
+                    responseBlob = readHash(reader);
+                }
+                ItemEntry itemEntry = new ItemEntry(summary, requestBlob, responseBlob);
+                if (hasDuplicates) {
+                    itemEntry.duplicates = (int) reader.readVarLong();
+                }
+                itemEntries.add(itemEntry);
+            }
+        }
+    }
+
+    private static String readHash(RecordCodec.Reader reader) throws IOException {
+        byte[] hash = reader.readBytes();
+        return hash.length == 0 ? null : RecordCodec.hashToHex(hash);
+    }
+
+    private static long parseSuffix(String key, String prefix) {
+        try {
+            return Long.parseLong(key.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package burp;
+
+import java.util.Locale;
+
+/*
+ * 主机名的统一写法：小写、不含端口。过滤条件、分组统计和压缩字典都按这个写法比较和计数，
+ * 同一主机不会因为大小写或端口写法不同被当成多个。IPv6 地址保留方括号。
+ */
+final class Hosts {
+    private Hosts() {
+    }
+
+    // Host 头或服务信息中的主机，可能带端口
+    static String normalize(String host) {
+        if (host == null) {
+            return "";
+        }
+        String trimmed = host.trim();
+        int end = trimmed.startsWith("[") ? trimmed.indexOf(']') + 1 : trimmed.indexOf(':');
+        if (end <= 0) {
+            end = trimmed.length();
+        }
+        return trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    // 摘要中的URL（“协议://主机[:端口]/路径”）里的主机；没有协议时URL不含主机，返回空
+    static String ofUrl(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            return "";
+        }
+        int start = scheme + 3;
+        int end = start;
+        while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?' && url.charAt(end) != '#') {
+            end++;
+        }
+        return normalize(url.substring(start, end));
+    }
+}
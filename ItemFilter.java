@@ -0,0 +1,309 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpMessage;
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
+
+/*
+ * 请求列表的过滤条件，由查询语句编译一次后对每个条目求值。
+ *
+ * 语法：空格分隔的多个条件同时满足，条件前加 - 或 ! 表示取反，值中有空格时用双引号括起来。
+ *   method:GET,POST     请求方法（逗号分隔为“或”）
+ *   status:200 / 4xx / 200-299 / none
+ *   host:example.com    主机名包含
+ *   path:^/api/v\d+/    路径（含查询串）正则匹配
+ *   mime:json           响应类型包含
+ *   size:>10k / <1m / 100-2000   响应字节数
+ *   header:Authorization / header:Content-Type=json   请求或响应中有该头（值包含）
+ *   body:"token"        请求或响应正文包含（不区分大小写）
+ *   其他词              URL包含
+ *
+ * 只依赖摘要的条件先求值，需要原文的条件（header、body）放在最后，不满足前面条件的条目不会被解码。
+ * 条目较多时在 ForkJoin 公共池中并行求值，结果是满足条件的行号，按原顺序排列。
+ */
+final class ItemFilter {
+    // 少于这个数量的条目直接在调用线程上求值
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final List<String> KEYS = Arrays.asList("method", "status", "host", "path", "mime", "size", "header", "body");
+
+    static final String SYNTAX_HELP = "<html>method:GET,POST &nbsp; status:4xx &nbsp; status:200-299 &nbsp; host:example.com<br>"
+            + "path:^/api/ &nbsp; mime:json &nbsp; size:&gt;10k &nbsp; header:Authorization &nbsp; body:\"token\"<br>"
+            + "多个条件同时满足，前加 - 取反，其他词按URL包含匹配</html>";
+
+    private final List<Predicate<ItemSummary>> summaryClauses;
+    private final List<Predicate<HttpRequestResponse>> messageClauses;
+
+    private ItemFilter(List<Predicate<ItemSummary>> summaryClauses, List<Predicate<HttpRequestResponse>> messageClauses) {
+        this.summaryClauses = summaryClauses;
+        this.messageClauses = messageClauses;
+    }
+
+    // 语法错误时抛出 IllegalArgumentException，消息可直接显示给用户
+    static ItemFilter compile(String query) {
+        List<Predicate<ItemSummary>> summaryClauses = new ArrayList<>();
+        List<Predicate<HttpRequestResponse>> messageClauses = new ArrayList<>();
+
+        for (String term : splitTerms(query)) {
+            boolean negate = term.length() > 1 && (term.charAt(0) == '-' || term.charAt(0) == '!');
+            if (negate) {
+                term = term.substring(1);
+            }
+
+            // 不认识的前缀（例如URL中的 https: 或 host:port）按普通文本处理
+            int colon = term.indexOf(':');
+            String key = colon > 0 ? term.substring(0, colon).toLowerCase(Locale.ROOT) : "";
+            if (!KEYS.contains(key)) {
+                key = "";
+            }
+            String value = unquote(key.isEmpty() ? term : term.substring(colon + 1));
+            if (!key.isEmpty() && value.isEmpty()) {
+                throw new IllegalArgumentException("条件 '" + term + "' 缺少值");
+            }
+
+            switch (key) {
+                case "method":
+                    summaryClauses.add(negate(methodClause(value), negate));
+                    break;
+                case "status":
+                    summaryClauses.add(negate(statusClause(value), negate));
+                    break;
+                case "host":
+                    String host = value.toLowerCase(Locale.ROOT);
+                    summaryClauses.add(negate(summary -> Hosts.ofUrl(summary.url()).contains(host), negate));
+                    break;
+                case "path":
+                    Pattern pattern = compilePattern(value);
+                    summaryClauses.add(negate(summary -> pattern.matcher(summary.path()).find(), negate));
+                    break;
+                case "mime":
+                    String mimeType = value.toLowerCase(Locale.ROOT);
+                    summaryClauses.add(negate(summary -> summary.mimeType().toLowerCase(Locale.ROOT).contains(mimeType), negate));
+                    break;
+                case "size":
+                    summaryClauses.add(negate(sizeClause(value), negate));
+                    break;
+                case "header":
+                    messageClauses.add(negate(headerClause(value), negate));
+                    break;
+                case "body":
+                    messageClauses.add(negate(message -> bodyContains(message.request(), value)
+                            || bodyContains(message.response(), value), negate));
+                    break;
+                default:
+                    String text = value.toLowerCase(Locale.ROOT);
+                    summaryClauses.add(negate(summary -> summary.url().toLowerCase(Locale.ROOT).contains(text), negate));
+                    break;
+            }
+        }
+        return new ItemFilter(summaryClauses, messageClauses);
+    }
+
+    // 是否需要解码条目原文；需要时应在后台线程上求值
+    boolean needsMessage() {
+        return !messageClauses.isEmpty();
+    }
+
+    boolean test(GroupedItem item) {
+        if (!testSummary(item.summary())) {
+            return false;
+        }
+        return messageClauses.isEmpty() || testMessage(item.readMessage());
+    }
+
+    // 对还没有放入分组的消息求值（自动分组）
+    boolean test(ItemSummary summary, HttpRequestResponse message) {
+        return testSummary(summary) && (messageClauses.isEmpty() || testMessage(message));
+    }
+
+    private boolean testSummary(ItemSummary summary) {
+        for (Predicate<ItemSummary> clause : summaryClauses) {
+            if (!clause.test(summary)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean testMessage(HttpRequestResponse message) {
+        if (message == null) {
+            return false;
+        }
+        for (Predicate<HttpRequestResponse> clause : messageClauses) {
+            if (!clause.test(message)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 返回 [from, to) 中满足条件的行号
+    int[] evaluate(List<GroupedItem> items, int from, int to) {
+        IntStream rows = IntStream.range(from, to);
+        if (to - from >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        return rows.filter(row -> test(items.get(row))).toArray();
+    }
+
+    private static Predicate<ItemSummary> methodClause(String value) {
+        List<String> methods = new ArrayList<>();
+        for (String method : value.split(",")) {
+            if (!method.trim().isEmpty()) {
+                methods.add(method.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        return summary -> methods.contains(summary.method().toUpperCase(Locale.ROOT));
+    }
+
+    private static Predicate<ItemSummary> statusClause(String value) {
+        Predicate<ItemSummary> clause = null;
+        for (String part : value.split(",")) {
+            Predicate<ItemSummary> alternative = statusRange(part.trim().toLowerCase(Locale.ROOT));
+            clause = clause == null ? alternative : clause.or(alternative);
+        }
+        if (clause == null) {
+            throw new IllegalArgumentException("无效的状态码 '" + value + "'");
+        }
+        return clause;
+    }
+
+    private static Predicate<ItemSummary> statusRange(String range) {
+        if (range.equals("none")) {
+            return summary -> !summary.hasResponse();
+        }
+        if (range.length() == 3 && range.endsWith("xx")) {
+            int min = parseNumber(range.substring(0, 1), "状态码") * 100;
+            return summary -> summary.statusCode() >= min && summary.statusCode() < min + 100;
+        }
+        int dash = range.indexOf('-');
+        if (dash > 0) {
+            int min = parseNumber(range.substring(0, dash), "状态码");
+            int max = parseNumber(range.substring(dash + 1), "状态码");
+            return summary -> summary.hasResponse() && summary.statusCode() >= min && summary.statusCode() <= max;
+        }
+        int code = parseNumber(range, "状态码");
+        return summary -> summary.statusCode() == code;
+    }
+
+    private static Predicate<ItemSummary> sizeClause(String value) {
+        if (value.startsWith(">=")) {
+            long min = parseSize(value.substring(2));
+            return summary -> summary.length() >= min;
+        }
+        if (value.startsWith("<=")) {
+            long max = parseSize(value.substring(2));
+            return summary -> summary.length() <= max;
+        }
+        if (value.startsWith(">")) {
+            long min = parseSize(value.substring(1));
+            return summary -> summary.length() > min;
+        }
+        if (value.startsWith("<")) {
+            long max = parseSize(value.substring(1));
+            return summary -> summary.length() < max;
+        }
+        int dash = value.indexOf('-');
+        if (dash > 0) {
+            long min = parseSize(value.substring(0, dash));
+            long max = parseSize(value.substring(dash + 1));
+            return summary -> summary.length() >= min && summary.length() <= max;
+        }
+        long size = parseSize(value);
+        return summary -> summary.length() == size;
+    }
+
+    private static Predicate<HttpRequestResponse> headerClause(String value) {
+        int equals = value.indexOf('=');
+        String name = equals > 0 ? value.substring(0, equals).trim() : value.trim();
+        String expected = equals > 0 ? value.substring(equals + 1).toLowerCase(Locale.ROOT) : null;
+        return message -> headerMatches(message.request(), name, expected) || headerMatches(message.response(), name, expected);
+    }
+
+    private static boolean headerMatches(HttpMessage message, String name, String expected) {
+        if (message == null) {
+            return false;
+        }
+        String headerValue = message.headerValue(name);
+        return headerValue != null && (expected == null || headerValue.toLowerCase(Locale.ROOT).contains(expected));
+    }
+
+    private static boolean bodyContains(HttpMessage message, String text) {
+        return message != null && message.body().indexOf(text, false) >= 0;
+    }
+
+    private static Pattern compilePattern(String regex) {
+        try {
+            return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("无效的正则表达式 '" + regex + "': " + e.getDescription());
+        }
+    }
+
+    // 支持 k、m 后缀
+    private static long parseSize(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("k") || value.endsWith("kb")) {
+            unit = 1024;
+        } else if (value.endsWith("m") || value.endsWith("mb")) {
+            unit = 1024 * 1024;
+        }
+        value = value.replaceAll("[kmb]+$", "");
+        return parseNumber(value, "大小") * unit;
+    }
+
+    private static int parseNumber(String text, String what) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的" + what + " '" + text + "'");
+        }
+    }
+
+    // 按空格切分，双引号内的空格不切分
+    private static List<String> splitTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                current.append(c);
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    terms.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号没有闭合");
+        }
+        if (current.length() > 0) {
+            terms.add(current.toString());
+        }
+        return terms;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static <T> Predicate<T> negate(Predicate<T> clause, boolean negate) {
+        return negate ? clause.negate() : clause;
+    }
+}
@@ -0,0 +1,218 @@
+package burp;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.io.IOException;
+
+/*
+ * 条目的轻量摘要，添加条目时解析一次，随索引一起持久化。
+ * 列表显示、导出URL、重复判断等只用摘要，不需要解码完整的请求/响应；列表行的文本在第一次绘制时生成并缓存。
+ */
+final class ItemSummary {
+    // 原文无法解码的条目
+    static final ItemSummary UNREADABLE = new ItemSummary("?", "(无法读取)", "(无法读取)", (short) 0, 0, "",
+            RequestFingerprint.UNKNOWN, RequestFingerprint.UNKNOWN);
+
+    private final String method;
+    private final String path;
+    private final String url;
+    private final short statusCode;
+    private final int length;
+    private final String mimeType;
+    private final long fingerprint;
+    private final long headerFingerprint;
+    private String displayText;
+
+    ItemSummary(String method, String path, String url, short statusCode, int length, String mimeType,
+                long fingerprint, long headerFingerprint) {
+        this.method = method;
+        this.path = path;
+        this.url = url;
+        this.statusCode = statusCode;
+        this.length = length;
+        this.mimeType = mimeType;
+        this.fingerprint = fingerprint;
+        this.headerFingerprint = headerFingerprint;
+    }
+
+    static ItemSummary of(HttpRequestResponse message) {
+        return parse(message, true);
+    }
+
+    /*
+     * 同 of()，但不计算请求指纹（指纹为 RequestFingerprint.UNKNOWN）。自动分组在 Burp 的 HTTP 线程上用它判断规则，
+     * 放入分组前再由 withFingerprints 在后台补上。
+     */
+    static ItemSummary withoutFingerprints(HttpRequestResponse message) {
+        return parse(message, false);
+    }
+
+    // 补上请求指纹的副本，其余字段不再解析
+    ItemSummary withFingerprints(HttpRequest request) {
+        long[] fingerprints = fingerprintsOf(request);
+        return new ItemSummary(method, path, url, statusCode, length, mimeType, fingerprints[0], fingerprints[1]);
+    }
+
+    private static ItemSummary parse(HttpRequestResponse message, boolean withFingerprints) {
+        HttpRequest request = message.request();
+        HttpResponse response = message.response();
+
+        String path = request.pathWithoutQuery();
+        String query = request.query();
+        if (query != null && !query.isEmpty()) {
+            path += "?" + query;
+        }
+
+        short statusCode = 0;
+        int length = 0;
+        String mimeType = "";
+        if (response != null) {
+            statusCode = response.statusCode();
+            length = response.toByteArray().length();
+            mimeType = mimeTypeOf(response);
+        }
+        long[] fingerprints = withFingerprints ? fingerprintsOf(request)
+                : new long[]{RequestFingerprint.UNKNOWN, RequestFingerprint.UNKNOWN};
+        return new ItemSummary(request.method(), path, displayUrl(request, path), statusCode, length, mimeType,
+                fingerprints[0], fingerprints[1]);
+    }
+
+    private static long[] fingerprintsOf(HttpRequest request) {
+        try {
+            return RequestFingerprint.of(request);
+        } catch (Exception e) {
+            return new long[]{RequestFingerprint.UNKNOWN, RequestFingerprint.UNKNOWN};
+        }
+    }
+
+    // 有目标服务时显示完整URL（省略默认端口），从原始字节构造的请求只显示路径
+    private static String displayUrl(HttpRequest request, String path) {
+        HttpService service;
+        try {
+            service = request.httpService();
+        } catch (Exception e) {
+            service = null;
+        }
+        if (service == null || service.host() == null || service.host().isEmpty()) {
+            return path;
+        }
+        boolean defaultPort = service.port() == (service.secure() ? 443 : 80);
+        return (service.secure() ? "https://" : "http://") + service.host()
+                + (defaultPort ? "" : ":" + service.port()) + path;
+    }
+
+    private static String mimeTypeOf(HttpResponse response) {
+        try {
+            MimeType mimeType = response.mimeType();
+            if (mimeType == null || mimeType == MimeType.NONE || mimeType == MimeType.UNRECOGNIZED) {
+                return "";
+            }
+            return mimeType.description();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    String method() {
+        return method;
+    }
+
+    String path() {
+        return path;
+    }
+
+    // 带协议和主机的URL，没有服务信息时与 path() 相同
+    String url() {
+        return url;
+    }
+
+    // 没有响应时为 0
+    short statusCode() {
+        return statusCode;
+    }
+
+    boolean hasResponse() {
+        return statusCode != 0;
+    }
+
+    // 响应的总字节数
+    int length() {
+        return length;
+    }
+
+    // Burp 识别出的响应类型，未知时为空
+    String mimeType() {
+        return mimeType;
+    }
+
+    // 请求指纹，见 RequestFingerprint；旧版本保存的条目为 RequestFingerprint.UNKNOWN
+    long fingerprint(boolean withHeaders) {
+        return withHeaders ? headerFingerprint : fingerprint;
+    }
+
+    // 列表中的整行文本；多个线程同时绘制时可能重复生成，结果相同
+    String displayText() {
+        String text = displayText;
+        if (text == null) {
+            StringBuilder builder = new StringBuilder(url.length() + 48);
+            builder.append(methodIcon(method)).append(' ').append(method).append(' ').append(url);
+            if (hasResponse()) {
+                builder.append(" [").append(statusCode).append("]  ").append(Formats.bytes(length));
+                if (!mimeType.isEmpty()) {
+                    builder.append("  ").append(mimeType);
+                }
+            }
+            text = builder.toString();
+            displayText = text;
+        }
+        return text;
+    }
+
+    void writeTo(RecordCodec.Writer writer) {
+        writer.writeString(method);
+        writer.writeString(path);
+        writer.writeVarLong(statusCode);
+        writer.writeVarLong(length);
+        writer.writeString(url);
+        writer.writeString(mimeType);
+        writer.writeVarLong(fingerprint);
+        writer.writeVarLong(headerFingerprint);
+    }
+
+    // 版本 5 之前的摘要没有URL和响应类型，版本 6 之前没有请求指纹
+    static ItemSummary readFrom(RecordCodec.Reader reader) throws IOException {
+        String method = reader.readString();
+        String path = reader.readString();
+        short statusCode = (short) reader.readVarLong();
+        int length = (int) reader.readVarLong();
+        String url = path;
+        String mimeType = "";
+        if (reader.version() >= RecordCodec.SUMMARY_URL_VERSION) {
+            url = reader.readString();
+            mimeType = reader.readString();
+        }
+        long fingerprint = RequestFingerprint.UNKNOWN;
+        long headerFingerprint = RequestFingerprint.UNKNOWN;
+        if (reader.version() >= RecordCodec.FINGERPRINT_VERSION) {
+            fingerprint = reader.readVarLong();
+            headerFingerprint = reader.readVarLong();
+        }
+        return new ItemSummary(method, path, url, statusCode, length, mimeType, fingerprint, headerFingerprint);
+    }
+
+    // 根据HTTP方法选择图标
+    private static String methodIcon(String method) {
+        switch (method.toUpperCase()) {
+            case "GET": return "📄";
+            case "POST": return "📝";
+            case "PUT": return "✏️";
+            case "DELETE": return "🗑️";
+            case "PATCH": return "🔧";
+            default: return "📋";
+        }
+    }
+}
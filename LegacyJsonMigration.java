@@ -0,0 +1,197 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.Preferences;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * 读取旧版本保存在 Preferences 中的 JSON 数据，用于迁移到项目文件中的二进制格式：
+ *   grouped_history_data        最初的整块 JSON：分组名 -> [{request, response}]（Base64）
+ *   grouped_history.*           中间版本按条目/日志拆分的 JSON 键
+ * Base64 解码后直接按字节构造请求/响应，不再经过 UTF-8 字符串。
+ */
+final class LegacyJsonMigration {
+    static final String LEGACY_KEY = "grouped_history_data";
+    private static final String JOURNAL_KEY_PREFIX = "grouped_history.";
+
+    private static class SerializableRequestResponse {
+        public String request;
+        public String response;
+    }
+
+    private static class Manifest {
+        public long journalStart;
+        public Map<String, Integer> groups = new LinkedHashMap<>();
+    }
+
+    private static class GroupSnapshot {
+        public List<Long> items = new ArrayList<>();
+    }
+
+    private static class JournalRecord {
+        public String op;
+        public String group;
+        public List<Long> items;
+        public List<JournalRecord> ops;
+    }
+
+    private final Preferences preferences;
+    private final Logging logging;
+    private final Gson gson = new Gson();
+
+    LegacyJsonMigration(Preferences preferences, Logging logging) {
+        this.preferences = preferences;
+        this.logging = logging;
+    }
+
+    // 返回旧数据中的全部分组；没有旧数据时返回空表
+    Map<String, List<HttpRequestResponse>> read() {
+        Map<String, List<HttpRequestResponse>> result = new LinkedHashMap<>();
+        try {
+            readLegacyBlob(result);
+        } catch (Exception e) {
+            logging.logToError("Failed to read legacy grouped history data: " + e.getMessage());
+        }
+        try {
+            readLegacyJournal(result);
+        } catch (Exception e) {
+            logging.logToError("Failed to read legacy grouped history journal: " + e.getMessage());
+        }
+        return result;
+    }
+
+    // 迁移成功后删除旧数据，避免下次启动重复导入
+    void deleteLegacyData() {
+        preferences.deleteString(LEGACY_KEY);
+        for (String key : preferences.stringKeys()) {
+            if (key.startsWith(JOURNAL_KEY_PREFIX) && !GroupedHistorySettings.isSettingsKey(key)) {
+                preferences.deleteString(key);
+            }
+        }
+    }
+
+    private void readLegacyBlob(Map<String, List<HttpRequestResponse>> result) {
+        String jsonData = preferences.getString(LEGACY_KEY);
+        if (jsonData == null || jsonData.trim().isEmpty()) {
+            return;
+        }
+
+        Type type = new TypeToken<Map<String, List<SerializableRequestResponse>>>(){}.getType();
+        Map<String, List<SerializableRequestResponse>> serializableData = gson.fromJson(jsonData, type);
+
+        for (Map.Entry<String, List<SerializableRequestResponse>> entry : serializableData.entrySet()) {
+            List<HttpRequestResponse> requests = result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+            for (SerializableRequestResponse serializableRequest : entry.getValue()) {
+                addDecoded(entry.getKey(), serializableRequest, requests);
+            }
+        }
+    }
+
+    private void readLegacyJournal(Map<String, List<HttpRequestResponse>> result) {
+        Map<String, List<Long>> groups = new LinkedHashMap<>();
+        long journalStart = 1;
+
+        String manifestJson = preferences.getString(JOURNAL_KEY_PREFIX + "manifest");
+        if (manifestJson != null && !manifestJson.isEmpty()) {
+            Manifest manifest = gson.fromJson(manifestJson, Manifest.class);
+            journalStart = manifest.journalStart;
+            for (Map.Entry<String, Integer> entry : manifest.groups.entrySet()) {
+                List<Long> ids = new ArrayList<>();
+                String snapshotJson = preferences.getString(JOURNAL_KEY_PREFIX + "group." + entry.getValue());
+                if (snapshotJson != null) {
+                    ids.addAll(gson.fromJson(snapshotJson, GroupSnapshot.class).items);
+                }
+                groups.put(entry.getKey(), ids);
+            }
+        }
+
+        String journalPrefix = JOURNAL_KEY_PREFIX + "journal.";
+        TreeMap<Long, String> journalKeys = new TreeMap<>();
+        for (String key : preferences.stringKeys()) {
+            if (key.startsWith(journalPrefix)) {
+                try {
+                    journalKeys.put(Long.parseLong(key.substring(journalPrefix.length())), key);
+                } catch (NumberFormatException ignored) {
+                    // 不是日志键
+                }
+            }
+        }
+        for (Map.Entry<Long, String> entry : journalKeys.tailMap(journalStart).entrySet()) {
+            String recordJson = preferences.getString(entry.getValue());
+            if (recordJson != null) {
+                replay(gson.fromJson(recordJson, JournalRecord.class), groups);
+            }
+        }
+
+        for (Map.Entry<String, List<Long>> entry : groups.entrySet()) {
+            List<HttpRequestResponse> requests = result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+            for (long id : entry.getValue()) {
+                String itemJson = preferences.getString(JOURNAL_KEY_PREFIX + "item." + id);
+                if (itemJson != null) {
+                    addDecoded(entry.getKey(), gson.fromJson(itemJson, SerializableRequestResponse.class), requests);
+                }
+            }
+        }
+    }
+
+    private static void replay(JournalRecord record, Map<String, List<Long>> groups) {
+        if (record.ops != null) {
+            for (JournalRecord operation : record.ops) {
+                replay(operation, groups);
+            }
+            return;
+        }
+        switch (record.op) {
+            case "create":
+                groups.computeIfAbsent(record.group, k -> new ArrayList<>());
+                break;
+            case "delete":
+                groups.remove(record.group);
+                break;
+            case "add":
+                groups.computeIfAbsent(record.group, k -> new ArrayList<>()).addAll(record.items);
+                break;
+            case "remove": {
+                List<Long> ids = groups.get(record.group);
+                if (ids != null) {
+                    Set<Long> removed = new HashSet<>(record.items);
+                    ids.removeIf(removed::contains);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void addDecoded(String groupName, SerializableRequestResponse serializable, List<HttpRequestResponse> requests) {
+        try {
+            if (serializable.request == null) {
+                return;
+            }
+            HttpRequest request = HttpRequest.httpRequest(ByteArray.byteArray(Base64.getDecoder().decode(serializable.request)));
+            HttpResponse response = null;
+            if (serializable.response != null) {
+                response = HttpResponse.httpResponse(ByteArray.byteArray(Base64.getDecoder().decode(serializable.response)));
+            }
+            requests.add(HttpRequestResponse.httpRequestResponse(request, response));
+        } catch (Exception e) {
+            logging.logToError("Failed to load request from group " + groupName + ": " + e.getMessage());
+        }
+    }
+}
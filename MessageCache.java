@@ -0,0 +1,72 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * 已解码条目的内存缓存，按最近访问顺序淘汰，容量以原文字节数计。
+ * 正在查看的分组中的条目会留在缓存里，其余条目只保留摘要，需要时再从堆外缓存或项目文件读取。
+ */
+final class MessageCache {
+    private static class Entry {
+        final HttpRequestResponse message;
+        final long weight;
+
+        Entry(HttpRequestResponse message, long weight) {
+            this.message = message;
+            this.weight = weight;
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long capacity = GroupedHistorySettings.DEFAULT_CACHE_SIZE_MB * 1024L * 1024L;
+    private long heapBytes;
+
+    synchronized void configure(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    synchronized HttpRequestResponse get(long id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.message : null;
+    }
+
+    // 单个超过容量的条目不缓存
+    synchronized void put(long id, HttpRequestResponse message, long weight) {
+        remove(id);
+        if (weight > capacity) {
+            return;
+        }
+        entries.put(id, new Entry(message, weight));
+        heapBytes += weight;
+        evict();
+    }
+
+    synchronized void remove(long id) {
+        Entry removed = entries.remove(id);
+        if (removed != null) {
+            heapBytes -= removed.weight;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        heapBytes = 0;
+    }
+
+    synchronized long heapBytes() {
+        return heapBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (heapBytes > capacity && iterator.hasNext()) {
+            heapBytes -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+}
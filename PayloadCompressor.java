@@ -0,0 +1,235 @@
+package burp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * 存储条目时的 Deflate 压缩。
+ *
+ * 同一目标的请求/响应大量重复相同的请求头、Cookie 和页面框架，因此按主机训练预设字典：
+ * 每个主机先用内置的通用字典压缩，收集到足够的样本后生成该主机专用的字典。
+ * 字典一旦被使用就不再改变，由 HistoryJournal 以 dict.<id> 记录持久化。
+ */
+final class PayloadCompressor {
+    static final int DEFAULT_DICTIONARY_ID = 0;
+
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    private static final int MAX_DICTIONARIES = 128;
+    private static final int TRAINING_SAMPLES = 8;
+    private static final int SAMPLE_BODY_BYTES = 1024;
+
+    private static final byte[] DEFAULT_DICTIONARY = (
+            "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title></title>"
+                    + "<link rel=\"stylesheet\" href=\"\"><script type=\"text/javascript\" src=\"\"></script>"
+                    + "</head><body><div class=\"\"><a href=\"\"></a></div></body></html>"
+                    + "{\"code\":0,\"message\":\"\",\"data\":{\"id\":,\"name\":\"\",\"status\":\"\"},\"success\":true}"
+                    + "GET / HTTP/1.1\r\nPOST / HTTP/1.1\r\nHost: \r\n"
+                    + "User-Agent: Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/ Safari/537.36\r\n"
+                    + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+                    + "Accept-Encoding: gzip, deflate, br\r\nAccept-Language: en-US,en;q=0.9\r\n"
+                    + "Content-Type: application/x-www-form-urlencoded\r\nContent-Type: application/json\r\n"
+                    + "Origin: https://\r\nReferer: https://\r\nCookie: \r\nConnection: keep-alive\r\n"
+                    + "HTTP/1.1 200 OK\r\nDate: \r\nServer: \r\nContent-Type: text/html; charset=utf-8\r\n"
+                    + "Cache-Control: no-cache, no-store, must-revalidate\r\nPragma: no-cache\r\nExpires: \r\n"
+                    + "X-Frame-Options: SAMEORIGIN\r\nX-Content-Type-Options: nosniff\r\n"
+                    + "Strict-Transport-Security: max-age=31536000; includeSubDomains\r\n"
+                    + "Set-Cookie: ; Path=/; HttpOnly; Secure\r\nContent-Length: \r\n\r\n"
+    ).getBytes(StandardCharsets.ISO_8859_1);
+
+    // 已注册的字典，加载线程和写入线程都会读取
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> hostDictionaries = new ConcurrentHashMap<>();
+
+    // 以下字段只在持有 HistoryJournal 锁时访问（写入线程或启动加载）
+    private final Map<String, List<byte[]>> trainingSamples = new HashMap<>();
+    private final List<Integer> unsavedDictionaries = new ArrayList<>();
+    private final Map<Integer, String> dictionaryHosts = new HashMap<>();
+    private int nextDictionaryId = DEFAULT_DICTIONARY_ID + 1;
+
+    private volatile int level = GroupedHistorySettings.DEFAULT_COMPRESSION_LEVEL;
+    private volatile int threshold = GroupedHistorySettings.DEFAULT_COMPRESSION_THRESHOLD;
+
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    // 内容已经保存过、只增加了引用的数据块，不计入压缩率
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+
+    PayloadCompressor() {
+        dictionaries.put(DEFAULT_DICTIONARY_ID, DEFAULT_DICTIONARY);
+    }
+
+    void configure(int level, int threshold) {
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    boolean shouldCompress(int rawLength) {
+        return level > 0 && rawLength >= threshold;
+    }
+
+    // 返回该主机应使用的字典，同时收集训练样本
+    int dictionaryFor(String host, byte[] request, byte[] response) {
+        Integer dictionaryId = hostDictionaries.get(host);
+        if (dictionaryId != null) {
+            return dictionaryId;
+        }
+        if (host.isEmpty() || (!trainingSamples.containsKey(host)
+                && trainingSamples.size() + hostDictionaries.size() >= MAX_DICTIONARIES)) {
+            return DEFAULT_DICTIONARY_ID;
+        }
+
+        List<byte[]> samples = trainingSamples.computeIfAbsent(host, k -> new ArrayList<>());
+        samples.add(sample(request, 0));
+        if (response != null) {
+            samples.add(sample(response, SAMPLE_BODY_BYTES));
+        }
+        if (samples.size() < TRAINING_SAMPLES) {
+            return DEFAULT_DICTIONARY_ID;
+        }
+
+        trainingSamples.remove(host);
+        int id = nextDictionaryId++;
+        dictionaries.put(id, train(samples));
+        hostDictionaries.put(host, id);
+        dictionaryHosts.put(id, host);
+        unsavedDictionaries.add(id);
+        return id;
+    }
+
+    // 压缩后没有变小时返回 null
+    byte[] compress(byte[] raw, int dictionaryId) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setDictionary(dictionaries.get(dictionaryId));
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length)];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+                if (length == buffer.length) {
+                    return null;
+                }
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    byte[] decompress(byte[] data, int offset, int length, int dictionaryId, int rawLength) throws IOException {
+        byte[] dictionary = dictionaries.get(dictionaryId);
+        if (dictionary == null) {
+            throw new IOException("Missing compression dictionary " + dictionaryId);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] raw = new byte[rawLength];
+            int position = 0;
+            while (position < rawLength) {
+                int read = inflater.inflate(raw, position, rawLength - position);
+                if (read == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Truncated compressed item");
+                    }
+                }
+                position += read;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed item: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // 加载时注册已持久化的字典
+    void registerDictionary(int id, String host, byte[] dictionary) {
+        dictionaries.put(id, dictionary);
+        hostDictionaries.put(host, id);
+        dictionaryHosts.put(id, host);
+        nextDictionaryId = Math.max(nextDictionaryId, id + 1);
+    }
+
+    // 取走新训练出、还未持久化的字典ID
+    List<Integer> drainUnsavedDictionaries() {
+        List<Integer> ids = new ArrayList<>(unsavedDictionaries);
+        unsavedDictionaries.clear();
+        return ids;
+    }
+
+    String dictionaryHost(int id) {
+        return dictionaryHosts.get(id);
+    }
+
+    byte[] dictionary(int id) {
+        return dictionaries.get(id);
+    }
+
+    void recordWrite(long raw, long stored) {
+        rawBytes.addAndGet(raw);
+        storedBytes.addAndGet(stored);
+    }
+
+    void recordDeduplicated(long raw) {
+        deduplicatedBytes.addAndGet(raw);
+    }
+
+    long rawBytes() {
+        return rawBytes.get();
+    }
+
+    long storedBytes() {
+        return storedBytes.get();
+    }
+
+    long deduplicatedBytes() {
+        return deduplicatedBytes.get();
+    }
+
+    // 本次会话写入的数据压缩后占原始大小的比例，没有写入时为 1
+    double compressionRatio() {
+        long raw = rawBytes.get();
+        return raw == 0 ? 1.0 : (double) storedBytes.get() / raw;
+    }
+
+    // 样本取消息头部，响应再带上正文开头的一部分
+    private static byte[] sample(byte[] message, int bodyBytes) {
+        int headerEnd = message.length;
+        for (int i = 0; i + 3 < message.length; i++) {
+            if (message[i] == '\r' && message[i + 1] == '\n' && message[i + 2] == '\r' && message[i + 3] == '\n') {
+                headerEnd = i + 4;
+                break;
+            }
+        }
+        int end = Math.min(message.length, headerEnd + bodyBytes);
+        return Arrays.copyOf(message, Math.min(end, MAX_DICTIONARY_SIZE));
+    }
+
+    // Deflate 对字典末尾的内容匹配得最好，越早的样本放得越靠前，超出部分从前面截掉
+    private static byte[] train(List<byte[]> samples) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] sample : samples) {
+            out.write(sample, 0, sample.length);
+        }
+        byte[] joined = out.toByteArray();
+        if (joined.length <= MAX_DICTIONARY_SIZE) {
+            return joined;
+        }
+        return Arrays.copyOfRange(joined, joined.length - MAX_DICTIONARY_SIZE, joined.length);
+    }
+}
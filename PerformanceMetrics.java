@@ -0,0 +1,192 @@
+package burp;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * 性能统计：持久化读写的耗时和字节数、EDT 上界面刷新的耗时、条目写入速率和 EDT 卡顿次数。
+ * 默认关闭；关闭时每个记录点只读取一次 volatile 字段，不调用 System.nanoTime() 也不分配对象。
+ * 计数用 LongAdder，写入线程、后台线程和 EDT 可以同时记录而不互相等待。
+ */
+final class PerformanceMetrics {
+    // start() 在关闭时的返回值，record() 看到它直接返回
+    static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    enum Operation {
+        PERSIST_WRITE("persistence.write", "持久化写入"),
+        PERSIST_READ("persistence.read", "持久化读取"),
+        REFRESH_REQUEST_LIST("edt.refreshRequestList", "刷新请求列表"),
+        APPEND_REQUEST_LIST("edt.requestsAppended", "追加到请求列表"),
+        REMOVE_REQUEST_LIST("edt.requestsRemoved", "从请求列表移除"),
+        REFRESH_GROUP_LIST("edt.refreshGroupList", "刷新分组列表"),
+        SHOW_MESSAGE("edt.showMessage", "显示请求/响应");
+
+        // 导出 JSON 时使用的名称
+        final String key;
+        final String label;
+
+        Operation(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    // 某项操作到目前为止的统计
+    static final class Stat {
+        final long count;
+        final long totalNanos;
+        final long maxNanos;
+        final long bytes;
+
+        Stat(long count, long totalNanos, long maxNanos, long bytes) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bytes = bytes;
+        }
+
+        double averageMillis() {
+            return count == 0 ? 0 : totalNanos / 1_000_000.0 / count;
+        }
+
+        double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+    }
+
+    private static final class Recorder {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder bytes = new LongAdder();
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            bytes.reset();
+        }
+    }
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final LongAdder ingestedItems = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAccumulator longestStallMillis = new LongAccumulator(Math::max, 0);
+    // 最近若干秒每秒写入的条目数，按 秒 % 窗口 存放，只在 EDT 上修改
+    private final long[] rateSeconds = new long[RATE_WINDOW_SECONDS];
+    private final long[] rateCounts = new long[RATE_WINDOW_SECONDS];
+    private volatile boolean enabled;
+    private volatile long resetAt = System.currentTimeMillis();
+
+    PerformanceMetrics() {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder());
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // 计时起点，与 record() 成对使用
+    long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    void record(Operation operation, long started) {
+        record(operation, started, 0);
+    }
+
+    void record(Operation operation, long started, long bytes) {
+        if (started == NOT_STARTED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - started;
+        Recorder recorder = recorders.get(operation);
+        recorder.count.increment();
+        recorder.totalNanos.add(elapsed);
+        recorder.maxNanos.accumulate(elapsed);
+        if (bytes > 0) {
+            recorder.bytes.add(bytes);
+        }
+    }
+
+    // 新条目加入分组，在 EDT 上调用
+    void recordIngested(int count) {
+        if (!enabled) {
+            return;
+        }
+        ingestedItems.add(count);
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % RATE_WINDOW_SECONDS);
+        if (rateSeconds[slot] != second) {
+            rateSeconds[slot] = second;
+            rateCounts[slot] = 0;
+        }
+        rateCounts[slot] += count;
+    }
+
+    // EDT 被扩展的代码阻塞超过阈值，由 EdtWatchdog 调用
+    void recordStall(long millis) {
+        stalls.increment();
+        longestStallMillis.accumulate(millis);
+    }
+
+    Stat stat(Operation operation) {
+        Recorder recorder = recorders.get(operation);
+        return new Stat(recorder.count.sum(), recorder.totalNanos.sum(), recorder.maxNanos.get(), recorder.bytes.sum());
+    }
+
+    long ingestedItems() {
+        return ingestedItems.sum();
+    }
+
+    // 最近 10 秒（不含当前这一秒）的平均写入速率，条/秒；在 EDT 上调用
+    double ingestionRate() {
+        long current = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            long age = current - rateSeconds[i];
+            if (age >= 1 && age <= RATE_WINDOW_SECONDS) {
+                total += rateCounts[i];
+            }
+        }
+        return total / (double) RATE_WINDOW_SECONDS;
+    }
+
+    long stalls() {
+        return stalls.sum();
+    }
+
+    long longestStallMillis() {
+        return longestStallMillis.get();
+    }
+
+    // 统计开始（或上次清零）的时间
+    long resetAt() {
+        return resetAt;
+    }
+
+    // 清零所有统计，在 EDT 上调用
+    void reset() {
+        for (Recorder recorder : recorders.values()) {
+            recorder.reset();
+        }
+        ingestedItems.reset();
+        stalls.reset();
+        longestStallMillis.reset();
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            rateSeconds[i] = 0;
+            rateCounts[i] = 0;
+        }
+        resetAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,350 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ * 持久化记录的二进制格式。
+ *
+ * 每条记录以 3 字节头开始：魔数 'G'、格式版本、记录类型，之后是按类型定义的内容。
+ * 整数使用变长编码，字符串为 变长长度 + UTF-8，请求/响应原文为 4 字节长度 + 原始字节，
+ * 原文在保存和读取时都不经过 String，保证二进制内容逐字节一致。
+ *
+ * 条目记录：标志位，之后是原文（请求长度、请求、[响应长度、响应]）；
+ * 版本 2 起，带压缩标志的条目改为 字典ID、原文长度、Deflate 压缩后的原文。
+ * 版本 3 起，日志中的添加操作和分组快照在每个条目ID后附带摘要（见 ItemSummary）。
+ * 版本 4 起，新条目不再写条目记录，请求和响应分别按内容哈希存为数据块记录，
+ * 索引中每个条目在摘要后附带两个哈希；数据块记录为 标志位 + 原文，或 标志位 + 字典ID、原文长度、压缩后的原文。
+ * 版本 5 起，摘要末尾增加显示用的URL和响应类型。
+ * 版本 6 起，摘要末尾增加两个请求指纹，索引项在数据块哈希后增加重复次数；日志增加“记录重复”操作。
+ */
+final class RecordCodec {
+    static final byte MAGIC = 'G';
+    static final byte FORMAT_VERSION = 6;
+    static final byte SUMMARY_VERSION = 3;
+    static final byte BLOB_VERSION = 4;
+    static final byte SUMMARY_URL_VERSION = 5;
+    static final byte FINGERPRINT_VERSION = 6;
+
+    static final byte TYPE_ITEM = 1;
+    static final byte TYPE_JOURNAL = 2;
+    static final byte TYPE_SNAPSHOT = 3;
+    static final byte TYPE_MANIFEST = 4;
+    static final byte TYPE_DICTIONARY = 5;
+    static final byte TYPE_BLOB = 6;
+
+    // 内容哈希取 SHA-256 的前 16 字节
+    static final int HASH_LENGTH = 16;
+
+    private static final int HEADER_LENGTH = 3;
+    private static final byte FLAG_HAS_RESPONSE = 0x01;
+    private static final byte FLAG_COMPRESSED = 0x02;
+    // 头 + 标志位 + 请求长度
+    private static final int ITEM_PREFIX_LENGTH = HEADER_LENGTH + 1 + 4;
+
+    private RecordCodec() {
+    }
+
+    // 达到压缩阈值的数据块用给定字典压缩，其余原样保存
+    static ByteArray encodeBlob(byte[] content, int dictionaryId, PayloadCompressor compressor) {
+        if (compressor.shouldCompress(content.length)) {
+            byte[] compressed = compressor.compress(content, dictionaryId);
+            if (compressed != null) {
+                byte[] record = new byte[HEADER_LENGTH + 9 + compressed.length];
+                record[0] = MAGIC;
+                record[1] = FORMAT_VERSION;
+                record[2] = TYPE_BLOB;
+                record[3] = FLAG_COMPRESSED;
+                writeInt32(record, HEADER_LENGTH + 1, dictionaryId);
+                writeInt32(record, HEADER_LENGTH + 5, content.length);
+                System.arraycopy(compressed, 0, record, HEADER_LENGTH + 9, compressed.length);
+                compressor.recordWrite(content.length, record.length);
+                return ByteArray.byteArray(record);
+            }
+        }
+
+        byte[] record = new byte[HEADER_LENGTH + 1 + content.length];
+        record[0] = MAGIC;
+        record[1] = FORMAT_VERSION;
+        record[2] = TYPE_BLOB;
+        System.arraycopy(content, 0, record, HEADER_LENGTH + 1, content.length);
+        compressor.recordWrite(content.length, record.length);
+        return ByteArray.byteArray(record);
+    }
+
+    static ByteArray decodeBlob(ByteArray record, PayloadCompressor compressor) throws IOException {
+        if (record.length() < HEADER_LENGTH + 1) {
+            throw new IOException("Truncated blob record");
+        }
+        checkHeader(record.getByte(0), record.getByte(1), record.getByte(2), TYPE_BLOB);
+        if ((record.getByte(HEADER_LENGTH) & FLAG_COMPRESSED) == 0) {
+            return record.subArray(HEADER_LENGTH + 1, record.length());
+        }
+
+        byte[] bytes = record.getBytes();
+        int dataStart = HEADER_LENGTH + 9;
+        if (bytes.length < dataStart) {
+            throw new IOException("Truncated blob record");
+        }
+        int dictionaryId = readInt32(bytes, HEADER_LENGTH + 1);
+        int rawLength = readInt32(bytes, HEADER_LENGTH + 5);
+        if (rawLength < 0) {
+            throw new IOException("Invalid blob length: " + rawLength);
+        }
+        return ByteArray.byteArray(compressor.decompress(bytes, dataStart, bytes.length - dataStart, dictionaryId, rawLength));
+    }
+
+    // 数据块的键：内容哈希的十六进制形式
+    static String contentHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return hashToHex(Arrays.copyOf(digest, HASH_LENGTH));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // 索引中哈希按原始字节保存
+    static String hashToHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >>> 4) & 0x0F, 16));
+            hex.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return hex.toString();
+    }
+
+    static byte[] hexToHash(String hex) {
+        byte[] hash = new byte[hex.length() / 2];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return hash;
+    }
+
+    // 版本 4 之前的条目记录，原文整体存放在 item.<id> 中
+    static HttpRequestResponse decodeItem(ByteArray record, PayloadCompressor compressor) throws IOException {
+        checkHeader(record.getByte(0), record.getByte(1), record.getByte(2), TYPE_ITEM);
+        byte flags = record.getByte(HEADER_LENGTH);
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            return decodeCompressedItem(record, flags, compressor);
+        }
+        int requestLength = readInt32(record, HEADER_LENGTH + 1);
+        int requestEnd = ITEM_PREFIX_LENGTH + requestLength;
+        if (requestLength < 0 || requestEnd > record.length()) {
+            throw new IOException("Truncated item record");
+        }
+        HttpRequest request = HttpRequest.httpRequest(record.subArray(ITEM_PREFIX_LENGTH, requestEnd));
+
+        HttpResponse response = null;
+        if ((flags & FLAG_HAS_RESPONSE) != 0) {
+            int responseLength = readInt32(record, requestEnd);
+            int responseStart = requestEnd + 4;
+            if (responseLength < 0 || responseStart + responseLength > record.length()) {
+                throw new IOException("Truncated item record");
+            }
+            response = HttpResponse.httpResponse(record.subArray(responseStart, responseStart + responseLength));
+        }
+        return HttpRequestResponse.httpRequestResponse(request, response);
+    }
+
+    private static HttpRequestResponse decodeCompressedItem(ByteArray record, byte flags, PayloadCompressor compressor)
+            throws IOException {
+        byte[] bytes = record.getBytes();
+        int dataStart = HEADER_LENGTH + 9;
+        if (bytes.length < dataStart) {
+            throw new IOException("Truncated item record");
+        }
+        int dictionaryId = readInt32(bytes, HEADER_LENGTH + 1);
+        int rawLength = readInt32(bytes, HEADER_LENGTH + 5);
+        if (rawLength < 4) {
+            throw new IOException("Invalid item length: " + rawLength);
+        }
+        byte[] raw = compressor.decompress(bytes, dataStart, bytes.length - dataStart, dictionaryId, rawLength);
+
+        int requestLength = readInt32(raw, 0);
+        int requestEnd = 4 + requestLength;
+        if (requestLength < 0 || requestEnd > raw.length) {
+            throw new IOException("Truncated item record");
+        }
+        HttpRequest request = HttpRequest.httpRequest(ByteArray.byteArray(Arrays.copyOfRange(raw, 4, requestEnd)));
+
+        HttpResponse response = null;
+        if ((flags & FLAG_HAS_RESPONSE) != 0) {
+            if (requestEnd + 4 > raw.length) {
+                throw new IOException("Truncated item record");
+            }
+            int responseLength = readInt32(raw, requestEnd);
+            int responseStart = requestEnd + 4;
+            if (responseLength < 0 || responseStart + responseLength > raw.length) {
+                throw new IOException("Truncated item record");
+            }
+            response = HttpResponse.httpResponse(ByteArray.byteArray(Arrays.copyOfRange(raw, responseStart, responseStart + responseLength)));
+        }
+        return HttpRequestResponse.httpRequestResponse(request, response);
+    }
+
+    // 优先使用请求的目标服务，从原始字节构造的请求没有服务信息时退回到 Host 头；写法见 Hosts
+    static String hostOf(HttpRequest request) {
+        try {
+            if (request.httpService() != null) {
+                return Hosts.normalize(request.httpService().host());
+            }
+        } catch (Exception ignored) {
+            // 没有服务信息
+        }
+        return Hosts.normalize(request.headerValue("Host"));
+    }
+
+    static void checkHeader(byte magic, byte version, byte type, byte expectedType) throws IOException {
+        if (magic != MAGIC) {
+            throw new IOException("Not a grouped history record");
+        }
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported record version: " + version);
+        }
+        if (type != expectedType) {
+            throw new IOException("Unexpected record type: " + type);
+        }
+    }
+
+    private static void writeInt32(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int readInt32(byte[] source, int offset) {
+        return ((source[offset] & 0xFF) << 24)
+                | ((source[offset + 1] & 0xFF) << 16)
+                | ((source[offset + 2] & 0xFF) << 8)
+                | (source[offset + 3] & 0xFF);
+    }
+
+    private static int readInt32(ByteArray record, int offset) throws IOException {
+        if (offset + 4 > record.length()) {
+            throw new IOException("Truncated item record");
+        }
+        return ((record.getByte(offset) & 0xFF) << 24)
+                | ((record.getByte(offset + 1) & 0xFF) << 16)
+                | ((record.getByte(offset + 2) & 0xFF) << 8)
+                | (record.getByte(offset + 3) & 0xFF);
+    }
+
+    // 索引类记录（日志、快照、清单）的写入器，内容都很小，直接写进可增长的 byte[]
+    static final class Writer {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        Writer(byte type) {
+            writeByte(MAGIC);
+            writeByte(FORMAT_VERSION);
+            writeByte(type);
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        ByteArray toByteArray() {
+            return ByteArray.byteArray(Arrays.copyOf(buffer, size));
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(ByteArray record, byte expectedType) throws IOException {
+            this.buffer = record.getBytes();
+            if (buffer.length < HEADER_LENGTH) {
+                throw new IOException("Truncated record");
+            }
+            checkHeader(buffer[0], buffer[1], buffer[2], expectedType);
+            this.position = HEADER_LENGTH;
+        }
+
+        int version() {
+            return buffer[1];
+        }
+
+        int readByte() throws IOException {
+            if (position >= buffer.length) {
+                throw new IOException("Truncated record");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 63) {
+                    throw new IOException("Malformed variable-length integer");
+                }
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readCount() throws IOException {
+            long count = readVarLong();
+            if (count < 0 || count > buffer.length - position) {
+                throw new IOException("Invalid element count: " + count);
+            }
+            return (int) count;
+        }
+
+        String readString() throws IOException {
+            int length = readCount();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = readCount();
+            byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
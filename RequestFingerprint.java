@@ -0,0 +1,121 @@
+package burp;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.params.HttpParameterType;
+import burp.api.montoya.http.message.params.ParsedHttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * 请求的归一化指纹，用于判断添加到分组的请求是否重复。
+ *
+ * 参与计算的是：方法、协议/主机/端口、不含查询串的路径、按类型+名称+值排序后的参数（不含Cookie）。
+ * 请求体能解析出参数时只比较参数，参数顺序不同视为相同；否则比较请求体原文。
+ * 带请求头的指纹还包括排序后的请求头，但忽略每次请求都可能变化的头（日期、Cookie、缓存校验、追踪ID等）。
+ * 指纹是 64 位 FNV-1a 哈希，0 保留表示未知（旧版本保存的条目）。
+ */
+final class RequestFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final Set<String> VOLATILE_HEADERS = new HashSet<>(Arrays.asList(
+            "host", "cookie", "content-length", "date", "if-modified-since", "if-none-match", "if-match",
+            "if-unmodified-since", "cache-control", "pragma", "connection", "keep-alive", "referer",
+            "user-agent", "accept-encoding", "accept-language", "upgrade-insecure-requests", "priority",
+            "x-request-id", "x-correlation-id", "x-amzn-trace-id", "traceparent", "tracestate",
+            "sec-ch-ua", "sec-ch-ua-mobile", "sec-ch-ua-platform", "sec-fetch-dest", "sec-fetch-mode",
+            "sec-fetch-site", "sec-fetch-user"));
+
+    static final long UNKNOWN = 0;
+
+    private RequestFingerprint() {
+    }
+
+    // 返回 [不含请求头的指纹, 含请求头的指纹]
+    static long[] of(HttpRequest request) {
+        Hasher hasher = new Hasher();
+        hasher.add(request.method().toUpperCase(Locale.ROOT));
+        hasher.add(serviceOf(request));
+        hasher.add(request.pathWithoutQuery());
+
+        List<ParsedHttpParameter> parameters = new ArrayList<>();
+        boolean bodyParameters = false;
+        for (ParsedHttpParameter parameter : request.parameters()) {
+            if (parameter.type() != HttpParameterType.COOKIE) {
+                parameters.add(parameter);
+                bodyParameters |= parameter.type() != HttpParameterType.URL;
+            }
+        }
+        parameters.sort((a, b) -> {
+            int result = a.type().compareTo(b.type());
+            if (result == 0) {
+                result = a.name().compareTo(b.name());
+            }
+            return result != 0 ? result : a.value().compareTo(b.value());
+        });
+        for (ParsedHttpParameter parameter : parameters) {
+            hasher.add(parameter.type().name());
+            hasher.add(parameter.name());
+            hasher.add(parameter.value());
+        }
+        if (!bodyParameters && request.body().length() > 0) {
+            hasher.add(request.body().getBytes());
+        }
+        long withoutHeaders = hasher.value();
+
+        List<String> headers = new ArrayList<>();
+        for (HttpHeader header : request.headers()) {
+            String name = header.name().toLowerCase(Locale.ROOT);
+            if (!VOLATILE_HEADERS.contains(name)) {
+                headers.add(name + ':' + header.value().trim());
+            }
+        }
+        headers.sort(null);
+        for (String header : headers) {
+            hasher.add(header);
+        }
+        return new long[]{withoutHeaders, hasher.value()};
+    }
+
+    private static String serviceOf(HttpRequest request) {
+        try {
+            HttpService service = request.httpService();
+            if (service != null) {
+                return (service.secure() ? "https://" : "http://") + service.host().toLowerCase(Locale.ROOT) + ':' + service.port();
+            }
+        } catch (Exception ignored) {
+            // 没有服务信息
+        }
+        // 退回到 Host 头原文（含端口），不同端口的服务不算重复；写法与已保存的指纹保持一致
+        String host = request.headerValue("Host");
+        return host != null ? host.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static final class Hasher {
+        private long hash = FNV_OFFSET;
+
+        void add(String value) {
+            add(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // 每段之后加一个分隔字节，避免 "ab"+"c" 与 "a"+"bc" 相同
+        void add(byte[] bytes) {
+            for (byte b : bytes) {
+                hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0xFF) * FNV_PRIME;
+        }
+
+        long value() {
+            return hash != UNKNOWN ? hash : 1;
+        }
+    }
+}
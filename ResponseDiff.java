@@ -0,0 +1,441 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 两个响应之间按行或按词的差异。
+ *
+ * 先把文本切分成词元并映射为整数，去掉只在一侧出现的词元（它们不可能匹配，随机令牌、时间戳等通常都属于这一类），
+ * 在剩下的序列上去掉相同的前缀和后缀，再用 Myers 的线性空间算法（每次找中间蛇，两侧递归）求最短编辑脚本，
+ * 内存只与输入长度成正比。差异很多的大响应会让 O(ND) 的计算量过大，超出 MAX_WORK 后剩余的区间整体记为替换，
+ * 结果标记为近似。
+ */
+final class ResponseDiff {
+    // 每个响应最多比较的字节数，超出部分截断并标记为近似
+    static final int MAX_TEXT_BYTES = 4 * 1024 * 1024;
+    // 搜索中间蛇时最多检查的对角线数
+    private static final long MAX_WORK = 50_000_000L;
+
+    enum Mode {
+        LINES("按行"),
+        WORDS("按词");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // 一段不同的区域：left[leftStart, leftEnd) 被替换为 right[rightStart, rightEnd)，其中一侧可以为空
+    static final class Chunk {
+        final int leftStart;
+        final int leftEnd;
+        final int rightStart;
+        final int rightEnd;
+
+        Chunk(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+            this.leftStart = leftStart;
+            this.leftEnd = leftEnd;
+            this.rightStart = rightStart;
+            this.rightEnd = rightEnd;
+        }
+    }
+
+    // 差异的规模，“与首条比较”列只保留这一部分
+    static final class Stat {
+        static final Stat NO_RESPONSE = new Stat(-1, -1, false);
+
+        final int deleted;
+        final int inserted;
+        final boolean approximate;
+        // 列表每次绘制都会用到，预先生成
+        final String label;
+
+        Stat(int deleted, int inserted, boolean approximate) {
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.approximate = approximate;
+            if (deleted < 0) {
+                label = "无响应";
+            } else if (deleted == 0 && inserted == 0) {
+                label = "相同";
+            } else {
+                label = "−" + deleted + " +" + inserted + (approximate ? " ≈" : "");
+            }
+        }
+
+        boolean identical() {
+            return deleted == 0 && inserted == 0;
+        }
+
+        // 用于排序和找出差异最大的条目，没有响应的条目排在最后
+        int size() {
+            return deleted < 0 ? -1 : deleted + inserted;
+        }
+    }
+
+    /*
+     * 被反复比较的一侧（“与首条比较”中的首条）：只切分和编号一次。
+     * 另一侧中首条没有的词元都映射为 -1，它们不可能与首条匹配，也就不需要各自的编号，字典不会随比较次数增长。
+     */
+    static final class Baseline {
+        private final Mode mode;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final int[] tokens;
+        private final boolean truncated;
+
+        Baseline(HttpResponse response, Mode mode) {
+            this.mode = mode;
+            String text = textOf(response);
+            this.truncated = response != null && response.toByteArray().length() > MAX_TEXT_BYTES;
+            List<String> split = tokenize(text, mode);
+            tokens = new int[split.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = dictionary.computeIfAbsent(split.get(i), key -> dictionary.size());
+            }
+        }
+
+        Stat compare(HttpResponse response) {
+            if (response == null) {
+                return Stat.NO_RESPONSE;
+            }
+            List<String> split = tokenize(textOf(response), mode);
+            int[] other = new int[split.size()];
+            for (int i = 0; i < other.length; i++) {
+                other[i] = dictionary.getOrDefault(split.get(i), -1);
+            }
+            Myers myers = new Myers(tokens, other, dictionary.size());
+            myers.run();
+            boolean approximate = myers.approximate || truncated || response.toByteArray().length() > MAX_TEXT_BYTES;
+            return myers.stat(approximate);
+        }
+    }
+
+    final Mode mode;
+    final List<String> left;
+    final List<String> right;
+    final List<Chunk> chunks;
+    final Stat stat;
+
+    private ResponseDiff(Mode mode, List<String> left, List<String> right, List<Chunk> chunks, Stat stat) {
+        this.mode = mode;
+        this.left = left;
+        this.right = right;
+        this.chunks = chunks;
+        this.stat = stat;
+    }
+
+    static ResponseDiff compute(HttpRequestResponse left, HttpRequestResponse right, Mode mode) {
+        HttpResponse leftResponse = left != null ? left.response() : null;
+        HttpResponse rightResponse = right != null ? right.response() : null;
+        boolean truncated = isTruncated(leftResponse) || isTruncated(rightResponse);
+        return compute(textOf(leftResponse), textOf(rightResponse), mode, truncated);
+    }
+
+    static ResponseDiff compute(String leftText, String rightText, Mode mode, boolean truncated) {
+        List<String> left = tokenize(leftText, mode);
+        List<String> right = tokenize(rightText, mode);
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] a = intern(left, dictionary);
+        int[] b = intern(right, dictionary);
+        Myers myers = new Myers(a, b, dictionary.size());
+        myers.run();
+        return new ResponseDiff(mode, left, right, Collections.unmodifiableList(myers.chunks),
+                myers.stat(myers.approximate || truncated));
+    }
+
+    private static boolean isTruncated(HttpResponse response) {
+        return response != null && response.toByteArray().length() > MAX_TEXT_BYTES;
+    }
+
+    // 响应原文按 UTF-8 解码，最多 MAX_TEXT_BYTES 字节；没有响应时为空
+    static String textOf(HttpResponse response) {
+        if (response == null) {
+            return "";
+        }
+        byte[] bytes = response.toByteArray().getBytes();
+        return new String(bytes, 0, Math.min(bytes.length, MAX_TEXT_BYTES), StandardCharsets.UTF_8);
+    }
+
+    // 按行切分时去掉行尾的 \r；按词切分时字母数字、连续空白和每个标点各为一个词元，换行单独成为词元
+    static List<String> tokenize(String text, Mode mode) {
+        List<String> tokens = new ArrayList<>();
+        int length = text.length();
+        if (mode == Mode.LINES) {
+            int start = 0;
+            while (start < length) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = length;
+                }
+                int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+                tokens.add(text.substring(start, lineEnd));
+                start = end + 1;
+            }
+            return tokens;
+        }
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i++;
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                    i++;
+                }
+            } else if (c == ' ' || c == '\t') {
+                while (i < length && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+                    i++;
+                }
+            } else if (c == '\r' && i < length && text.charAt(i) == '\n') {
+                i++;
+            }
+            tokens.add(text.substring(start, i));
+        }
+        return tokens;
+    }
+
+    private static int[] intern(List<String> tokens, Map<String, Integer> dictionary) {
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.computeIfAbsent(tokens.get(i), key -> dictionary.size());
+        }
+        return ids;
+    }
+
+    // 线性空间的 Myers 差异算法，结果是按顺序排列、互不相邻的不同区域
+    private static final class Myers {
+        private final int[] left;
+        private final int[] right;
+        private final int idCount;
+        // 去掉只在一侧出现的词元后的序列，以及其中每个词元在原序列中的位置
+        private int[] a;
+        private int[] b;
+        private int[] aPositions;
+        private int[] bPositions;
+        private List<Chunk> chunks = new ArrayList<>();
+        private long work;
+        private boolean approximate;
+
+        // 词元编号在 [0, idCount) 之间，负数表示只在 right 中出现
+        Myers(int[] left, int[] right, int idCount) {
+            this.left = left;
+            this.right = right;
+            this.idCount = idCount;
+        }
+
+        void run() {
+            boolean[] inLeft = presence(left);
+            boolean[] inRight = presence(right);
+            aPositions = sharedPositions(left, inRight);
+            bPositions = sharedPositions(right, inLeft);
+            a = valuesAt(left, aPositions);
+            b = valuesAt(right, bPositions);
+            diff(0, a.length, 0, b.length);
+            mapBack();
+        }
+
+        private boolean[] presence(int[] tokens) {
+            boolean[] present = new boolean[idCount];
+            for (int token : tokens) {
+                if (token >= 0) {
+                    present[token] = true;
+                }
+            }
+            return present;
+        }
+
+        private static int[] sharedPositions(int[] tokens, boolean[] inOther) {
+            int[] positions = new int[tokens.length];
+            int count = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] >= 0 && inOther[tokens[i]]) {
+                    positions[count++] = i;
+                }
+            }
+            return Arrays.copyOf(positions, count);
+        }
+
+        private static int[] valuesAt(int[] tokens, int[] positions) {
+            int[] values = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                values[i] = tokens[positions[i]];
+            }
+            return values;
+        }
+
+        // 缩减序列上相同的部分就是原序列的匹配，匹配之间的一切都是差异
+        private void mapBack() {
+            List<Chunk> reduced = chunks;
+            chunks = new ArrayList<>();
+            int leftNext = 0;
+            int rightNext = 0;
+            int i = 0;
+            int j = 0;
+            for (int c = 0; c <= reduced.size(); c++) {
+                int equalEnd = c < reduced.size() ? reduced.get(c).leftStart : a.length;
+                while (i < equalEnd) {
+                    int leftPosition = aPositions[i++];
+                    int rightPosition = bPositions[j++];
+                    addChunk(leftNext, leftPosition, rightNext, rightPosition);
+                    leftNext = leftPosition + 1;
+                    rightNext = rightPosition + 1;
+                }
+                if (c < reduced.size()) {
+                    i = reduced.get(c).leftEnd;
+                    j = reduced.get(c).rightEnd;
+                }
+            }
+            addChunk(leftNext, left.length, rightNext, right.length);
+        }
+
+        Stat stat(boolean approximate) {
+            int deleted = 0;
+            int inserted = 0;
+            for (Chunk chunk : chunks) {
+                deleted += chunk.leftEnd - chunk.leftStart;
+                inserted += chunk.rightEnd - chunk.rightStart;
+            }
+            return new Stat(deleted, inserted, approximate);
+        }
+
+        private void diff(int aStart, int aEnd, int bStart, int bEnd) {
+            while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+                aStart++;
+                bStart++;
+            }
+            while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+            if (aStart == aEnd || bStart == bEnd) {
+                addChunk(aStart, aEnd, bStart, bEnd);
+                return;
+            }
+            if (work > MAX_WORK) {
+                approximate = true;
+                addChunk(aStart, aEnd, bStart, bEnd);
+                return;
+            }
+            long split = middleSnake(aStart, aEnd, bStart, bEnd);
+            if (split < 0) {
+                addChunk(aStart, aEnd, bStart, bEnd);
+                return;
+            }
+            int x = (int) (split >>> 32);
+            int y = (int) split;
+            diff(aStart, x, bStart, y);
+            diff(x, aEnd, y, bEnd);
+        }
+
+        /*
+         * 从两端同时沿对角线 k = x - y 推进 D 路径，路径重叠时返回重叠处的 (x, y)，编码为 x << 32 | y；
+         * 超出计算量上限时返回 -1，调用方把整个区间记为替换。
+         */
+        private long middleSnake(int aStart, int aEnd, int bStart, int bEnd) {
+            int n = aEnd - aStart;
+            int m = bEnd - bStart;
+            int maxD = (n + m + 1) / 2;
+            int offset = maxD;
+            int length = 2 * maxD + 2;
+            int[] forward = new int[length];
+            int[] backward = new int[length];
+            Arrays.fill(forward, -1);
+            Arrays.fill(backward, -1);
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            int delta = n - m;
+            // 差为奇数时在正向推进中检查重叠，为偶数时在反向推进中检查
+            boolean odd = (delta & 1) != 0;
+            int forwardStart = 0;
+            int forwardEnd = 0;
+            int backwardStart = 0;
+            int backwardEnd = 0;
+            for (int d = 0; d < maxD; d++) {
+                work += 2L * d + 2;
+                if (work > MAX_WORK) {
+                    approximate = true;
+                    return -1;
+                }
+                for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                    int index = offset + k;
+                    int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                            ? forward[index + 1] : forward[index - 1] + 1;
+                    int y = x - k;
+                    while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                        x++;
+                        y++;
+                    }
+                    forward[index] = x;
+                    if (x > n) {
+                        forwardEnd += 2;
+                    } else if (y > m) {
+                        forwardStart += 2;
+                    } else if (odd) {
+                        int backwardIndex = offset + delta - k;
+                        if (backwardIndex >= 0 && backwardIndex < length && backward[backwardIndex] != -1
+                                && x >= n - backward[backwardIndex]) {
+                            return (long) (aStart + x) << 32 | (bStart + y);
+                        }
+                    }
+                }
+                for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                    int index = offset + k;
+                    int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                            ? backward[index + 1] : backward[index - 1] + 1;
+                    int y = x - k;
+                    while (x < n && y < m && a[aEnd - x - 1] == b[bEnd - y - 1]) {
+                        x++;
+                        y++;
+                    }
+                    backward[index] = x;
+                    if (x > n) {
+                        backwardEnd += 2;
+                    } else if (y > m) {
+                        backwardStart += 2;
+                    } else if (!odd) {
+                        int forwardIndex = offset + delta - k;
+                        if (forwardIndex >= 0 && forwardIndex < length && forward[forwardIndex] != -1) {
+                            int forwardX = forward[forwardIndex];
+                            int forwardY = forwardX - (forwardIndex - offset);
+                            if (forwardX >= n - x) {
+                                return (long) (aStart + forwardX) << 32 | (bStart + forwardY);
+                            }
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // 与上一段首尾相接时合并
+        private void addChunk(int aStart, int aEnd, int bStart, int bEnd) {
+            if (aStart == aEnd && bStart == bEnd) {
+                return;
+            }
+            int last = chunks.size() - 1;
+            if (last >= 0) {
+                Chunk previous = chunks.get(last);
+                if (previous.leftEnd == aStart && previous.rightEnd == bStart) {
+                    chunks.set(last, new Chunk(previous.leftStart, aEnd, previous.rightStart, bEnd));
+                    return;
+                }
+            }
+            chunks.add(new Chunk(aStart, aEnd, bStart, bEnd));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package burp;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.awt.*;
+import java.util.List;
+
+/*
+ * 两条请求的响应差异窗口。差异和要显示的文档都在后台生成，完成后再放入文本框；
+ * 按行比较时相同的部分只保留变化前后 CONTEXT_LINES 行，超过 MAX_RENDERED_CHARS 的部分不再显示。
+ */
+final class ResponseDiffDialog extends JDialog {
+    private static final int CONTEXT_LINES = 3;
+    private static final int MAX_RENDERED_CHARS = 2 * 1024 * 1024;
+    private static final Color DELETED_BACKGROUND = new Color(255, 220, 220);
+    private static final Color INSERTED_BACKGROUND = new Color(215, 245, 215);
+
+    private final ResponseDiffer differ;
+    private final GroupedItem left;
+    private final GroupedItem right;
+    private final JComboBox<ResponseDiff.Mode> modeBox = new JComboBox<>(ResponseDiff.Mode.values());
+    private final JTextPane textPane = new JTextPane();
+    private final JLabel statLabel = new JLabel(" ");
+    private SwingWorker<StyledDocument, Void> worker;
+
+    ResponseDiffDialog(Component parent, ResponseDiffer differ, GroupedItem left, String leftLabel,
+                       GroupedItem right, String rightLabel) {
+        super(SwingUtilities.getWindowAncestor(parent), "响应差异", ModalityType.MODELESS);
+        this.differ = differ;
+        this.left = left;
+        this.right = right;
+
+        textPane.setEditable(false);
+        textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        modeBox.addActionListener(e -> refresh());
+
+        JPanel labels = new JPanel(new GridLayout(2, 1));
+        labels.add(new JLabel("− " + leftLabel));
+        labels.add(new JLabel("+ " + rightLabel));
+
+        JPanel modePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        modePanel.add(new JLabel("比较方式:"));
+        modePanel.add(modeBox);
+        modePanel.add(statLabel);
+
+        JPanel header = new JPanel(new BorderLayout(0, 6));
+        header.add(labels, BorderLayout.NORTH);
+        header.add(modePanel, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(new EmptyBorder(10, 10, 10, 10));
+        content.add(header, BorderLayout.NORTH);
+        content.add(new JScrollPane(textPane), BorderLayout.CENTER);
+
+        setContentPane(content);
+        setSize(900, 640);
+        setLocationRelativeTo(parent);
+        refresh();
+    }
+
+    private void refresh() {
+        if (worker != null) {
+            worker.cancel(false);
+        }
+        ResponseDiff.Mode mode = (ResponseDiff.Mode) modeBox.getSelectedItem();
+        statLabel.setText("正在比较...");
+        textPane.setDocument(new DefaultStyledDocument());
+        long started = System.nanoTime();
+        SwingWorker<StyledDocument, Void> current = new SwingWorker<StyledDocument, Void>() {
+            private ResponseDiff diff;
+
+            @Override
+            protected StyledDocument doInBackground() throws BadLocationException {
+                diff = differ.diff(left, right, mode);
+                return render(diff);
+            }
+
+            @Override
+            protected void done() {
+                if (worker != this) {
+                    return;
+                }
+                worker = null;
+                try {
+                    textPane.setDocument(get());
+                    textPane.setCaretPosition(0);
+                    long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+                    String text = diff.stat.identical() ? "响应相同"
+                            : "删除 " + diff.stat.deleted + "，添加 " + diff.stat.inserted + (mode == ResponseDiff.Mode.LINES ? " 行" : " 个词");
+                    if (diff.stat.approximate) {
+                        text += "（响应过大或差异过多，结果为近似）";
+                    }
+                    statLabel.setText(text + " (" + elapsedMillis + " ms)");
+                } catch (Exception e) {
+                    statLabel.setText("比较失败: " + e.getMessage());
+                }
+            }
+        };
+        worker = current;
+        current.execute();
+    }
+
+    private static StyledDocument render(ResponseDiff diff) throws BadLocationException {
+        DocumentBuilder builder = new DocumentBuilder(diff.mode);
+        if (diff.mode == ResponseDiff.Mode.LINES) {
+            renderLines(diff, builder);
+        } else {
+            renderWords(diff, builder);
+        }
+        if (builder.truncated) {
+            builder.document.insertString(builder.document.getLength(), "\n… 差异过长，只显示前一部分", builder.note);
+        }
+        return builder.document;
+    }
+
+    // 统一格式：相同的行以两个空格开头，删除的行以 “- ” 开头，添加的行以 “+ ” 开头
+    private static void renderLines(ResponseDiff diff, DocumentBuilder builder) throws BadLocationException {
+        List<String> left = diff.left;
+        int position = 0;
+        for (ResponseDiff.Chunk chunk : diff.chunks) {
+            // [position, chunk.leftStart) 是两侧相同的行，开头之后保留 CONTEXT_LINES 行，变化之前保留 CONTEXT_LINES 行
+            int head = position == 0 ? 0 : CONTEXT_LINES;
+            if (chunk.leftStart - position > head + CONTEXT_LINES) {
+                builder.appendLines(left, position, position + head, "  ", builder.plain);
+                builder.appendSkipped(chunk.leftStart - CONTEXT_LINES - position - head);
+                position = chunk.leftStart - CONTEXT_LINES;
+            }
+            builder.appendLines(left, position, chunk.leftStart, "  ", builder.plain);
+            builder.appendLines(left, chunk.leftStart, chunk.leftEnd, "- ", builder.deleted);
+            builder.appendLines(diff.right, chunk.rightStart, chunk.rightEnd, "+ ", builder.inserted);
+            position = chunk.leftEnd;
+            if (builder.truncated) {
+                return;
+            }
+        }
+        int end = Math.min(left.size(), position + CONTEXT_LINES);
+        builder.appendLines(left, position, end, "  ", builder.plain);
+        if (end < left.size()) {
+            builder.appendSkipped(left.size() - end);
+        }
+    }
+
+    // 按词比较时依次显示全文，删除的词划掉、添加的词加下划线
+    private static void renderWords(ResponseDiff diff, DocumentBuilder builder) throws BadLocationException {
+        int position = 0;
+        for (ResponseDiff.Chunk chunk : diff.chunks) {
+            builder.appendTokens(diff.left, position, chunk.leftStart, builder.plain);
+            builder.appendTokens(diff.left, chunk.leftStart, chunk.leftEnd, builder.deleted);
+            builder.appendTokens(diff.right, chunk.rightStart, chunk.rightEnd, builder.inserted);
+            position = chunk.leftEnd;
+            if (builder.truncated) {
+                return;
+            }
+        }
+        builder.appendTokens(diff.left, position, diff.left.size(), builder.plain);
+    }
+
+    private static final class DocumentBuilder {
+        final StyledDocument document = new DefaultStyledDocument();
+        final SimpleAttributeSet plain = new SimpleAttributeSet();
+        final SimpleAttributeSet deleted = new SimpleAttributeSet();
+        final SimpleAttributeSet inserted = new SimpleAttributeSet();
+        final SimpleAttributeSet note = new SimpleAttributeSet();
+        boolean truncated;
+
+        // 按词比较时只有背景色不容易分辨空白和标点的变化，另外加上删除线和下划线
+        DocumentBuilder(ResponseDiff.Mode mode) {
+            StyleConstants.setBackground(deleted, DELETED_BACKGROUND);
+            StyleConstants.setBackground(inserted, INSERTED_BACKGROUND);
+            if (mode == ResponseDiff.Mode.WORDS) {
+                StyleConstants.setStrikeThrough(deleted, true);
+                StyleConstants.setUnderline(inserted, true);
+            }
+            StyleConstants.setForeground(note, Color.GRAY);
+            StyleConstants.setItalic(note, true);
+        }
+
+        void appendLines(List<String> lines, int from, int to, String prefix, SimpleAttributeSet style)
+                throws BadLocationException {
+            StringBuilder text = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                text.append(prefix).append(lines.get(i)).append('\n');
+            }
+            append(text.toString(), style);
+        }
+
+        void appendTokens(List<String> tokens, int from, int to, SimpleAttributeSet style) throws BadLocationException {
+            StringBuilder text = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                text.append(tokens.get(i));
+            }
+            append(text.toString(), style);
+        }
+
+        void appendSkipped(int lines) throws BadLocationException {
+            append("  … " + lines + " 行相同 …\n", note);
+        }
+
+        private void append(String text, SimpleAttributeSet style) throws BadLocationException {
+            if (truncated || text.isEmpty()) {
+                return;
+            }
+            int room = MAX_RENDERED_CHARS - document.getLength();
+            if (text.length() > room) {
+                text = text.substring(0, Math.max(0, room));
+                truncated = true;
+            }
+            document.insertString(document.getLength(), text, style);
+        }
+    }
+}
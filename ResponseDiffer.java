@@ -0,0 +1,274 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * 列表中响应的差异：两条请求之间的完整差异（带缓存），以及当前分组每一条与首条比较的差异规模（“Δ 首条”列）。
+ *
+ * 条目原文不会改变，结果按条目ID缓存，不需要失效。“与首条比较”在单独的后台线程上逐条计算，
+ * 分组只追加了条目时只提交新的末尾，不再遍历整个分组；移除条目时丢掉它们的结果。
+ * 切换分组或首条被移除时丢弃旧结果，已提交的旧任务通过 generation 跳过。
+ */
+final class ResponseDiffer {
+    // 缓存的完整差异数，每个都持有两侧的词元
+    private static final int PAIR_CACHE_SIZE = 8;
+    // 每比较这么多条通知一次界面
+    private static final int NOTIFY_EVERY = 200;
+
+    // 回调来自比较线程
+    interface Listener {
+        void baselineProgress(String group, int compared, int total);
+    }
+
+    private final Logging logging;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GroupedHistory-Diff");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Map<String, ResponseDiff> pairCache = new LinkedHashMap<String, ResponseDiff>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResponseDiff> eldest) {
+            return size() > PAIR_CACHE_SIZE;
+        }
+    };
+    private volatile Listener listener;
+
+    // “与首条比较”的状态，只在 EDT 上修改；stats 同时由比较线程写入
+    private final AtomicInteger generation = new AtomicInteger();
+    private String baselineGroup;
+    private long baselineId;
+    private volatile Map<Long, ResponseDiff.Stat> stats;
+    // 已比较完的条目带差异的列表行文本，随 stats 一起丢弃
+    private volatile Map<Long, LabelledText> texts;
+    private Set<Long> scheduled;
+    // 上次提交时分组的快照，用来判断之后是否只追加了条目
+    private List<GroupedItem> submitted;
+    private final AtomicInteger compared = new AtomicInteger();
+    private volatile int total;
+    // 首条切分后的结果，只在比较线程上读写
+    private BaselineState baseline;
+
+    ResponseDiffer(Logging logging) {
+        this.logging = logging;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // 两条请求的响应差异，在调用线程上计算；结果放入缓存
+    ResponseDiff diff(GroupedItem left, GroupedItem right, ResponseDiff.Mode mode) {
+        String key = left.id() + ":" + right.id() + ":" + mode;
+        synchronized (pairCache) {
+            ResponseDiff cached = pairCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ResponseDiff diff = ResponseDiff.compute(left.readMessage(), right.readMessage(), mode);
+        synchronized (pairCache) {
+            pairCache.put(key, diff);
+        }
+        return diff;
+    }
+
+    /*
+     * 开始或继续把 group 中的条目与首条比较，items 是分组的当前快照（不经过过滤）。
+     * 首条和分组都没变时只提交还没比较过的条目；items 由上次的快照只追加得到时只看新的末尾。
+     */
+    void compareWithFirst(String group, List<GroupedItem> items) {
+        if (group == null || items.isEmpty()) {
+            stopComparing();
+            return;
+        }
+        GroupedItem first = items.get(0);
+        if (stats == null || !group.equals(baselineGroup) || first.id() != baselineId) {
+            int current = generation.incrementAndGet();
+            baselineGroup = group;
+            baselineId = first.id();
+            stats = new ConcurrentHashMap<>();
+            texts = new ConcurrentHashMap<>();
+            scheduled = ConcurrentHashMap.newKeySet();
+            submitted = null;
+            compared.set(0);
+            worker.execute(() -> {
+                if (generation.get() != current) {
+                    return;
+                }
+                try {
+                    baseline = new BaselineState(current, first);
+                } catch (Exception e) {
+                    logging.logToError("Failed to read grouped history baseline response " + first.id() + ": " + e.getMessage());
+                }
+            });
+        }
+        int from = 0;
+        if (submitted != null && items instanceof GroupStore.Items && ((GroupStore.Items) items).extendsFrom(submitted)) {
+            from = submitted.size();
+        }
+        submitted = items;
+        List<GroupedItem> pending = new ArrayList<>();
+        for (int i = from; i < items.size(); i++) {
+            GroupedItem item = items.get(i);
+            if (scheduled.add(item.id())) {
+                pending.add(item);
+            }
+        }
+        total = scheduled.size();
+        if (pending.isEmpty()) {
+            return;
+        }
+        int current = generation.get();
+        Map<Long, ResponseDiff.Stat> target = stats;
+        Set<Long> targetScheduled = scheduled;
+        String targetGroup = group;
+        worker.execute(() -> compareAll(current, targetGroup, target, targetScheduled, pending));
+    }
+
+    // 当前分组移除了条目：丢掉它们的结果，还没比较的不再比较。首条被移除由之后的 compareWithFirst 处理
+    void itemsRemoved(String group, List<GroupedItem> removed) {
+        Map<Long, ResponseDiff.Stat> currentStats = stats;
+        Map<Long, LabelledText> currentTexts = texts;
+        if (currentStats == null || !group.equals(baselineGroup)) {
+            return;
+        }
+        for (GroupedItem item : removed) {
+            scheduled.remove(item.id());
+            currentTexts.remove(item.id());
+            if (currentStats.remove(item.id()) != null) {
+                compared.decrementAndGet();
+            }
+        }
+        total = scheduled.size();
+    }
+
+    // 停止比较并丢弃结果，列表不再显示差异
+    void stopComparing() {
+        generation.incrementAndGet();
+        baselineGroup = null;
+        stats = null;
+        texts = null;
+        scheduled = null;
+        submitted = null;
+        total = 0;
+    }
+
+    boolean isComparing() {
+        return stats != null;
+    }
+
+    // 条目与首条的差异；还没比较完时为 null
+    ResponseDiff.Stat stat(GroupedItem item) {
+        Map<Long, ResponseDiff.Stat> current = stats;
+        return current != null ? current.get(item.id()) : null;
+    }
+
+    // 列表中的整行文本加上与首条的差异；结果按条目缓存，条目文本（重复计数）改变后重新生成
+    String displayText(GroupedItem item) {
+        String base = item.displayText();
+        Map<Long, ResponseDiff.Stat> currentStats = stats;
+        Map<Long, LabelledText> currentTexts = texts;
+        if (currentStats == null || currentTexts == null) {
+            return base;
+        }
+        LabelledText cached = currentTexts.get(item.id());
+        if (cached != null && cached.base == base) {
+            return cached.text;
+        }
+        ResponseDiff.Stat stat = currentStats.get(item.id());
+        if (stat == null) {
+            // 还没比较完，结果到达后文本会改变，不缓存
+            return base + "  Δ …";
+        }
+        LabelledText labelled = new LabelledText(base, base + "  Δ " + stat.label);
+        currentTexts.put(item.id(), labelled);
+        return labelled.text;
+    }
+
+    int comparedCount() {
+        return compared.get();
+    }
+
+    int totalCount() {
+        return total;
+    }
+
+    void close() {
+        generation.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    private static final class LabelledText {
+        final String base;
+        final String text;
+
+        LabelledText(String base, String text) {
+            this.base = base;
+            this.text = text;
+        }
+    }
+
+    private static final class BaselineState {
+        final int generation;
+        final ResponseDiff.Baseline baseline;
+
+        BaselineState(int generation, GroupedItem first) {
+            this.generation = generation;
+            HttpRequestResponse message = first.readMessage();
+            this.baseline = new ResponseDiff.Baseline(message != null ? message.response() : null, ResponseDiff.Mode.LINES);
+        }
+    }
+
+    private void compareAll(int current, String group, Map<Long, ResponseDiff.Stat> target, Set<Long> scheduled,
+                            List<GroupedItem> items) {
+        int sinceNotify = 0;
+        for (GroupedItem item : items) {
+            if (generation.get() != current || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (!scheduled.contains(item.id())) {
+                // 提交之后被移除
+                continue;
+            }
+            BaselineState state = baseline;
+            if (state == null || state.generation != current) {
+                return;
+            }
+            ResponseDiff.Stat stat;
+            try {
+                HttpRequestResponse message = item.readMessage();
+                stat = state.baseline.compare(message != null ? message.response() : null);
+            } catch (Exception e) {
+                logging.logToError("Failed to compare grouped history response " + item.id() + ": " + e.getMessage());
+                stat = ResponseDiff.Stat.NO_RESPONSE;
+            }
+            target.put(item.id(), stat);
+            compared.incrementAndGet();
+            if (++sinceNotify >= NOTIFY_EVERY) {
+                sinceNotify = 0;
+                notifyProgress(current, group);
+            }
+        }
+        notifyProgress(current, group);
+    }
+
+    private void notifyProgress(int current, String group) {
+        Listener currentListener = listener;
+        if (currentListener != null && generation.get() == current) {
+            currentListener.baselineProgress(group, compared.get(), total);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.logging.Logging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * 所有分组中请求/响应原文的全文索引（词 -> 条目的倒排表）。
+ *
+ * 原文按字节切分成词：ASCII 字母、数字、下划线以及非 ASCII 字节组成的连续片段，ASCII 部分转为小写；
+ * 搜索词用同样的规则切分，多个词之间为“与”，最后一个词按前缀匹配，便于边输入边搜索。
+ * 超过 MAX_TOKEN_LENGTH 的词只索引前 MAX_TOKEN_LENGTH 个字节，搜索词同样截断后查倒排表，
+ * 再逐条检查候选条目的原文是否包含完整的词。
+ *
+ * 每个条目分配一个递增的文档号，倒排表是有序的 int 数组；移除条目只做标记，
+ * 标记数量较多时再统一清理倒排表，并给剩余的文档按原顺序重新编号。
+ * 建立和更新索引都在单独的后台线程上进行，搜索只需持有读锁。
+ */
+final class SearchIndex {
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    // 每条请求/响应最多索引的字节数
+    private static final int MAX_INDEXED_BYTES = 1024 * 1024;
+    private static final int PURGE_MIN_DELETED = 1024;
+
+    // 一条搜索结果
+    static final class Match {
+        final String group;
+        final GroupedItem item;
+
+        Match(String group, GroupedItem item) {
+            this.group = group;
+            this.item = item;
+        }
+    }
+
+    static final class Result {
+        final List<Match> matches;
+        final int total;
+
+        Result(List<Match> matches, int total) {
+            this.matches = matches;
+            this.total = total;
+        }
+    }
+
+    // 有序的文档号列表，文档号只会递增，追加即有序
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final Logging logging;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "GroupedHistory-Indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下字段由 lock 保护；清理时按剩余的文档数重新分配
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private List<GroupedItem> docs = new ArrayList<>();
+    private List<String> docGroups = new ArrayList<>();
+    private Map<Long, Integer> docIds = new HashMap<>();
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    // 已提交但还未建立索引的条目数
+    private final AtomicInteger pending = new AtomicInteger();
+
+    SearchIndex(Logging logging) {
+        this.logging = logging;
+    }
+
+    // 加载项目后在后台重建整个索引；groups 是 GroupStore 的快照，之后的修改通过 add/remove 同步
+    void rebuild(Map<String, List<GroupedItem>> groups) {
+        int count = 0;
+        for (List<GroupedItem> items : groups.values()) {
+            count += items.size();
+        }
+        pending.addAndGet(count);
+        submit(() -> {
+            clear();
+            for (Map.Entry<String, List<GroupedItem>> entry : groups.entrySet()) {
+                for (GroupedItem item : entry.getValue()) {
+                    index(entry.getKey(), item);
+                }
+            }
+        });
+    }
+
+    void add(String group, List<GroupedItem> items) {
+        List<GroupedItem> copy = new ArrayList<>(items);
+        pending.addAndGet(copy.size());
+        submit(() -> {
+            for (GroupedItem item : copy) {
+                index(group, item);
+            }
+        });
+    }
+
+    void remove(Collection<GroupedItem> items) {
+        List<Long> ids = new ArrayList<>(items.size());
+        for (GroupedItem item : items) {
+            ids.add(item.id());
+        }
+        submit(() -> {
+            lock.writeLock().lock();
+            try {
+                for (long id : ids) {
+                    Integer doc = docIds.remove(id);
+                    if (doc != null && !deleted.get(doc)) {
+                        deleted.set(doc);
+                        docs.set(doc, null);
+                        deletedCount++;
+                    }
+                }
+                if (deletedCount >= PURGE_MIN_DELETED && deletedCount * 4 >= docs.size()) {
+                    purge();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // 还在排队等待建立索引的条目数
+    int pendingItems() {
+        return pending.get();
+    }
+
+    Result search(String query, int limit) {
+        byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+        List<String> terms = new ArrayList<>();
+        List<byte[]> longTerms = new ArrayList<>();
+        for (String term : tokenize(queryBytes, 0, queryBytes.length, Integer.MAX_VALUE)) {
+            if (term.length() > MAX_TOKEN_LENGTH) {
+                longTerms.add(term.getBytes(StandardCharsets.ISO_8859_1));
+                term = term.substring(0, MAX_TOKEN_LENGTH);
+            }
+            terms.add(term);
+        }
+        if (terms.isEmpty()) {
+            return new Result(new ArrayList<>(), 0);
+        }
+
+        List<Match> candidates;
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (int i = 0; i < terms.size(); i++) {
+                boolean prefix = i == terms.size() - 1;
+                BitSet matches = prefix ? prefixMatches(terms.get(i)) : exactMatches(terms.get(i));
+                if (result == null) {
+                    result = matches;
+                } else {
+                    result.and(matches);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            result.andNot(deleted);
+
+            if (longTerms.isEmpty()) {
+                List<Match> matches = new ArrayList<>(Math.min(limit, result.cardinality()));
+                for (int doc = result.nextSetBit(0); doc >= 0 && matches.size() < limit; doc = result.nextSetBit(doc + 1)) {
+                    matches.add(new Match(docGroups.get(doc), docs.get(doc)));
+                }
+                return new Result(matches, result.cardinality());
+            }
+            candidates = new ArrayList<>(result.cardinality());
+            for (int doc = result.nextSetBit(0); doc >= 0; doc = result.nextSetBit(doc + 1)) {
+                candidates.add(new Match(docGroups.get(doc), docs.get(doc)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 截断的词在倒排表中只比较了前缀，在锁外读取候选条目的原文确认包含完整的词
+        List<Match> matches = new ArrayList<>();
+        int total = 0;
+        for (Match candidate : candidates) {
+            if (containsAll(candidate.item, longTerms)) {
+                total++;
+                if (matches.size() < limit) {
+                    matches.add(candidate);
+                }
+            }
+        }
+        return new Result(matches, total);
+    }
+
+    void close() {
+        indexer.shutdownNow();
+    }
+
+    private BitSet exactMatches(String token) {
+        BitSet bits = new BitSet(docs.size());
+        Postings list = postings.get(token);
+        if (list != null) {
+            for (int i = 0; i < list.size; i++) {
+                bits.set(list.docs[i]);
+            }
+        }
+        return bits;
+    }
+
+    private BitSet prefixMatches(String prefix) {
+        BitSet bits = new BitSet(docs.size());
+        for (Postings list : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < list.size; i++) {
+                bits.set(list.docs[i]);
+            }
+        }
+        return bits;
+    }
+
+    private void index(String group, GroupedItem item) {
+        try {
+            // 读取和切分在锁外完成，写锁只用于插入倒排表
+            Set<String> tokens = new HashSet<>();
+            HttpRequestResponse message = item.readMessage();
+            if (message != null) {
+                byte[] request = message.request().toByteArray().getBytes();
+                tokens.addAll(tokenize(request, 0, Math.min(request.length, MAX_INDEXED_BYTES), MAX_TOKEN_LENGTH));
+                if (message.response() != null) {
+                    byte[] response = message.response().toByteArray().getBytes();
+                    tokens.addAll(tokenize(response, 0, Math.min(response.length, MAX_INDEXED_BYTES), MAX_TOKEN_LENGTH));
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (docIds.containsKey(item.id())) {
+                    return;
+                }
+                int doc = docs.size();
+                docs.add(item);
+                docGroups.add(group);
+                docIds.put(item.id(), doc);
+                for (String token : tokens) {
+                    postings.computeIfAbsent(token, k -> new Postings()).add(doc);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            logging.logToError("Failed to index grouped history item " + item.id() + ": " + e.getMessage());
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            docGroups.clear();
+            docIds.clear();
+            deleted.clear();
+            deletedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 去掉已移除的文档：剩余文档按原顺序重新编号，倒排表随之改写，编号的相对顺序不变所以仍然有序
+    private void purge() {
+        int[] renumbered = new int[docs.size()];
+        List<GroupedItem> liveDocs = new ArrayList<>(docs.size() - deletedCount);
+        List<String> liveGroups = new ArrayList<>(docs.size() - deletedCount);
+        Map<Long, Integer> liveIds = new HashMap<>();
+        for (int doc = 0; doc < docs.size(); doc++) {
+            if (!deleted.get(doc)) {
+                renumbered[doc] = liveDocs.size();
+                liveIds.put(docs.get(doc).id(), liveDocs.size());
+                liveDocs.add(docs.get(doc));
+                liveGroups.add(docGroups.get(doc));
+            }
+        }
+
+        postings.values().removeIf(list -> {
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                if (!deleted.get(list.docs[i])) {
+                    list.docs[size++] = renumbered[list.docs[i]];
+                }
+            }
+            list.size = size;
+            if (size > 0 && size < list.docs.length / 4) {
+                list.docs = Arrays.copyOf(list.docs, size);
+            }
+            return size == 0;
+        });
+        docs = liveDocs;
+        docGroups = liveGroups;
+        docIds = liveIds;
+        deleted = new BitSet();
+        deletedCount = 0;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            indexer.execute(task);
+        } catch (Exception e) {
+            // 索引线程已停止（扩展正在卸载）
+        }
+    }
+
+    // 按出现顺序返回去重后的词，超过 maxLength 的词截断为前 maxLength 个字节
+    static Set<String> tokenize(byte[] bytes, int start, int end, int maxLength) {
+        Set<String> tokens = new LinkedHashSet<>();
+        int tokenStart = -1;
+        for (int i = start; i <= end; i++) {
+            boolean word = i < end && isWordByte(bytes[i] & 0xFF);
+            if (word && tokenStart < 0) {
+                tokenStart = i;
+            } else if (!word && tokenStart >= 0) {
+                int length = i - tokenStart;
+                if (length >= MIN_TOKEN_LENGTH) {
+                    tokens.add(new String(bytes, tokenStart, Math.min(length, maxLength), StandardCharsets.ISO_8859_1)
+                            .toLowerCase(Locale.ROOT));
+                }
+                tokenStart = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // 原文（与索引相同只看前 MAX_INDEXED_BYTES 字节）是否包含每个完整的词；terms 已转为小写
+    private static boolean containsAll(GroupedItem item, List<byte[]> terms) {
+        HttpRequestResponse message = item.readMessage();
+        if (message == null) {
+            return false;
+        }
+        byte[] request = message.request().toByteArray().getBytes();
+        byte[] response = message.response() != null ? message.response().toByteArray().getBytes() : null;
+        for (byte[] term : terms) {
+            if (!contains(request, term) && (response == null || !contains(response, term))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(byte[] bytes, byte[] term) {
+        int last = Math.min(bytes.length, MAX_INDEXED_BYTES) - term.length;
+        for (int i = 0; i <= last; i++) {
+            int j = 0;
+            while (j < term.length && (byte) Character.toLowerCase((char) (bytes[i + j] & 0xFF)) == term[j]) {
+                j++;
+            }
+            if (j == term.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordByte(int b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b >= 0x80;
+    }
+}
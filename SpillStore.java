@@ -0,0 +1,181 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * 大数据块的堆外缓存。
+ *
+ * 超过阈值的请求/响应原文以解压后的形式追加到临时目录中的段文件，并按条目映射到内存，
+ * 条目被移出内存缓存后再次打开时直接从映射复制，不必重新读取项目文件并解压。
+ * 当前段写满 SEGMENT_SIZE 后换新段；旧段中的数据块全部被删除后整段关闭并删除，空间随之回收。
+ * 所有段合计达到上限时暂时不再写入（isFull），删除数据块腾出整段后恢复；写入出错后不再使用（hasFailed）。
+ * 卸载扩展时删除全部段。
+ */
+final class SpillStore {
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+    private static final long MAX_TOTAL_SIZE = 4L * 1024 * 1024 * 1024;
+
+    // 一个段文件；size 是已写入的长度，liveBytes 是其中仍被映射的数据块长度
+    private static final class Segment {
+        final Path file;
+        final FileChannel channel;
+        long size;
+        long liveBytes;
+
+        Segment(Path file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    private static final class Entry {
+        final Segment segment;
+        final MappedByteBuffer buffer;
+
+        Entry(Segment segment, MappedByteBuffer buffer) {
+            this.segment = segment;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Map<String, Entry> mapped = new ConcurrentHashMap<>();
+    // 以下字段只在持有 this 锁时修改
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment current;
+    private long totalSize;
+    private volatile long mappedBytes;
+    private volatile int threshold = GroupedHistorySettings.DEFAULT_SPILL_THRESHOLD;
+    private volatile boolean full;
+    private volatile boolean failed;
+
+    void configure(int threshold) {
+        this.threshold = threshold;
+    }
+
+    boolean accepts(int length) {
+        return threshold > 0 && length >= threshold;
+    }
+
+    // 写入失败或超过上限时返回 false，调用方照常从项目文件读取
+    synchronized boolean put(String key, byte[] content) {
+        if (mapped.containsKey(key)) {
+            return true;
+        }
+        if (failed) {
+            return false;
+        }
+        try {
+            // 一个数据块不跨段；比段还大的数据块单独占一段
+            if (current == null || (current.size > 0 && current.size + content.length > SEGMENT_SIZE)) {
+                if (totalSize + content.length > MAX_TOTAL_SIZE) {
+                    full = true;
+                    return false;
+                }
+                retireCurrent();
+                Path file = Files.createTempFile("grouped-history-", ".spill");
+                file.toFile().deleteOnExit();
+                current = new Segment(file, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                segments.add(current);
+            } else if (totalSize + content.length > MAX_TOTAL_SIZE) {
+                full = true;
+                return false;
+            }
+            Segment segment = current;
+            long offset = segment.size;
+            ByteBuffer source = ByteBuffer.wrap(content);
+            while (source.hasRemaining()) {
+                segment.channel.write(source, offset + source.position());
+            }
+            segment.size += content.length;
+            segment.liveBytes += content.length;
+            totalSize += content.length;
+            mapped.put(key, new Entry(segment, segment.channel.map(FileChannel.MapMode.READ_ONLY, offset, content.length)));
+            mappedBytes += content.length;
+            full = false;
+            return true;
+        } catch (IOException e) {
+            failed = true;
+            return false;
+        }
+    }
+
+    // 不在堆外缓存中时返回 null
+    ByteArray get(String key) {
+        Entry entry = mapped.get(key);
+        if (entry == null) {
+            return null;
+        }
+        byte[] content = new byte[entry.buffer.capacity()];
+        entry.buffer.duplicate().get(content);
+        return ByteArray.byteArray(content);
+    }
+
+    // 数据块被删除后不再映射；所在的旧段不再有数据块时删除该段
+    synchronized void remove(String key) {
+        Entry entry = mapped.remove(key);
+        if (entry == null) {
+            return;
+        }
+        mappedBytes -= entry.buffer.capacity();
+        Segment segment = entry.segment;
+        segment.liveBytes -= entry.buffer.capacity();
+        if (segment != current && segment.liveBytes == 0) {
+            drop(segment);
+        }
+    }
+
+    long mappedBytes() {
+        return mappedBytes;
+    }
+
+    // 所有段合计已达上限，新的数据块暂时不写入
+    boolean isFull() {
+        return full;
+    }
+
+    // 临时文件写入出错，之后不再使用堆外缓存
+    boolean hasFailed() {
+        return failed;
+    }
+
+    synchronized void close() {
+        mapped.clear();
+        mappedBytes = 0;
+        for (Segment segment : new ArrayList<>(segments)) {
+            drop(segment);
+        }
+        current = null;
+    }
+
+    // 换新段之前调用：当前段已经没有数据块时直接删除
+    private void retireCurrent() {
+        Segment segment = current;
+        current = null;
+        if (segment != null && segment.liveBytes == 0) {
+            drop(segment);
+        }
+    }
+
+    private void drop(Segment segment) {
+        segments.remove(segment);
+        totalSize -= segment.size;
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        } catch (IOException ignored) {
+            // 映射释放前在部分系统上无法删除，退出时由 deleteOnExit 清理
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package burp;
+
+// 可取消的后台任务（导入、导出）的进度回调，调用来自任务线程
+interface TaskProgress {
+    void update(long done, long total, String note);
+
+    boolean isCancelled();
+}
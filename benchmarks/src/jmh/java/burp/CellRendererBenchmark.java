@@ -0,0 +1,79 @@
+package burp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JList;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 请求列表单元格的渲染吞吐量（行/秒）：配置渲染组件，以及把组件绘制到离屏图像上。
+ * 列表滚动时每一帧都要对可见行做这两步，所以只用条目摘要、不触发原文加载。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CellRendererBenchmark {
+    private static final int ROWS = 4096;
+
+    private List<GroupedItem> items;
+    private JList<GroupedItem> list;
+    private BurpExtender.EnhancedRequestResponseCellRenderer renderer;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int row;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        items = new SyntheticTraffic(42).items(ROWS);
+        GroupedItemListModel model = new GroupedItemListModel();
+        model.setItems(items);
+        list = new JList<>(model);
+        renderer = new BurpExtender.EnhancedRequestResponseCellRenderer();
+        list.setCellRenderer(renderer);
+        image = new BufferedImage(900, 32, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public Component configure() {
+        int index = nextRow();
+        return renderer.getListCellRendererComponent(list, items.get(index), index, index % 7 == 0, false);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        int index = nextRow();
+        Component component = renderer.getListCellRendererComponent(list, items.get(index), index, index % 7 == 0, false);
+        component.setBounds(0, 0, image.getWidth(), image.getHeight());
+        component.paint(graphics);
+        return image;
+    }
+
+    private int nextRow() {
+        row = (row + 1) & (ROWS - 1);
+        return row;
+    }
+}
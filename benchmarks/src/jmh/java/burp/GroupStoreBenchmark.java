@@ -0,0 +1,78 @@
+package burp;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 向分组追加请求的吞吐量（条/秒），覆盖各重复策略下的指纹查找。
+ * 每轮迭代使用新的 GroupStore 和 HistoryJournal，分组从空开始增长到 items 条后重新开始。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupStoreBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    // DuplicatePolicy 的名称；枚举本身是包内可见的，JMH 生成的代码无法直接引用
+    @Param({"ALLOW", "SKIP", "COUNT"})
+    public String policy;
+
+    private List<HttpRequestResponse> messages;
+    private HistoryJournal journal;
+    private GroupStore store;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        messages = new SyntheticTraffic(42).messages(items);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        journal = JournalBenchmark.newJournal(new ConcurrentHashMap<>());
+        journal.load();
+        store = new GroupStore(journal);
+        store.setDuplicatePolicy(DuplicatePolicy.valueOf(policy), false);
+        position = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int append() {
+        if (position + BATCH_SIZE > messages.size()) {
+            store.deleteGroup("benchmark");
+            position = 0;
+        }
+        List<HttpRequestResponse> batch = messages.subList(position, position + BATCH_SIZE);
+        position += BATCH_SIZE;
+        return store.append("benchmark", batch).added.size();
+    }
+}
@@ -0,0 +1,95 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 持久化的保存和加载：保存把全部条目写入一个空的项目存储（摘要、数据块、日志和快照），
+ * 加载在已保存的存储上打开新的 HistoryJournal 并读取全部分组，对应扩展启动时的开销。
+ * 每次调用都是一次完整的保存/加载，所以用单次计时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JournalBenchmark {
+    private static final String[] GROUPS = {"登录", "API", "静态资源", "管理后台"};
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    private List<HttpRequestResponse> messages;
+    private Map<String, ByteArray> saved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        messages = new SyntheticTraffic(42).messages(items);
+        saved = new ConcurrentHashMap<>();
+        save(saved);
+    }
+
+    @Benchmark
+    public int save() throws InterruptedException {
+        Map<String, ByteArray> data = new ConcurrentHashMap<>();
+        save(data);
+        return data.size();
+    }
+
+    @Benchmark
+    public int load() {
+        HistoryJournal journal = newJournal(saved);
+        try {
+            int loaded = 0;
+            for (List<GroupedItem> group : journal.load().values()) {
+                loaded += group.size();
+            }
+            return loaded;
+        } finally {
+            journal.close();
+        }
+    }
+
+    private void save(Map<String, ByteArray> data) throws InterruptedException {
+        HistoryJournal journal = newJournal(data);
+        try {
+            journal.load();
+            for (String group : GROUPS) {
+                journal.createGroup(group);
+            }
+            for (int start = 0; start < messages.size(); start += BATCH_SIZE) {
+                List<GroupedItem> batch = new ArrayList<>(BATCH_SIZE);
+                for (HttpRequestResponse message : messages.subList(start, Math.min(messages.size(), start + BATCH_SIZE))) {
+                    batch.add(journal.newItem(message));
+                }
+                journal.addItems(GROUPS[(start / BATCH_SIZE) % GROUPS.length], batch);
+                journal.awaitFlush();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    static HistoryJournal newJournal(Map<String, ByteArray> data) {
+        return new HistoryJournal(MontoyaFakes.persistedObject(data), new PayloadCompressor(), new MessageCache(),
+                new SpillStore(), MontoyaFakes.logging());
+    }
+}
@@ -0,0 +1,93 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 二进制记录格式的编解码：分组快照中的摘要序列化/反序列化，以及请求/响应数据块的编码（含压缩）和解码。
+ * 结果是处理全部 items 个条目的平均时间。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordCodecBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    private List<ItemSummary> summaries;
+    private ByteArray snapshot;
+    private List<byte[]> responses;
+    private List<ByteArray> blobs;
+    private PayloadCompressor compressor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticTraffic traffic = new SyntheticTraffic(42);
+        compressor = new PayloadCompressor();
+        summaries = new ArrayList<>(items);
+        responses = new ArrayList<>(items);
+        blobs = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            HttpRequestResponse message = traffic.next();
+            summaries.add(ItemSummary.of(message));
+            byte[] response = message.response().toByteArray().getBytes();
+            responses.add(response);
+            blobs.add(RecordCodec.encodeBlob(response, PayloadCompressor.DEFAULT_DICTIONARY_ID, compressor));
+        }
+        snapshot = serializeSummaries();
+    }
+
+    @Benchmark
+    public ByteArray serializeSummaries() {
+        RecordCodec.Writer writer = new RecordCodec.Writer(RecordCodec.TYPE_SNAPSHOT);
+        writer.writeVarLong(summaries.size());
+        for (ItemSummary summary : summaries) {
+            summary.writeTo(writer);
+        }
+        return writer.toByteArray();
+    }
+
+    @Benchmark
+    public void deserializeSummaries(Blackhole blackhole) throws IOException {
+        RecordCodec.Reader reader = new RecordCodec.Reader(snapshot, RecordCodec.TYPE_SNAPSHOT);
+        int count = reader.readCount();
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(ItemSummary.readFrom(reader));
+        }
+    }
+
+    @Benchmark
+    public void encodeBlobs(Blackhole blackhole) {
+        for (byte[] response : responses) {
+            blackhole.consume(RecordCodec.encodeBlob(response, PayloadCompressor.DEFAULT_DICTIONARY_ID, compressor));
+        }
+    }
+
+    @Benchmark
+    public void decodeBlobs(Blackhole blackhole) throws IOException {
+        for (ByteArray blob : blobs) {
+            blackhole.consume(RecordCodec.decodeBlob(blob, compressor));
+        }
+    }
+}
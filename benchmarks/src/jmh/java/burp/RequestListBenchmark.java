@@ -0,0 +1,68 @@
+package burp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 请求列表的刷新和过滤：切换分组时整体替换列表模型（JList 会收到一次增删事件），
+ * 以及只用摘要的过滤条件和需要读取原文的正文过滤在整个分组上的耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestListBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    private List<GroupedItem> group;
+    private GroupedItemListModel model;
+    private ItemFilter summaryFilter;
+    private ItemFilter bodyFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        group = new SyntheticTraffic(42).items(items);
+        model = new GroupedItemListModel();
+        JList<GroupedItem> list = new JList<>(model);
+        list.setCellRenderer(new BurpExtender.EnhancedRequestResponseCellRenderer());
+        summaryFilter = ItemFilter.compile("method:GET,POST status:2xx,4xx host:example.com -path:\\.(png|css|js)$ size:>1k");
+        bodyFilter = ItemFilter.compile("body:exercitation");
+    }
+
+    @Benchmark
+    public int refresh() {
+        model.setItems(group);
+        return model.getSize();
+    }
+
+    @Benchmark
+    public int filterSummary() {
+        int[] rows = summaryFilter.evaluate(group, 0, group.size());
+        model.setItems(group, rows);
+        return rows.length;
+    }
+
+    @Benchmark
+    public int filterBody() {
+        int[] rows = bodyFilter.evaluate(group, 0, group.size());
+        model.setItems(group, rows);
+        return rows.length;
+    }
+}
@@ -0,0 +1,144 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * 代替 Burp 项目文件的磁盘存储，配合 MontoyaFakes.persistedObject(Map) 使用。
+ * 值只追加写入一个临时文件，内存中只保留 键 -> 位置 的索引，几百万条数据也不会占满堆；
+ * 被覆盖或删除的值不回收空间。close() 删除临时文件。
+ */
+final class DiskByteArrayStore extends AbstractMap<String, ByteArray> implements Closeable {
+    // 位置编码为 偏移 << LENGTH_BITS | 长度
+    private static final int LENGTH_BITS = 28;
+    private static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private long end;
+
+    DiskByteArrayStore() throws IOException {
+        this.file = Files.createTempFile("grouped-history-soak", ".bin");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // 临时文件的大小，包括已被覆盖或删除的值
+    synchronized long fileBytes() {
+        return end;
+    }
+
+    @Override
+    public ByteArray get(Object key) {
+        Long position = index.get(key);
+        if (position == null) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (position & MAX_LENGTH)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long offset = position >>> LENGTH_BITS;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return MontoyaFakes.byteArray(bytes);
+    }
+
+    // 为了不读回旧值，总是返回 null
+    @Override
+    public ByteArray put(String key, ByteArray value) {
+        byte[] bytes = value.getBytes();
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Value too large: " + bytes.length);
+        }
+        long offset;
+        synchronized (this) {
+            offset = end;
+            end += bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index.put(key, offset << LENGTH_BITS | bytes.length);
+        return null;
+    }
+
+    @Override
+    public ByteArray remove(Object key) {
+        index.remove(key);
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return index.keySet();
+    }
+
+    // 遍历时按需读取每个值
+    @Override
+    public Set<Entry<String, ByteArray>> entrySet() {
+        return new AbstractSet<Entry<String, ByteArray>>() {
+            @Override
+            public Iterator<Entry<String, ByteArray>> iterator() {
+                Iterator<String> keys = index.keySet().iterator();
+                return new Iterator<Entry<String, ByteArray>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, ByteArray> next() {
+                        String key = keys.next();
+                        return new SimpleImmutableEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
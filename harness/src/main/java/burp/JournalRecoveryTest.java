@@ -0,0 +1,182 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * 项目数据部分损坏时的加载检查：分别把一个分组快照和清单改成无法解析的内容后加载，
+ * 确认加载报告了读取失败、不删除任何条目原文、数据块和快照、部分加载期间继续写入也不会改写清单；
+ * 再把损坏的记录恢复原样，确认所有分组连同部分加载期间写入的条目都能完整加载，条目ID不冲突。
+ * 任何一项不符合时以退出码 1 结束。
+ *
+ *   gradle :harness:journalRecoveryTest
+ */
+public final class JournalRecoveryTest {
+    private static final String MANIFEST_KEY = "manifest";
+    private static final String[] GROUPS = {"a", "b", "c"};
+    // 每次追加后等待落盘，三个分组合计的日志条数超过合并阈值，快照和未合并的日志中都有每个分组的条目
+    private static final int ITEMS_PER_GROUP = 40;
+    private static final int DEGRADED_APPENDS = 70;
+    private static final byte[] CORRUPT = {0x13, 0x37, 0x00, 0x7f};
+
+    private final SyntheticTraffic traffic = new SyntheticTraffic(7);
+    private final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        MontoyaFakes.install();
+        JournalRecoveryTest test = new JournalRecoveryTest();
+        test.checkCorruptSnapshot();
+        test.checkCorruptManifest();
+        if (test.failures.isEmpty()) {
+            System.out.println("\nPASS");
+            System.exit(0);
+        }
+        System.out.println("\nFAIL");
+        test.failures.forEach(failure -> System.out.println("  " + failure));
+        System.exit(1);
+    }
+
+    private void checkCorruptSnapshot() throws Exception {
+        Map<String, ByteArray> data = new ConcurrentHashMap<>();
+        Map<String, List<Long>> ids = populate(data);
+        String snapshotKey = snapshotOf(data, "b");
+        if (snapshotKey == null) {
+            failures.add("no snapshot of group b was written");
+            return;
+        }
+        checkRecovery("corrupt snapshot", data, ids, snapshotKey);
+    }
+
+    private void checkCorruptManifest() throws Exception {
+        Map<String, ByteArray> data = new ConcurrentHashMap<>();
+        Map<String, List<Long>> ids = populate(data);
+        checkRecovery("corrupt manifest", data, ids, MANIFEST_KEY);
+    }
+
+    // 写入各分组，返回 分组名 -> 条目ID；另外为分组 b 的条目写入旧版本那样按条目单独保存的原文键
+    private Map<String, List<Long>> populate(Map<String, ByteArray> data) throws InterruptedException {
+        GroupedHistoryCore core = open(data);
+        for (int i = 0; i < ITEMS_PER_GROUP; i++) {
+            for (String group : GROUPS) {
+                core.groupStore().append(group, List.of(traffic.next()));
+                core.journal().awaitFlush();
+            }
+        }
+        Map<String, List<Long>> ids = new LinkedHashMap<>();
+        for (String group : GROUPS) {
+            ids.put(group, idsOf(core.groupStore().items(group)));
+        }
+        core.close();
+        // 这些键只检查是否被删除，内容不会被读取（条目原文在数据块中）
+        for (long id : ids.get("b")) {
+            data.put("item." + id, ByteArray.byteArray(("legacy item " + id).getBytes()));
+        }
+        return ids;
+    }
+
+    private void checkRecovery(String phase, Map<String, ByteArray> data, Map<String, List<Long>> ids,
+                               String corruptKey) throws InterruptedException {
+        System.out.println(phase);
+        ByteArray original = data.get(corruptKey);
+        data.put(corruptKey, ByteArray.byteArray(CORRUPT));
+        Set<String> kept = keysToKeep(data);
+        byte[] manifest = data.get(MANIFEST_KEY).getBytes();
+
+        // 部分加载后继续写入：追加的次数足以触发合并，并移除一个已加载的条目
+        GroupedHistoryCore core = open(data);
+        if (!core.journal().isDegraded()) {
+            failures.add(phase + ": the load did not report the unreadable record");
+        }
+        List<Long> appended = new ArrayList<>();
+        for (int i = 0; i < DEGRADED_APPENDS; i++) {
+            GroupStore.AppendResult result = core.groupStore().append("a", List.of(traffic.next()));
+            appended.addAll(idsOf(result.added));
+            core.journal().awaitFlush();
+        }
+        GroupedItem removed = core.groupStore().items("a").get(0);
+        core.groupStore().remove("a", List.of(removed));
+        core.close();
+
+        Set<String> missing = new TreeSet<>(kept);
+        missing.removeAll(data.keySet());
+        if (!missing.isEmpty()) {
+            failures.add(phase + ": " + missing.size() + " stored records were deleted, e.g. " + missing.iterator().next());
+        }
+        if (!Arrays.equals(manifest, data.get(MANIFEST_KEY).getBytes())) {
+            failures.add(phase + ": the manifest was rewritten after a partial load");
+        }
+
+        // 恢复损坏的记录后完整加载
+        data.put(corruptKey, original);
+        core = open(data);
+        if (core.journal().isDegraded()) {
+            failures.add(phase + ": the restored project still loads only partially");
+        }
+        Map<String, List<Long>> expected = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> entry : ids.entrySet()) {
+            expected.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        expected.get("a").addAll(appended);
+        expected.get("a").remove(removed.id());
+        Set<Long> seen = new HashSet<>();
+        for (Map.Entry<String, List<Long>> entry : expected.entrySet()) {
+            List<Long> actual = idsOf(core.groupStore().items(entry.getKey()));
+            if (!actual.equals(entry.getValue())) {
+                failures.add(phase + ": group " + entry.getKey() + " has " + actual.size() + " items after repair, expected "
+                        + entry.getValue().size());
+            }
+            for (long id : actual) {
+                if (!seen.add(id)) {
+                    failures.add(phase + ": item id " + id + " is used twice after repair");
+                }
+            }
+        }
+        core.close();
+    }
+
+    private static GroupedHistoryCore open(Map<String, ByteArray> data) {
+        GroupedHistoryCore core = new GroupedHistoryCore(MontoyaFakes.persistedObject(data), MontoyaFakes.preferences(),
+                MontoyaFakes.logging());
+        core.load();
+        return core;
+    }
+
+    // 部分加载时不能删除的键：条目原文、数据块和分组快照
+    private static Set<String> keysToKeep(Map<String, ByteArray> data) {
+        Set<String> keys = new HashSet<>();
+        for (String key : data.keySet()) {
+            if (key.startsWith("item.") || key.startsWith("blob.") || key.startsWith("group.")) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String snapshotOf(Map<String, ByteArray> data, String group) throws IOException {
+        for (Map.Entry<String, ByteArray> entry : data.entrySet()) {
+            if (entry.getKey().startsWith("group.")
+                    && new RecordCodec.Reader(entry.getValue(), RecordCodec.TYPE_SNAPSHOT).readString().equals(group)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static List<Long> idsOf(List<GroupedItem> items) {
+        List<Long> ids = new ArrayList<>(items.size());
+        for (GroupedItem item : items) {
+            ids.add(item.id());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,397 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.params.HttpParameterType;
+import burp.api.montoya.http.message.params.ParsedHttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.internal.MontoyaObjectFactory;
+import burp.api.montoya.internal.ObjectFactoryLocator;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.PersistedObject;
+import burp.api.montoya.persistence.Preferences;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * 脱离 Burp 运行时使用的 Montoya API 替身。
+ * Montoya 的静态工厂方法（ByteArray.byteArray、HttpRequest.httpRequest 等）都转发到 ObjectFactoryLocator.FACTORY，
+ * install() 把它换成这里基于动态代理的实现，扩展代码不需要任何修改即可在基准测试和压力测试中运行。
+ * 只实现了扩展实际用到的方法，其余方法抛出 UnsupportedOperationException，方便发现遗漏。
+ */
+final class MontoyaFakes {
+    private MontoyaFakes() {
+    }
+
+    static void install() {
+        ObjectFactoryLocator.FACTORY = fake(MontoyaObjectFactory.class, (method, args) -> {
+            switch (method) {
+                case "byteArray":
+                    if (args[0] instanceof byte[]) {
+                        return byteArray((byte[]) args[0]);
+                    }
+                    if (args[0] instanceof String) {
+                        return byteArray(((String) args[0]).getBytes(StandardCharsets.ISO_8859_1));
+                    }
+                    return UNSUPPORTED;
+                case "byteArrayOfLength":
+                    return byteArray(new byte[(Integer) args[0]]);
+                case "httpService":
+                    return args.length == 3 ? httpService((String) args[0], (Integer) args[1], (Boolean) args[2]) : UNSUPPORTED;
+                case "httpRequest":
+                    if (args.length == 2 && args[1] instanceof ByteArray) {
+                        return httpRequest((HttpService) args[0], ((ByteArray) args[1]).getBytes());
+                    }
+                    if (args.length == 1 && args[0] instanceof ByteArray) {
+                        return httpRequest(null, ((ByteArray) args[0]).getBytes());
+                    }
+                    return UNSUPPORTED;
+                case "httpResponse":
+                    return args.length == 1 && args[0] instanceof ByteArray ? httpResponse(((ByteArray) args[0]).getBytes()) : UNSUPPORTED;
+                case "httpRequestResponse":
+                    return httpRequestResponse((HttpRequest) args[0], (HttpResponse) args[1]);
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    // 只支持 ByteArray 类型的键值，与 HistoryJournal 的用法一致
+    static PersistedObject persistedObject(Map<String, ByteArray> data) {
+        return fake(PersistedObject.class, (method, args) -> {
+            switch (method) {
+                case "getByteArray":
+                    return data.get((String) args[0]);
+                case "setByteArray":
+                    data.put((String) args[0], (ByteArray) args[1]);
+                    return null;
+                case "deleteByteArray":
+                    data.remove((String) args[0]);
+                    return null;
+                case "byteArrayKeys":
+                    return new LinkedHashSet<>(data.keySet());
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    static PersistedObject persistedObject() {
+        return persistedObject(new ConcurrentHashMap<>());
+    }
+
+    // 各类型的值分开保存，与 Burp 的实现一致：getString 读不到 setInteger 写入的同名键
+    static Preferences preferences() {
+        Map<String, Object> values = new ConcurrentHashMap<>();
+        return fake(Preferences.class, (method, args) -> {
+            if (method.endsWith("Keys")) {
+                String prefix = Character.toUpperCase(method.charAt(0)) + method.substring(1, method.length() - 4) + ":";
+                Set<String> keys = new LinkedHashSet<>();
+                for (String key : values.keySet()) {
+                    if (key.startsWith(prefix)) {
+                        keys.add(key.substring(prefix.length()));
+                    }
+                }
+                return keys;
+            }
+            if (method.startsWith("get")) {
+                return values.get(method.substring(3) + ":" + args[0]);
+            }
+            if (method.startsWith("set")) {
+                values.put(method.substring(3) + ":" + args[0], args[1]);
+                return null;
+            }
+            if (method.startsWith("delete")) {
+                values.remove(method.substring(6) + ":" + args[0]);
+                return null;
+            }
+            return UNSUPPORTED;
+        });
+    }
+
+    // 丢弃所有输出，错误转到标准错误流
+    static Logging logging() {
+        return fake(Logging.class, (method, args) -> {
+            if (method.startsWith("logToError") || method.equals("raiseErrorEvent")) {
+                System.err.println(args[0]);
+            }
+            return null;
+        });
+    }
+
+    static HttpService httpService(String host, int port, boolean secure) {
+        String text = (secure ? "https://" : "http://") + host + ":" + port;
+        return fake(HttpService.class, (method, args) -> {
+            switch (method) {
+                case "host":
+                    return host;
+                case "port":
+                    return port;
+                case "secure":
+                    return secure;
+                case "toString":
+                    return text;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    static HttpRequestResponse httpRequestResponse(HttpRequest request, HttpResponse response) {
+        return fake(HttpRequestResponse.class, (method, args) -> {
+            switch (method) {
+                case "request":
+                    return request;
+                case "response":
+                    return response;
+                case "hasResponse":
+                    return response != null;
+                case "httpService":
+                    return request.httpService();
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    static HttpRequest httpRequest(HttpService service, byte[] raw) {
+        RawMessage message = new RawMessage(raw);
+        String[] requestLine = message.startLine.split(" ", 3);
+        String target = requestLine.length > 1 ? requestLine[1] : "/";
+        int queryStart = target.indexOf('?');
+        String path = queryStart < 0 ? target : target.substring(0, queryStart);
+        String query = queryStart < 0 ? "" : target.substring(queryStart + 1);
+        return fake(HttpRequest.class, (method, args) -> {
+            switch (method) {
+                case "method":
+                    return requestLine[0];
+                case "path":
+                    return target;
+                case "pathWithoutQuery":
+                    return path;
+                case "query":
+                    return query;
+                case "httpVersion":
+                    return requestLine.length > 2 ? requestLine[2] : "HTTP/1.1";
+                case "httpService":
+                    return service;
+                case "parameters":
+                    return parametersOf(query);
+                default:
+                    return message.handle(method, args);
+            }
+        });
+    }
+
+    static HttpResponse httpResponse(byte[] raw) {
+        RawMessage message = new RawMessage(raw);
+        String[] statusLine = message.startLine.split(" ", 3);
+        short statusCode = Short.parseShort(statusLine[1]);
+        return fake(HttpResponse.class, (method, args) -> {
+            switch (method) {
+                case "statusCode":
+                    return statusCode;
+                case "reasonPhrase":
+                    return statusLine.length > 2 ? statusLine[2] : "";
+                case "httpVersion":
+                    return statusLine[0];
+                case "mimeType":
+                    return mimeTypeOf(message.headerValue("Content-Type"));
+                default:
+                    return message.handle(method, args);
+            }
+        });
+    }
+
+    static ByteArray byteArray(byte[] bytes) {
+        return fake(ByteArray.class, (method, args) -> {
+            switch (method) {
+                case "getBytes":
+                    return bytes.clone();
+                case "length":
+                    return bytes.length;
+                case "getByte":
+                    return bytes[(Integer) args[0]];
+                case "subArray":
+                    return args.length == 2 ? byteArray(Arrays.copyOfRange(bytes, (Integer) args[0], (Integer) args[1])) : UNSUPPORTED;
+                case "indexOf":
+                    return args.length == 2 && args[0] instanceof String
+                            ? indexOf(bytes, (String) args[0], (Boolean) args[1]) : UNSUPPORTED;
+                case "toString":
+                    return new String(bytes, StandardCharsets.ISO_8859_1);
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static final Object UNSUPPORTED = new Object();
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T fake(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(MontoyaFakes.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object[] arguments = args == null ? new Object[0] : args;
+            String name = method.getName();
+            if (name.equals("hashCode") && arguments.length == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("equals") && arguments.length == 1) {
+                return proxy == arguments[0];
+            }
+            Object result = handler.invoke(name, arguments);
+            if (result == UNSUPPORTED) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + name);
+            }
+            return result;
+        }));
+    }
+
+    // 请求和响应共用的部分：起始行、头部和正文
+    private static final class RawMessage {
+        final byte[] raw;
+        final String startLine;
+        final List<HttpHeader> headers = new ArrayList<>();
+        final int bodyOffset;
+
+        RawMessage(byte[] raw) {
+            this.raw = raw;
+            String text = new String(raw, StandardCharsets.ISO_8859_1);
+            int headerEnd = text.indexOf("\r\n\r\n");
+            this.bodyOffset = headerEnd < 0 ? raw.length : headerEnd + 4;
+            String[] lines = (headerEnd < 0 ? text : text.substring(0, headerEnd)).split("\r\n");
+            this.startLine = lines[0];
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.add(header(lines[i].substring(0, colon), lines[i].substring(colon + 1).trim()));
+                }
+            }
+        }
+
+        String headerValue(String name) {
+            for (HttpHeader header : headers) {
+                if (header.name().equalsIgnoreCase(name)) {
+                    return header.value();
+                }
+            }
+            return null;
+        }
+
+        Object handle(String method, Object[] args) {
+            switch (method) {
+                case "toByteArray":
+                    return byteArray(raw);
+                case "toString":
+                    return new String(raw, StandardCharsets.ISO_8859_1);
+                case "headers":
+                    return Collections.unmodifiableList(headers);
+                case "headerValue":
+                    return headerValue((String) args[0]);
+                case "hasHeader":
+                    return args.length == 1 && args[0] instanceof String ? headerValue((String) args[0]) != null : UNSUPPORTED;
+                case "body":
+                    return byteArray(Arrays.copyOfRange(raw, bodyOffset, raw.length));
+                case "bodyOffset":
+                    return bodyOffset;
+                default:
+                    return UNSUPPORTED;
+            }
+        }
+    }
+
+    private static HttpHeader header(String name, String value) {
+        return fake(HttpHeader.class, (method, args) -> {
+            switch (method) {
+                case "name":
+                    return name;
+                case "value":
+                    return value;
+                case "toString":
+                    return name + ": " + value;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static List<ParsedHttpParameter> parametersOf(String query) {
+        List<ParsedHttpParameter> parameters = new ArrayList<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.add(fake(ParsedHttpParameter.class, (method, args) -> {
+                switch (method) {
+                    case "type":
+                        return HttpParameterType.URL;
+                    case "name":
+                        return name;
+                    case "value":
+                        return value;
+                    default:
+                        return UNSUPPORTED;
+                }
+            }));
+        }
+        return parameters;
+    }
+
+    private static MimeType mimeTypeOf(String contentType) {
+        if (contentType == null) {
+            return MimeType.NONE;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        if (type.contains("json")) {
+            return MimeType.JSON;
+        }
+        if (type.contains("html")) {
+            return MimeType.HTML;
+        }
+        if (type.contains("javascript")) {
+            return MimeType.SCRIPT;
+        }
+        if (type.contains("css")) {
+            return MimeType.CSS;
+        }
+        if (type.startsWith("image/")) {
+            return MimeType.IMAGE_UNKNOWN;
+        }
+        return MimeType.PLAIN_TEXT;
+    }
+
+    private static int indexOf(byte[] bytes, String text, boolean caseSensitive) {
+        byte[] needle = text.getBytes(StandardCharsets.ISO_8859_1);
+        outer:
+        for (int i = 0; i + needle.length <= bytes.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                byte a = bytes[i + j];
+                byte b = needle[j];
+                if (a != b && (caseSensitive || Character.toLowerCase((char) (a & 0xFF)) != Character.toLowerCase((char) (b & 0xFF)))) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
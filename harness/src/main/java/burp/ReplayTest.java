@@ -0,0 +1,271 @@
+package burp;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * 分组重放的端到端检查：在本机启动一个 HTTP 服务代替目标站点，用普通 Socket 代替 api.http() 发送，
+ * 依次检查结果顺序和状态码变化统计、请求头和 Cookie 替换、并发上限、限速以及取消。
+ * 任何一项不符合时以退出码 1 结束。
+ *
+ *   gradle :harness:replayTest
+ */
+public final class ReplayTest {
+    private static final int ITEMS = 120;
+
+    private final HttpServer server;
+    private final int port;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<String> receivedCookies = ConcurrentHashMap.newKeySet();
+    private volatile long delayMillis;
+    private final List<String> failures = new ArrayList<>();
+
+    private ReplayTest() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws Exception {
+        MontoyaFakes.install();
+        ReplayTest test = new ReplayTest();
+        try {
+            test.checkResults();
+            test.checkConcurrency();
+            test.checkRateLimit();
+            test.checkCancellation();
+        } finally {
+            test.server.stop(0);
+            ((ExecutorService) test.server.getExecutor()).shutdownNow();
+        }
+        if (test.failures.isEmpty()) {
+            System.out.println("\nPASS");
+            System.exit(0);
+        }
+        System.out.println("\nFAIL");
+        test.failures.forEach(failure -> System.out.println("  " + failure));
+        System.exit(1);
+    }
+
+    /*
+     * 本地服务：/gone/* 现在返回 404（原响应是 200），/private/* 只有 Authorization 为 Bearer new 时返回 200，
+     * 其余返回 200。每个请求等待 delayMillis，并记录同时处理的请求数和收到的 Cookie。
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        // 在写出响应之前减少计数，否则客户端收到响应后发出的下一个请求可能先于这里的减少被计入
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+        if (cookie != null) {
+            receivedCookies.add(cookie);
+        }
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        if (path.startsWith("/gone/")) {
+            status = 404;
+        } else if (path.startsWith("/private/")) {
+            status = "Bearer new".equals(exchange.getRequestHeaders().getFirst("Authorization")) ? 200 : 401;
+        }
+        byte[] body = ("{\"path\":\"" + path + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        exchange.close();
+    }
+
+    // 结果按原顺序放入新分组；/gone 的 200 → 404 计为变化，替换了 Authorization 的 /private 保持 200
+    private void checkResults() throws Exception {
+        GroupedHistoryCore core = newCore();
+        List<GroupedItem> source = sourceGroup(core, ITEMS);
+        delayMillis = 0;
+        receivedCookies.clear();
+        GroupReplayer.Options options = new GroupReplayer.Options(8, 0,
+                Map.of("Authorization", "Bearer new", "Connection", "close"), Map.of("session", "new"), false);
+        long start = System.nanoTime();
+        GroupReplayer.Result result = new GroupReplayer(core.groupStore(), this::send, options, progress(new AtomicBoolean()))
+                .replay(source, "replayed");
+        report("results", start, result);
+
+        int gone = 0;
+        for (GroupedItem item : source) {
+            if (item.summary().path().startsWith("/gone/")) {
+                gone++;
+            }
+        }
+        check(result.replayed == ITEMS, "replayed " + result.replayed + " of " + ITEMS);
+        check(result.statusChanges.equals(Map.of("200 → 404", gone)), "status changes " + result.statusChanges);
+        check(result.unchanged == ITEMS - gone, "unchanged " + result.unchanged);
+        List<GroupedItem> replayed = core.groupStore().items("replayed");
+        for (int i = 0; i < Math.min(replayed.size(), source.size()); i++) {
+            if (!replayed.get(i).summary().path().equals(source.get(i).summary().path())) {
+                check(false, "row " + i + " is " + replayed.get(i).summary().path() + ", expected " + source.get(i).summary().path());
+                break;
+            }
+        }
+        check(receivedCookies.equals(Set.of("session=new; theme=dark")), "cookies received " + receivedCookies);
+        core.close();
+    }
+
+    private void checkConcurrency() throws Exception {
+        GroupedHistoryCore core = newCore();
+        List<GroupedItem> source = sourceGroup(core, 40);
+        delayMillis = 50;
+        maxInFlight.set(0);
+        GroupReplayer.Options options = new GroupReplayer.Options(3, 0, Map.of("Connection", "close"), Map.of(), false);
+        long start = System.nanoTime();
+        GroupReplayer.Result result = new GroupReplayer(core.groupStore(), this::send, options, progress(new AtomicBoolean()))
+                .replay(source, "replayed");
+        report("concurrency 3", start, result);
+        System.out.println("         at most " + maxInFlight.get() + " requests in flight");
+        check(maxInFlight.get() <= 3, "concurrency limit exceeded: " + maxInFlight.get());
+        check(maxInFlight.get() >= 2, "requests were not sent concurrently");
+        core.close();
+    }
+
+    // 40 个请求、每秒 20 个：第一个立即发送，其余每 50 ms 一个，至少 1.95 秒
+    private void checkRateLimit() throws Exception {
+        GroupedHistoryCore core = newCore();
+        List<GroupedItem> source = sourceGroup(core, 40);
+        delayMillis = 0;
+        GroupReplayer.Options options = new GroupReplayer.Options(8, 20, Map.of("Connection", "close"), Map.of(), false);
+        long start = System.nanoTime();
+        GroupReplayer.Result result = new GroupReplayer(core.groupStore(), this::send, options, progress(new AtomicBoolean()))
+                .replay(source, "replayed");
+        double seconds = report("rate 20/s", start, result);
+        check(seconds >= 1.9, String.format("rate limit not applied: 40 requests in %.2f s", seconds));
+        check(seconds < 4, String.format("rate limit too slow: 40 requests in %.2f s", seconds));
+        core.close();
+    }
+
+    // 取消后不再发送新请求，已完成的结果留在新分组中
+    private void checkCancellation() throws Exception {
+        GroupedHistoryCore core = newCore();
+        List<GroupedItem> source = sourceGroup(core, ITEMS);
+        delayMillis = 100;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        GroupReplayer.Options options = new GroupReplayer.Options(2, 0, Map.of("Connection", "close"), Map.of(), false);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                return;
+            }
+            cancelled.set(true);
+        });
+        canceller.start();
+        long start = System.nanoTime();
+        boolean threw = false;
+        try {
+            new GroupReplayer(core.groupStore(), this::send, options, progress(cancelled)).replay(source, "replayed");
+        } catch (CancellationException e) {
+            threw = true;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int kept = core.groupStore().size("replayed");
+        System.out.printf("cancel   stopped after %.2f s, %d of %d results kept%n", seconds, kept, ITEMS);
+        check(threw, "cancellation was not reported");
+        check(kept > 0 && kept < ITEMS, "kept " + kept + " results after cancelling");
+        check(seconds < 2, String.format("cancellation took %.2f s", seconds));
+        Thread.sleep(300);
+        check(inFlight.get() == 0, inFlight.get() + " requests still in flight after cancelling");
+        core.close();
+    }
+
+    private static GroupedHistoryCore newCore() {
+        return new GroupedHistoryCore(MontoyaFakes.persistedObject(), MontoyaFakes.preferences(),
+                MontoyaFakes.logging());
+    }
+
+    // 原响应都是 200；每 5 个中有一个 /gone、一个 /private
+    private List<GroupedItem> sourceGroup(GroupedHistoryCore core, int items) {
+        HttpService service = MontoyaFakes.httpService("127.0.0.1", port, false);
+        List<HttpRequestResponse> messages = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            String path = (i % 5 == 1 ? "/gone/" : i % 5 == 2 ? "/private/" : "/api/") + i;
+            String request = "GET " + path + " HTTP/1.1\r\nHost: 127.0.0.1:" + port
+                    + "\r\nAuthorization: Bearer old\r\nCookie: session=old; theme=dark\r\n\r\n";
+            String response = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 2\r\n\r\n{}";
+            messages.add(MontoyaFakes.httpRequestResponse(
+                    MontoyaFakes.httpRequest(service, request.getBytes(StandardCharsets.ISO_8859_1)),
+                    MontoyaFakes.httpResponse(response.getBytes(StandardCharsets.ISO_8859_1))));
+        }
+        core.groupStore().append("source", messages);
+        return core.groupStore().items("source");
+    }
+
+    // 代替 api.http()：把原始请求写入 Socket，读到连接关闭为止
+    private HttpRequestResponse send(HttpRequest request) throws IOException {
+        HttpService service = request.httpService();
+        try (Socket socket = new Socket(service.host(), service.port())) {
+            socket.setSoTimeout(10_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(request.toByteArray().getBytes());
+            out.flush();
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            in.transferTo(response);
+            return MontoyaFakes.httpRequestResponse(request, MontoyaFakes.httpResponse(response.toByteArray()));
+        }
+    }
+
+    private static TaskProgress progress(AtomicBoolean cancelled) {
+        return new TaskProgress() {
+            @Override
+            public void update(long done, long total, String note) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+    }
+
+    private static double report(String name, long start, GroupReplayer.Result result) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-8s %d requests in %.2f s: %d unchanged, %s changed, %d failed, %d skipped%n",
+                name, result.replayed, seconds, result.unchanged, result.statusChanges, result.failed, result.skipped);
+        return seconds;
+    }
+
+    private void check(boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+}
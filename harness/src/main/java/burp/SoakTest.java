@@ -0,0 +1,386 @@
+package burp;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 无界面的压力测试：用 MontoyaFakes 和 SyntheticTraffic 代替 Burp，把大量条目依次经过
+ * 添加、移除、保存、重新加载、按需读取和导出，统计每一步的延迟和最终的堆占用，与预算比较。
+ * 超出任何一项预算时以退出码 1 结束，可以放在 CI 或夜间任务中运行。
+ *
+ * 参数都是 key=value 形式，见 DEFAULTS；例如
+ *   gradle :harness:run --args="items=2000000 heapMb=3072"
+ */
+public final class SoakTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("items", "1000000");      // 添加的条目总数
+        DEFAULTS.put("groups", "16");          // 条目轮流加入的分组数
+        DEFAULTS.put("batch", "500");          // 每次 append/remove 的条目数
+        DEFAULTS.put("flushEvery", "20000");   // 每添加这么多条目等待一次落盘，0 表示不等待
+        DEFAULTS.put("removeEvery", "10");     // 每个分组中每隔这么多条目移除一条，0 表示不移除
+        DEFAULTS.put("policy", "COUNT");       // 重复请求策略
+        DEFAULTS.put("reads", "2000");         // 重新加载后随机读取原文的次数
+        DEFAULTS.put("store", "disk");         // disk：项目数据写入临时文件；memory：保存在堆中
+        DEFAULTS.put("seed", "42");
+        // 预算，超出即失败
+        DEFAULTS.put("appendP99Ms", "250");
+        DEFAULTS.put("removeP99Ms", "250");
+        DEFAULTS.put("flushP99Ms", "5000");
+        DEFAULTS.put("readP99Ms", "20");
+        DEFAULTS.put("loadSeconds", "60");
+        DEFAULTS.put("exportSeconds", "120");
+        DEFAULTS.put("heapMb", "2048");
+    }
+
+    private final Map<String, String> options;
+    private final List<String> report = new ArrayList<>();
+    private final List<String> failures = new ArrayList<>();
+
+    private SoakTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                System.err.println("Unknown argument: " + arg + "\nOptions (with defaults): " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        System.exit(new SoakTest(options).run() ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        MontoyaFakes.install();
+        System.out.println("Soak test: " + options);
+
+        Map<String, ByteArray> projectData;
+        if (option("store").equals("memory")) {
+            projectData = new ConcurrentHashMap<>();
+        } else {
+            projectData = new DiskByteArrayStore();
+        }
+        try {
+            GroupedHistoryCore core = newCore(projectData);
+            core.load();
+            Map<String, Integer> expected = ingest(core);
+            removeItems(core, expected);
+            checkStats(core, "after remove");
+            save(core);
+            core.close();
+
+            GroupedHistoryCore reloaded = newCore(projectData);
+            load(reloaded, expected);
+            checkStats(reloaded, "after reload");
+            readMessages(reloaded);
+            export(reloaded);
+            measureHeap();
+            reloaded.close();
+        } finally {
+            if (projectData instanceof Closeable) {
+                ((Closeable) projectData).close();
+            }
+        }
+
+        System.out.println();
+        report.forEach(System.out::println);
+        if (failures.isEmpty()) {
+            System.out.println("\nPASS");
+            return true;
+        }
+        System.out.println("\nFAIL");
+        failures.forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    private GroupedHistoryCore newCore(Map<String, ByteArray> projectData) {
+        GroupedHistoryCore core = new GroupedHistoryCore(MontoyaFakes.persistedObject(projectData),
+                MontoyaFakes.preferences(), MontoyaFakes.logging());
+        core.settings().setDuplicatePolicy(DuplicatePolicy.fromName(option("policy")));
+        core.applySettings();
+        core.metrics().setEnabled(true);
+        return core;
+    }
+
+    // 返回每个分组最终应有的条目数
+    private Map<String, Integer> ingest(GroupedHistoryCore core) throws InterruptedException {
+        int items = intOption("items");
+        int groups = intOption("groups");
+        int batch = intOption("batch");
+        int flushEvery = intOption("flushEvery");
+        SyntheticTraffic traffic = new SyntheticTraffic(Long.parseLong(option("seed")));
+        Samples append = new Samples();
+        Samples flush = new Samples();
+
+        long started = System.nanoTime();
+        int sinceFlush = 0;
+        for (int done = 0, round = 0; done < items; round++) {
+            List<HttpRequestResponse> messages = traffic.messages(Math.min(batch, items - done));
+            long start = System.nanoTime();
+            core.groupStore().append("group-" + (round % groups), messages);
+            append.add(System.nanoTime() - start);
+            done += messages.size();
+            sinceFlush += messages.size();
+            if (flushEvery > 0 && sinceFlush >= flushEvery) {
+                start = System.nanoTime();
+                core.journal().awaitFlush();
+                flush.add(System.nanoTime() - start);
+                sinceFlush = 0;
+            }
+            if (done % 100_000 < batch) {
+                progress("added " + done + " / " + items);
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        for (String group : core.groupStore().groupNames()) {
+            expected.put(group, core.groupStore().size(group));
+        }
+        report.add(String.format(Locale.ROOT, "append   %,d items in %.1f s (%,.0f items/s), %,d duplicates merged",
+                items, seconds(elapsed), items / seconds(elapsed), core.groupStore().suppressedDuplicates()));
+        report.add("         per batch " + append);
+        check("append p99", append.percentileMillis(99), doubleOption("appendP99Ms"), "ms");
+        if (flush.count() > 0) {
+            report.add("flush    per " + flushEvery + " items " + flush);
+            check("flush p99", flush.percentileMillis(99), doubleOption("flushP99Ms"), "ms");
+        }
+        return expected;
+    }
+
+    private void removeItems(GroupedHistoryCore core, Map<String, Integer> expected) {
+        int every = intOption("removeEvery");
+        if (every <= 0) {
+            return;
+        }
+        int batch = intOption("batch");
+        Samples remove = new Samples();
+        long removed = 0;
+        for (String group : core.groupStore().groupNames()) {
+            List<GroupedItem> items = core.groupStore().items(group);
+            List<GroupedItem> victims = new ArrayList<>();
+            for (int i = 0; i < items.size(); i += every) {
+                victims.add(items.get(i));
+            }
+            for (int start = 0; start < victims.size(); start += batch) {
+                List<GroupedItem> chunk = victims.subList(start, Math.min(victims.size(), start + batch));
+                long begin = System.nanoTime();
+                core.groupStore().remove(group, chunk);
+                remove.add(System.nanoTime() - begin);
+            }
+            removed += victims.size();
+            expected.put(group, expected.get(group) - victims.size());
+        }
+        report.add(String.format(Locale.ROOT, "remove   %,d items, per batch %s", removed, remove));
+        check("remove p99", remove.percentileMillis(99), doubleOption("removeP99Ms"), "ms");
+    }
+
+    private void save(GroupedHistoryCore core) throws InterruptedException {
+        long start = System.nanoTime();
+        core.journal().awaitFlush();
+        long elapsed = System.nanoTime() - start;
+        PerformanceMetrics.Stat writes = core.metrics().stat(PerformanceMetrics.Operation.PERSIST_WRITE);
+        report.add(String.format(Locale.ROOT, "save     final flush %.1f ms, %,d bytes written by %,d flushes",
+                millis(elapsed), writes.bytes, writes.count));
+    }
+
+    private void load(GroupedHistoryCore core, Map<String, Integer> expected) {
+        long start = System.nanoTime();
+        core.load();
+        long elapsed = System.nanoTime() - start;
+        long total = 0;
+        for (Map.Entry<String, Integer> group : expected.entrySet()) {
+            int actual = core.groupStore().size(group.getKey());
+            total += actual;
+            if (actual != group.getValue()) {
+                failures.add("group " + group.getKey() + " has " + actual + " items after reload, expected " + group.getValue());
+            }
+        }
+        report.add(String.format(Locale.ROOT, "load     %,d items in %.2f s", total, seconds(elapsed)));
+        check("load", seconds(elapsed), doubleOption("loadSeconds"), "s");
+    }
+
+    // 增量维护的分组统计应与按当前条目重新统计的结果完全一致
+    private void checkStats(GroupedHistoryCore core, String phase) {
+        for (String group : core.groupStore().groupNames()) {
+            GroupStats recount = new GroupStats();
+            for (GroupedItem item : core.groupStore().items(group)) {
+                recount.add(item.summary());
+            }
+            GroupStats.Snapshot expected = recount.snapshot();
+            GroupStats.Snapshot actual = core.groupStore().stats(group);
+            if (actual.count != expected.count
+                    || !Arrays.equals(actual.statusClasses, expected.statusClasses)
+                    || !actual.methods.equals(expected.methods)
+                    || !actual.hosts.equals(expected.hosts)
+                    || !actual.mimeTypes.equals(expected.mimeTypes)
+                    || actual.responses != expected.responses
+                    || actual.totalBytes != expected.totalBytes
+                    || actual.minBytes != expected.minBytes
+                    || actual.medianBytes != expected.medianBytes
+                    || actual.p95Bytes != expected.p95Bytes
+                    || actual.maxBytes != expected.maxBytes) {
+                failures.add("statistics of group " + group + " " + phase + " differ from a recount: "
+                        + actual.summary() + " vs " + expected.summary());
+            }
+        }
+    }
+
+    private void readMessages(GroupedHistoryCore core) {
+        int reads = intOption("reads");
+        List<String> groups = core.groupStore().groupNames();
+        if (reads <= 0 || groups.isEmpty()) {
+            return;
+        }
+        Random random = new Random(Long.parseLong(option("seed")));
+        Samples read = new Samples();
+        int failed = 0;
+        for (int i = 0; i < reads; i++) {
+            List<GroupedItem> items = core.groupStore().items(groups.get(random.nextInt(groups.size())));
+            if (items.isEmpty()) {
+                continue;
+            }
+            GroupedItem item = items.get(random.nextInt(items.size()));
+            long start = System.nanoTime();
+            HttpRequestResponse message = item.message();
+            read.add(System.nanoTime() - start);
+            if (message == null || !item.summary().method().equals(message.request().method())) {
+                failed++;
+            }
+        }
+        report.add("read     random items " + read);
+        check("read p99", read.percentileMillis(99), doubleOption("readP99Ms"), "ms");
+        if (failed > 0) {
+            failures.add(failed + " items could not be read back");
+        }
+    }
+
+    private void export(GroupedHistoryCore core) throws IOException {
+        Map<String, List<GroupedItem>> groups = core.groupStore().snapshot();
+        long total = 0;
+        for (List<GroupedItem> items : groups.values()) {
+            total += items.size();
+        }
+        Path file = Files.createTempFile("grouped-history-soak", ".jsonl");
+        try {
+            long start = System.nanoTime();
+            GroupExporter.Result result = GroupExporter.exportToFile(groups, GroupExporter.Format.JSONL, file, new TaskProgress() {
+                @Override
+                public void update(long done, long all, String note) {
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+            report.add(String.format(Locale.ROOT, "export   %,d items, %,d bytes in %.1f s", result.exported, Files.size(file), seconds(elapsed)));
+            check("export", seconds(elapsed), doubleOption("exportSeconds"), "s");
+            if (result.exported + result.skipped != total || result.skipped > 0) {
+                failures.add("exported " + result.exported + " and skipped " + result.skipped + " of " + total + " items");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // 重新加载后的常驻堆：分组、摘要、索引和有上限的缓存
+    private void measureHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        report.add(String.format(Locale.ROOT, "heap     %.0f MB used after reload (max %.0f MB)",
+                used / 1048576.0, runtime.maxMemory() / 1048576.0));
+        check("heap", used / 1048576.0, doubleOption("heapMb"), "MB");
+    }
+
+    private void check(String name, double actual, double budget, String unit) {
+        if (actual > budget) {
+            failures.add(String.format(Locale.ROOT, "%s %.1f %s exceeds budget %.1f %s", name, actual, unit, budget, unit));
+        }
+    }
+
+    private static void progress(String message) {
+        System.out.println("  " + message);
+    }
+
+    private String option(String name) {
+        return options.get(name);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(option(name));
+    }
+
+    private double doubleOption(String name) {
+        return Double.parseDouble(option(name));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    // 延迟样本，结束时排序求百分位
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int count;
+        private boolean sorted;
+
+        void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+            sorted = false;
+        }
+
+        int count() {
+            return count;
+        }
+
+        double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, count);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+            return millis(values[Math.max(0, Math.min(count - 1, rank))]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "n=%,d p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    count, percentileMillis(50), percentileMillis(99), percentileMillis(100));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package burp;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * 按固定种子生成接近真实代理历史的流量：少数主机占大部分请求，GET 为主，
+ * 状态码以 2xx 为主并带少量 3xx/4xx/5xx，响应大小从几百字节到几十KB不等（平均约 1.5KB），
+ * 部分请求重复出现，用于覆盖重复请求的处理路径。相同种子总是生成相同的序列。
+ */
+final class SyntheticTraffic {
+    private static final String[] HOSTS = {
+            "app.example.com", "api.example.com", "static.example-cdn.net", "auth.example.com",
+            "tracking.example-metrics.io", "admin.example.com", "files.example.org", "legacy.example.net"
+    };
+    // 与 HOSTS 对应的相对权重
+    private static final int[] HOST_WEIGHTS = {40, 30, 12, 6, 5, 3, 2, 2};
+    private static final String[] SEGMENTS = {
+            "api", "v1", "v2", "users", "orders", "items", "search", "login", "profile", "cart",
+            "assets", "img", "js", "css", "report", "export", "settings", "notifications", "graphql", "health"
+    };
+    private static final String[] PARAMETERS = {"id", "page", "size", "q", "sort", "token", "lang", "ts", "ref", "filter"};
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0 Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4 Safari/605.1.15",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0"
+    };
+    private static final String[] CONTENT_TYPES = {
+            "application/json; charset=utf-8", "text/html; charset=utf-8", "application/javascript", "text/css", "image/png"
+    };
+    private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua enim ad minim veniam quis nostrud exercitation ";
+
+    private final Random random;
+    private final List<HttpRequest> recent = new ArrayList<>();
+
+    SyntheticTraffic(long seed) {
+        this.random = new Random(seed);
+        MontoyaFakes.install();
+    }
+
+    HttpRequestResponse next() {
+        HttpRequest request = nextRequest();
+        return MontoyaFakes.httpRequestResponse(request, nextResponse(request.method()));
+    }
+
+    List<HttpRequestResponse> messages(int count) {
+        List<HttpRequestResponse> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(next());
+        }
+        return messages;
+    }
+
+    // 不经过持久化层的条目，ID 从 1 开始连续编号
+    List<GroupedItem> items(int count) {
+        List<GroupedItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new GroupedItem(i + 1, next()));
+        }
+        return items;
+    }
+
+    private HttpRequest nextRequest() {
+        // 约 5% 的请求与最近的某个请求完全相同
+        if (!recent.isEmpty() && random.nextInt(100) < 5) {
+            return recent.get(random.nextInt(recent.size()));
+        }
+        String host = HOSTS[weighted(HOST_WEIGHTS)];
+        int roll = random.nextInt(100);
+        String method = roll < 70 ? "GET" : roll < 90 ? "POST" : roll < 95 ? "PUT" : roll < 98 ? "DELETE" : "OPTIONS";
+
+        StringBuilder target = new StringBuilder();
+        int depth = 1 + random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            target.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            target.append('/').append(random.nextInt(100000));
+        }
+        int parameters = method.equals("GET") ? random.nextInt(4) : random.nextInt(2);
+        for (int i = 0; i < parameters; i++) {
+            target.append(i == 0 ? '?' : '&').append(PARAMETERS[random.nextInt(PARAMETERS.length)])
+                    .append('=').append(Long.toString(random.nextInt(1 << 20), 36));
+        }
+
+        String body = method.equals("POST") || method.equals("PUT") ? jsonBody(40 + random.nextInt(600)) : "";
+        StringBuilder raw = new StringBuilder(512 + body.length());
+        raw.append(method).append(' ').append(target).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append("\r\n")
+                .append("User-Agent: ").append(USER_AGENTS[random.nextInt(USER_AGENTS.length)]).append("\r\n")
+                .append("Accept: */*\r\n")
+                .append("Accept-Language: en-US,en;q=0.9\r\n")
+                .append("Cookie: session=").append(Long.toHexString(random.nextLong())).append("; theme=dark\r\n");
+        if (!body.isEmpty()) {
+            raw.append("Content-Type: application/json\r\n")
+                    .append("Content-Length: ").append(body.length()).append("\r\n");
+        }
+        raw.append("\r\n").append(body);
+
+        HttpService service = MontoyaFakes.httpService(host, 443, true);
+        HttpRequest request = MontoyaFakes.httpRequest(service, raw.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (recent.size() < 256) {
+            recent.add(request);
+        } else {
+            recent.set(random.nextInt(recent.size()), request);
+        }
+        return request;
+    }
+
+    private HttpResponse nextResponse(String method) {
+        int roll = random.nextInt(100);
+        int status;
+        String reason;
+        if (roll < 78) {
+            status = method.equals("POST") && random.nextBoolean() ? 201 : 200;
+            reason = status == 201 ? "Created" : "OK";
+        } else if (roll < 86) {
+            status = random.nextBoolean() ? 302 : 304;
+            reason = status == 302 ? "Found" : "Not Modified";
+        } else if (roll < 97) {
+            status = random.nextInt(3) == 0 ? 403 : 404;
+            reason = status == 403 ? "Forbidden" : "Not Found";
+        } else {
+            status = 500;
+            reason = "Internal Server Error";
+        }
+
+        String contentType = CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)];
+        int bodyLength = status == 304 || status == 302 ? 0 : bodyLength();
+        String body = contentType.startsWith("application/json") ? jsonBody(bodyLength) : text(bodyLength);
+        String raw = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                + "Date: Mon, 06 May 2024 10:00:00 GMT\r\n"
+                + "Server: nginx\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Cache-Control: no-cache\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "\r\n"
+                + body;
+        return MontoyaFakes.httpResponse(raw.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    // 对数分布：多数响应在 1KB 以内，少数达到几十KB
+    private int bodyLength() {
+        double exponent = 6.2 + random.nextGaussian() * 1.3;
+        return (int) Math.min(64 * 1024, Math.max(0, Math.exp(exponent)));
+    }
+
+    private String jsonBody(int length) {
+        StringBuilder json = new StringBuilder(length + 32).append('{');
+        int field = 0;
+        while (json.length() < length) {
+            if (field > 0) {
+                json.append(',');
+            }
+            json.append("\"f").append(field++).append("\":\"").append(text(8 + random.nextInt(40))).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int start = random.nextInt(WORDS.length() - 16);
+            text.append(WORDS, start, Math.min(WORDS.length(), start + length - text.length()));
+        }
+        return text.toString();
+    }
+
+    private int weighted(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}